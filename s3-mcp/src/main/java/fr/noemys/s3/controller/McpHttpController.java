@@ -1,6 +1,7 @@
 package fr.noemys.s3.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.noemys.s3.model.ArchiveRequest;
 import fr.noemys.s3.model.JsonRpcRequest;
 import fr.noemys.s3.model.JsonRpcResponse;
 import fr.noemys.s3.model.SessionInfo;
@@ -9,17 +10,30 @@ import fr.noemys.s3.model.oauth.OAuthMetadata;
 import fr.noemys.s3.model.oauth.TokenRequest;
 import fr.noemys.s3.model.oauth.TokenResponse;
 import fr.noemys.s3.service.McpService;
+import fr.noemys.s3.service.S3ArchiveService;
+import fr.noemys.s3.service.S3KeyIndexer;
 import fr.noemys.s3.service.SessionService;
+import fr.noemys.s3.service.cache.ContentCache;
+import fr.noemys.s3.service.cache.ListingCache;
+import fr.noemys.s3.service.cache.MetadataCache;
+import fr.noemys.s3.service.cache.S3ClientCache;
 import fr.noemys.s3.service.oauth.OAuthService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * MCP HTTP Controller for MCP 2025-06-18 with OAuth 2.1 and HTTP Streaming
@@ -37,16 +51,34 @@ public class McpHttpController {
     private final SessionService sessionService;
     private final McpService mcpService;
     private final ObjectMapper objectMapper;
+    private final S3ClientCache clientCache;
+    private final ListingCache listingCache;
+    private final MetadataCache metadataCache;
+    private final ContentCache contentCache;
+    private final S3KeyIndexer keyIndexer;
+    private final S3ArchiveService archiveService;
     
     public McpHttpController(
             OAuthService oauthService,
             SessionService sessionService,
             McpService mcpService,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            S3ClientCache clientCache,
+            ListingCache listingCache,
+            MetadataCache metadataCache,
+            ContentCache contentCache,
+            S3KeyIndexer keyIndexer,
+            S3ArchiveService archiveService) {
         this.oauthService = oauthService;
         this.sessionService = sessionService;
         this.mcpService = mcpService;
         this.objectMapper = objectMapper;
+        this.clientCache = clientCache;
+        this.listingCache = listingCache;
+        this.metadataCache = metadataCache;
+        this.contentCache = contentCache;
+        this.keyIndexer = keyIndexer;
+        this.archiveService = archiveService;
     }
     
     /**
@@ -124,9 +156,10 @@ public class McpHttpController {
     /**
      * MCP Streaming Endpoint - POST (Send JSON-RPC requests)
      * Production mode: Requires valid session, NO anonymous sessions
+     * Responses are completed asynchronously so no servlet thread waits on S3
      */
     @PostMapping(value = "/mcp", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<JsonRpcResponse> mcpPost(
+    public CompletableFuture<ResponseEntity<JsonRpcResponse>> mcpPost(
             @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
             @RequestHeader(value = "Authorization", required = false) String authorization,
             @RequestBody String requestBody) {
@@ -143,15 +176,16 @@ public class McpHttpController {
                 log.info("Auto-created session from Authorization header: {}", sessionId);
             } else {
                 log.warn("No valid session or credentials provided - rejecting request");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .header("WWW-Authenticate", "Bearer realm=\"MCP Server\"")
                         .body(JsonRpcResponse.error(null, -32001, 
-                                "Authentication required. Please provide Mcp-Session-Id header or valid Authorization Bearer token."));
+                                "Authentication required. Please provide Mcp-Session-Id header or valid Authorization Bearer token.")));
             }
         }
         
         // Update session last access
         sessionService.updateLastAccess(sessionId);
+        String responseSessionId = sessionId;
         
         try {
             // Parse JSON-RPC request
@@ -159,19 +193,74 @@ public class McpHttpController {
             
             log.info("Processing JSON-RPC method: {}", request.getMethod());
             
-            // Handle the request
-            JsonRpcResponse response = handleJsonRpcRequest(request);
-            
-            // Add session ID to response header for client to use in future requests
-            return ResponseEntity.ok()
-                    .header(SESSION_HEADER, sessionId)
-                    .body(response);
+            // Handle the request, then add session ID to response header for client to use in future requests
+            return handleJsonRpcRequest(request)
+                    .thenApply(response -> ResponseEntity.ok()
+                            .header(SESSION_HEADER, responseSessionId)
+                            .body(response));
             
         } catch (Exception e) {
             log.error("Error processing MCP request", e);
             JsonRpcResponse errorResponse = JsonRpcResponse.error(null, -32603, 
                     "Internal error: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse));
+        }
+    }
+    
+    /**
+     * ZIP archive download - streams the objects under a prefix or a list of keys as application/zip.
+     * Same authentication as POST /mcp. Errors found before the first byte are returned as HTTP errors;
+     * a failure while streaming leaves the archive truncated.
+     */
+    @PostMapping(value = "/mcp/archive", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void mcpArchive(
+            @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+            @RequestHeader(value = "Authorization", required = false) String authorization,
+            @RequestBody ArchiveRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        log.info("POST /mcp/archive - Session: {}, Bucket: {}", sessionId, request.getBucketName());
+        
+        if (sessionId == null || !sessionService.validateSession(sessionId)) {
+            SessionInfo autoSession = createSessionFromAuthorization(authorization);
+            if (autoSession == null) {
+                log.warn("No valid session or credentials provided - rejecting archive request");
+                response.setHeader("WWW-Authenticate", "Bearer realm=\"MCP Server\"");
+                response.sendError(HttpStatus.UNAUTHORIZED.value());
+                return;
+            }
+            sessionId = autoSession.getSessionId();
+        }
+        sessionService.updateLastAccess(sessionId);
+        
+        try {
+            archiveService.validate(request);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid archive request: {}", e.getMessage());
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
+        
+        response.setContentType("application/zip");
+        // Quoted and encoded by Spring: the bucket name comes from the request
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(request.getBucketName() + ".zip", StandardCharsets.UTF_8)
+                .build()
+                .toString());
+        response.setHeader(SESSION_HEADER, sessionId);
+        
+        try {
+            archiveService.writeArchive(request, response.getOutputStream());
+        } catch (Exception e) {
+            log.error("Error streaming archive", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage());
+                return;
+            }
+            // Headers are gone: fail the connection so the client sees an incomplete archive
+            throw e;
         }
     }
     
@@ -254,7 +343,8 @@ public class McpHttpController {
                         "oauth_register", "/oauth/register",
                         "oauth_token", "/oauth/token",
                         "mcp_session", "/mcp/session",
-                        "mcp", "/mcp"
+                        "mcp", "/mcp",
+                        "mcp_archive", "/mcp/archive"
                 ),
                 "documentation", "https://spec.modelcontextprotocol.io/"
         ));
@@ -281,10 +371,25 @@ public class McpHttpController {
         return ResponseEntity.ok(tools);
     }
     
+    /**
+     * Debug endpoint - S3 cache statistics
+     */
+    @GetMapping("/debug/cache")
+    public ResponseEntity<Map<String, Object>> debugCache() {
+        return ResponseEntity.ok(Map.of(
+                "s3Clients", clientCache.getStats(),
+                "listings", listingCache.getStats(),
+                "metadata", metadataCache.getStats(),
+                "content", contentCache.getStats(),
+                "keyIndexes", keyIndexer.getStats()
+        ));
+    }
+    
     /**
      * Handle JSON-RPC request
+     * tools/call completes when the tool does; other methods complete immediately
      */
-    private JsonRpcResponse handleJsonRpcRequest(JsonRpcRequest request) {
+    private CompletableFuture<JsonRpcResponse> handleJsonRpcRequest(JsonRpcRequest request) {
         String method = request.getMethod();
         Object id = request.getId();
         Map<String, Object> params = request.getParams();
@@ -292,22 +397,27 @@ public class McpHttpController {
         // Handle notifications (methods starting with "notifications/")
         if (method != null && method.startsWith("notifications/")) {
             log.info("Received notification: {} (no response needed)", method);
-            return JsonRpcResponse.success(id, Map.of());
+            return CompletableFuture.completedFuture(JsonRpcResponse.success(id, Map.of()));
         }
         
         try {
+            if ("tools/call".equals(method)) {
+                if (params == null) {
+                    throw new IllegalArgumentException("Parameters required for tools/call");
+                }
+                String toolName = (String) params.get("name");
+                @SuppressWarnings("unchecked")
+                Map<String, Object> arguments = (Map<String, Object>) params.getOrDefault("arguments", Map.of());
+                
+                return mcpService.callToolAsync(toolName, arguments)
+                        .handle((result, error) -> error == null
+                                ? JsonRpcResponse.success(id, result)
+                                : toErrorResponse(id, method, error));
+            }
+            
             Object result = switch (method) {
                 case "initialize" -> mcpService.initialize(params != null ? params : Map.of());
                 case "tools/list" -> mcpService.listTools();
-                case "tools/call" -> {
-                    if (params == null) {
-                        throw new IllegalArgumentException("Parameters required for tools/call");
-                    }
-                    String toolName = (String) params.get("name");
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> arguments = (Map<String, Object>) params.getOrDefault("arguments", Map.of());
-                    yield mcpService.callTool(toolName, arguments);
-                }
                 case "ping" -> Map.of("status", "pong"); // MCP heartbeat
                 default -> {
                     log.warn("Unknown method: {}", method);
@@ -315,15 +425,28 @@ public class McpHttpController {
                 }
             };
             
-            return JsonRpcResponse.success(id, result);
+            return CompletableFuture.completedFuture(JsonRpcResponse.success(id, result));
             
-        } catch (IllegalArgumentException e) {
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(toErrorResponse(id, method, e));
+        }
+    }
+    
+    /**
+     * Map a failed method call to a JSON-RPC error response
+     */
+    private JsonRpcResponse toErrorResponse(Object id, String method, Throwable error) {
+        Throwable e = error;
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        
+        if (e instanceof IllegalArgumentException) {
             log.error("Invalid request: {}", e.getMessage());
             return JsonRpcResponse.error(id, -32602, "Invalid params: " + e.getMessage());
-        } catch (Exception e) {
-            log.error("Error executing method {}: {}", method, e.getMessage(), e);
-            return JsonRpcResponse.error(id, -32603, "Internal error: " + e.getMessage());
         }
+        log.error("Error executing method {}: {}", method, e.getMessage(), e);
+        return JsonRpcResponse.error(id, -32603, "Internal error: " + e.getMessage());
     }
 }
 
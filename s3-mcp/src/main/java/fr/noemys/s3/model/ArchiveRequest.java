@@ -0,0 +1,43 @@
+package fr.noemys.s3.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * ZIP archive request - objects under a prefix or an explicit list of keys
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ArchiveRequest {
+    
+    @JsonProperty("token")
+    private String token;
+    
+    @JsonProperty("endpoint")
+    private String endpoint;
+    
+    @JsonProperty("userToken")
+    private String userToken;
+    
+    @JsonProperty("bucketName")
+    private String bucketName;
+    
+    @JsonProperty("prefix")
+    private String prefix;
+    
+    @JsonProperty("objectKeys")
+    private List<String> objectKeys;
+    
+    // "deflate" (default) or "store"
+    @JsonProperty("compression")
+    private String compression;
+}
@@ -0,0 +1,122 @@
+package fr.noemys.s3.model.streaming;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.http.Abortable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.ref.Cleaner;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Content streamed from an InputStream while the JSON response is written.
+ * The content is never held in memory: the JSON generator pulls it in small chunks
+ * straight to the HTTP response, then the stream and its resources are closed.
+ * Text is decoded with its charset; binary content (no charset) is written as a base64 string.
+ */
+public final class StreamingContent implements JsonSerializable, AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(StreamingContent.class);
+    
+    // Releases the S3 stream if the response is dropped before being written
+    private static final Cleaner CLEANER = Cleaner.create();
+    
+    private final InputStream inputStream;
+    private final Charset charset;
+    private final Abortable abortable;
+    private final Resources resources;
+    private final Cleaner.Cleanable cleanable;
+    
+    /**
+     * @param inputStream stream to read the content from
+     * @param charset     charset used to decode the content, or null to write it as base64
+     * @param abortable   connection to abort if writing fails part way, may be null
+     * @param closeables  resources to close once the content has been written (stream included)
+     */
+    public StreamingContent(InputStream inputStream, Charset charset, Abortable abortable,
+                            List<? extends AutoCloseable> closeables) {
+        this.inputStream = inputStream;
+        this.charset = charset;
+        this.abortable = abortable;
+        this.resources = new Resources(closeables);
+        this.cleanable = CLEANER.register(this, resources);
+    }
+    
+    /**
+     * Binary content written as standard base64
+     */
+    public static StreamingContent binary(InputStream inputStream, Abortable abortable,
+                                          List<? extends AutoCloseable> closeables) {
+        return new StreamingContent(inputStream, null, abortable, closeables);
+    }
+    
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        try {
+            if (charset == null) {
+                gen.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, inputStream, -1);
+            } else {
+                Reader reader = new InputStreamReader(inputStream, charset);
+                gen.writeString(reader, -1);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Do not drain the rest of the object just to reuse the connection
+            if (abortable != null) {
+                abortable.abort();
+            }
+            throw e;
+        } finally {
+            close();
+        }
+    }
+    
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        WritableTypeId typeId = typeSer.writeTypePrefix(gen, typeSer.typeId(this, JsonToken.VALUE_STRING));
+        serialize(gen, serializers);
+        typeSer.writeTypeSuffix(gen, typeId);
+    }
+    
+    /**
+     * Close the stream and release its resources
+     */
+    @Override
+    public void close() {
+        cleanable.clean();
+    }
+    
+    /**
+     * Resources closed exactly once, either after writing or when the content is garbage collected
+     */
+    private static final class Resources implements Runnable {
+        
+        private final List<? extends AutoCloseable> closeables;
+        
+        private Resources(List<? extends AutoCloseable> closeables) {
+            this.closeables = closeables;
+        }
+        
+        @Override
+        public void run() {
+            for (AutoCloseable closeable : closeables) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Error closing streamed content resource: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
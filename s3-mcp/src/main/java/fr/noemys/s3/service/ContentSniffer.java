@@ -0,0 +1,157 @@
+package fr.noemys.s3.service;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects whether an object is text, and its charset, from its Content-Type and first bytes.
+ * Order: byte order mark, then charset parameter of the Content-Type, then a sniff of the first bytes
+ * (NUL or control bytes mean binary, invalid UTF-8 means Latin-1).
+ * Only the first SAMPLE_SIZE bytes are needed, peeked by the caller so the stream can still be consumed.
+ * 
+ * @version 1.0.0
+ */
+final class ContentSniffer {
+    
+    static final int SAMPLE_SIZE = 8192;
+    
+    private static final Pattern CHARSET_PARAMETER = Pattern.compile(";\\s*charset=\"?([^\";\\s]+)\"?", Pattern.CASE_INSENSITIVE);
+    
+    // Control bytes other than tab, line feed, form feed, carriage return and escape
+    private static final double MAX_CONTROL_RATIO = 0.05;
+    
+    private ContentSniffer() {
+    }
+    
+    /**
+     * Result of a detection: bomLength bytes must be skipped before decoding with charset.
+     * charset is null for binary content.
+     */
+    record Detection(boolean binary, Charset charset, int bomLength) {
+        
+        static Detection binaryContent() {
+            return new Detection(true, null, 0);
+        }
+        
+        static Detection text(Charset charset) {
+            return new Detection(false, charset, 0);
+        }
+    }
+    
+    /**
+     * Detect the content from its first bytes
+     */
+    static Detection detect(byte[] sample, int length, String contentType) {
+        Detection bom = fromBom(sample, length);
+        if (bom != null) {
+            return bom;
+        }
+        
+        Charset declared = declaredCharset(contentType);
+        if (declared != null) {
+            return Detection.text(declared);
+        }
+        if (isBinaryType(contentType)) {
+            return Detection.binaryContent();
+        }
+        
+        int controls = 0;
+        for (int i = 0; i < length; i++) {
+            int b = sample[i] & 0xff;
+            if (b == 0) {
+                return Detection.binaryContent();
+            }
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\f' && b != '\r' && b != 0x1b) {
+                controls++;
+            }
+        }
+        if (length > 0 && controls > length * MAX_CONTROL_RATIO) {
+            return Detection.binaryContent();
+        }
+        
+        return Detection.text(isUtf8(sample, length) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+    
+    private static Detection fromBom(byte[] sample, int length) {
+        if (length >= 3 && (sample[0] & 0xff) == 0xEF && (sample[1] & 0xff) == 0xBB && (sample[2] & 0xff) == 0xBF) {
+            return new Detection(false, StandardCharsets.UTF_8, 3);
+        }
+        if (length >= 2 && (sample[0] & 0xff) == 0xFE && (sample[1] & 0xff) == 0xFF) {
+            return new Detection(false, StandardCharsets.UTF_16BE, 2);
+        }
+        if (length >= 2 && (sample[0] & 0xff) == 0xFF && (sample[1] & 0xff) == 0xFE) {
+            return new Detection(false, StandardCharsets.UTF_16LE, 2);
+        }
+        return null;
+    }
+    
+    /**
+     * Charset parameter of a Content-Type, or null if absent or unknown
+     */
+    static Charset declaredCharset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        Matcher matcher = CHARSET_PARAMETER.matcher(contentType);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return Charset.forName(matcher.group(1));
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Media types that are never text, whatever their first bytes
+     */
+    private static boolean isBinaryType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("image/") && !type.startsWith("image/svg")
+                || type.startsWith("audio/")
+                || type.startsWith("video/")
+                || type.startsWith("font/")
+                || type.startsWith("application/zip")
+                || type.startsWith("application/gzip")
+                || type.startsWith("application/x-gzip")
+                || type.startsWith("application/x-tar")
+                || type.startsWith("application/pdf")
+                || type.startsWith("application/vnd.openxmlformats");
+    }
+    
+    /**
+     * Whether the sample is valid UTF-8 - a sequence cut by the end of the sample is accepted
+     */
+    private static boolean isUtf8(byte[] sample, int length) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(sample, 0, length);
+        CharBuffer out = CharBuffer.allocate(1024);
+        while (true) {
+            CoderResult result = decoder.decode(in, out, false);
+            if (result.isError()) {
+                return false;
+            }
+            if (result.isUnderflow()) {
+                // Only an incomplete trailing sequence (at most 3 bytes) may be left
+                return in.remaining() < 4;
+            }
+            out.clear();
+        }
+    }
+}
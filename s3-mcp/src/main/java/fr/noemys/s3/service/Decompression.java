@@ -0,0 +1,226 @@
+package fr.noemys.s3.service;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming decompression of gzip, zstd and bzip2 objects.
+ * The format is decided by the magic bytes at the start of the object; Content-Encoding and the key
+ * extension only tell that an object is expected to be compressed before any byte is read.
+ * Decompressors read through bounded buffers, so the uncompressed content is never materialized,
+ * and fail once more than a configured number of bytes came out (decompression bombs).
+ * Every decoder is pure Java: no native library has to match the runtime image.
+ * 
+ * @version 1.0.0
+ */
+final class Decompression {
+    
+    // Compressed bytes peeked to detect the format and sample the uncompressed content
+    static final int PEEK_SIZE = 64 * 1024;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private Decompression() {
+    }
+    
+    /**
+     * Supported formats
+     */
+    enum Codec {
+        GZIP("gzip"),
+        ZSTD("zstd"),
+        BZIP2("bzip2");
+        
+        private final String label;
+        
+        Codec(String label) {
+            this.label = label;
+        }
+        
+        String label() {
+            return label;
+        }
+    }
+    
+    /**
+     * Stream to read, and the format it is decompressed from (null when not compressed)
+     */
+    record Opened(InputStream stream, Codec codec) {
+    }
+    
+    /**
+     * Format given by the magic bytes of the sample, or null
+     */
+    static Codec detect(byte[] sample, int length) {
+        if (length >= 3 && (sample[0] & 0xff) == 0x1f && (sample[1] & 0xff) == 0x8b && sample[2] == 8) {
+            return Codec.GZIP;
+        }
+        if (length >= 4 && (sample[0] & 0xff) == 0x28 && (sample[1] & 0xff) == 0xb5
+                && (sample[2] & 0xff) == 0x2f && (sample[3] & 0xff) == 0xfd) {
+            return Codec.ZSTD;
+        }
+        // "BZh" and a block size, then a block or end of stream magic - "BZh" alone is too common in text
+        if (length >= 10 && sample[0] == 'B' && sample[1] == 'Z' && sample[2] == 'h'
+                && sample[3] >= '1' && sample[3] <= '9'
+                && (startsWith(sample, 4, 0x31, 0x41, 0x59, 0x26, 0x53, 0x59)
+                        || startsWith(sample, 4, 0x17, 0x72, 0x45, 0x38, 0x50, 0x90))) {
+            return Codec.BZIP2;
+        }
+        return null;
+    }
+    
+    /**
+     * Whether Content-Encoding or the key extension announce a compressed object
+     */
+    static boolean isExpected(String contentEncoding, String objectKey) {
+        if (contentEncoding != null) {
+            String encoding = contentEncoding.toLowerCase(Locale.ROOT).trim();
+            if (encoding.equals("gzip") || encoding.equals("x-gzip") || encoding.equals("zstd")
+                    || encoding.equals("bzip2") || encoding.equals("x-bzip2")) {
+                return true;
+            }
+        }
+        if (objectKey == null) {
+            return false;
+        }
+        String key = objectKey.toLowerCase(Locale.ROOT);
+        return key.endsWith(".gz") || key.endsWith(".gzip") || key.endsWith(".tgz")
+                || key.endsWith(".zst") || key.endsWith(".zstd")
+                || key.endsWith(".bz2") || key.endsWith(".tbz2");
+    }
+    
+    /**
+     * Decompressing stream over in, failing once more than maxBytes were decompressed
+     * 
+     * @throws IOException if the stream is corrupt, too large once decompressed or the codec is unavailable
+     */
+    static InputStream decompress(InputStream in, Codec codec, long maxBytes) throws IOException {
+        try {
+            InputStream decoder = switch (codec) {
+                case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+                case ZSTD -> new ZstdInputStream(in);
+                // Concatenated streams, as written by parallel compressors
+                case BZIP2 -> new BZip2CompressorInputStream(in, true);
+            };
+            return new LimitedInputStream(decoder, codec, maxBytes);
+        } catch (LinkageError e) {
+            throw unsupported(codec, e);
+        }
+    }
+    
+    /**
+     * Peek at the start of a stream and decompress it if compressed, up to maxBytes
+     */
+    static Opened open(InputStream in, long maxBytes) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(16);
+        byte[] magic = buffered.readNBytes(16);
+        buffered.reset();
+        
+        Codec codec = detect(magic, magic.length);
+        return codec != null
+                ? new Opened(new BufferedInputStream(decompress(buffered, codec, maxBytes), BUFFER_SIZE), codec)
+                : new Opened(buffered, null);
+    }
+    
+    /**
+     * Decompress up to max bytes of the start of a compressed object.
+     * The input is usually cut in the middle of the stream: whatever was decoded before the cut is returned.
+     */
+    static byte[] sample(byte[] compressed, int length, Codec codec, int max) {
+        byte[] sample = new byte[max];
+        int n = 0;
+        try (InputStream in = decompress(new ByteArrayInputStream(compressed, 0, length), codec, max)) {
+            int read;
+            while (n < max && (read = in.read(sample, n, max - n)) > 0) {
+                n += read;
+            }
+        } catch (IOException e) {
+            // Truncated input
+        }
+        return n == max ? sample : Arrays.copyOf(sample, n);
+    }
+    
+    private static IOException unsupported(Codec codec, LinkageError e) {
+        return new IOException("Unsupported encoding: " + codec.label() + " decoder is not available", e);
+    }
+    
+    /**
+     * Decoder output with a size limit. Linkage errors of a lazily loaded decoder become IOExceptions,
+     * so callers abort the S3 stream the same way as for a corrupt one.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        
+        private final Codec codec;
+        private final long maxBytes;
+        private long count;
+        
+        private LimitedInputStream(InputStream in, Codec codec, long maxBytes) {
+            super(in);
+            this.codec = codec;
+            this.maxBytes = maxBytes;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n;
+            while ((n = read(one, 0, 1)) == 0) {
+                // Nothing decoded yet
+            }
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                // One byte more than allowed tells a stream of exactly maxBytes from a larger one,
+                // added after the min so that a limit of Long.MAX_VALUE does not overflow
+                n = in.read(b, off, (int) Math.min(len - 1, maxBytes - count) + 1);
+            } catch (LinkageError e) {
+                throw unsupported(codec, e);
+            }
+            if (n > 0) {
+                count += n;
+                if (count > maxBytes) {
+                    throw new IOException("Decompressed " + codec.label() + " content exceeds " + maxBytes + " bytes");
+                }
+            }
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            // Read through, so skipped bytes count towards the limit as well
+            byte[] buffer = new byte[(int) Math.max(1, Math.min(n, 8192))];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+    }
+    
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xff) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
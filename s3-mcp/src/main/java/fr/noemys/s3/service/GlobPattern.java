@@ -0,0 +1,200 @@
+package fr.noemys.s3.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Glob patterns over object keys.
+ * `*` and `?` match within one path segment (not `/`), `**` matches across segments,
+ * `[a-z]` / `[!a-z]` are character classes, `{a,b}` alternatives and `\` escapes the next character.
+ * The literal prefix before the first wildcard is what a listing can be restricted to.
+ * 
+ * @version 1.0.0
+ */
+final class GlobPattern {
+    
+    private final String glob;
+    private final Pattern pattern;
+    private final String literalPrefix;
+    private final boolean literal;
+    private final boolean crossesSegments;
+    
+    private GlobPattern(String glob, Pattern pattern, String literalPrefix, boolean literal, boolean crossesSegments) {
+        this.glob = glob;
+        this.pattern = pattern;
+        this.literalPrefix = literalPrefix;
+        this.literal = literal;
+        this.crossesSegments = crossesSegments;
+    }
+    
+    /**
+     * Compile a glob
+     * 
+     * @throws IllegalArgumentException if the glob is empty or malformed
+     */
+    static GlobPattern compile(String glob) {
+        if (glob == null || glob.isEmpty()) {
+            throw new IllegalArgumentException("pattern is required");
+        }
+        return parse(glob);
+    }
+    
+    private static GlobPattern parse(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder prefix = new StringBuilder();
+        boolean literal = true;
+        boolean crossesSegments = false;
+        boolean inAlternatives = false;
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= glob.length()) {
+                        throw new IllegalArgumentException("Invalid pattern: trailing escape");
+                    }
+                    char escaped = glob.charAt(++i);
+                    regex.append(Pattern.quote(String.valueOf(escaped)));
+                    if (literal) {
+                        prefix.append(escaped);
+                    }
+                }
+                case '*' -> {
+                    literal = false;
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        i++;
+                        crossesSegments = true;
+                        // "**/" also matches no directory at all
+                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                            i++;
+                            regex.append("(?:.*/)?");
+                        } else {
+                            regex.append(".*");
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> {
+                    literal = false;
+                    regex.append("[^/]");
+                }
+                case '[' -> {
+                    literal = false;
+                    int end = glob.indexOf(']', i + 2);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Invalid pattern: unclosed [");
+                    }
+                    String chars = glob.substring(i + 1, end);
+                    boolean negated = chars.startsWith("!") || chars.startsWith("^");
+                    if (negated) {
+                        chars = chars.substring(1);
+                    }
+                    regex.append(negated ? "[^/" : "[").append(chars.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                    i = end;
+                }
+                case '{' -> {
+                    if (inAlternatives) {
+                        throw new IllegalArgumentException("Invalid pattern: nested {");
+                    }
+                    literal = false;
+                    inAlternatives = true;
+                    regex.append("(?:");
+                }
+                case '}' -> {
+                    if (!inAlternatives) {
+                        throw new IllegalArgumentException("Invalid pattern: unmatched }");
+                    }
+                    inAlternatives = false;
+                    regex.append(')');
+                }
+                case ',' -> {
+                    regex.append(inAlternatives ? "|" : ",");
+                    if (literal) {
+                        prefix.append(c);
+                    }
+                }
+                default -> {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                    if (literal) {
+                        prefix.append(c);
+                    }
+                }
+            }
+            i++;
+        }
+        if (inAlternatives) {
+            throw new IllegalArgumentException("Invalid pattern: unclosed {");
+        }
+        
+        return new GlobPattern(glob, Pattern.compile(regex.toString(), Pattern.DOTALL), prefix.toString(), literal,
+                crossesSegments);
+    }
+    
+    /**
+     * The glob split on '/' into one pattern per path segment, or null when a '/' sits inside [...] or {...}
+     */
+    List<GlobPattern> segments() {
+        List<GlobPattern> segments = new ArrayList<>();
+        int start = 0;
+        int braces = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                int end = glob.indexOf(']', i + 2);
+                if (glob.substring(i, end).indexOf('/') >= 0) {
+                    return null;
+                }
+                i = end;
+            } else if (c == '{') {
+                braces++;
+            } else if (c == '}') {
+                braces--;
+            } else if (c == '/') {
+                if (braces > 0) {
+                    return null;
+                }
+                segments.add(parse(glob.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        segments.add(parse(glob.substring(start)));
+        return segments;
+    }
+    
+    /**
+     * Whether a whole key matches
+     */
+    boolean matches(String key) {
+        return pattern.matcher(key).matches();
+    }
+    
+    /**
+     * Characters every matching key starts with
+     */
+    String literalPrefix() {
+        return literalPrefix;
+    }
+    
+    /**
+     * Whether the glob has no wildcard at all
+     */
+    boolean isLiteral() {
+        return literal;
+    }
+    
+    /**
+     * Whether the glob has a ** that matches across path segments
+     */
+    boolean crossesSegments() {
+        return crossesSegments;
+    }
+    
+    @Override
+    public String toString() {
+        return glob;
+    }
+}
@@ -4,9 +4,13 @@ import fr.noemys.s3.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * MCP Service implementing the Model Context Protocol
@@ -22,11 +26,19 @@ public class McpService {
     private static final String SERVER_NAME = "s3-mcp-server";
     private static final String SERVER_VERSION = "1.0.0";
     
+    // Blocking tools run on their own virtual thread, never on the request thread
+    private static final Executor TOOL_EXECUTOR = command -> Thread.ofVirtual().name("mcp-tool").start(command);
+    
+    @Value("${mcp.s3.upload.max-size:104857600}")
+    private long maxUploadSize;
+    
     private final S3Service s3Service;
+    private final S3AsyncService s3AsyncService;
     
     @Autowired
-    public McpService(S3Service s3Service) {
+    public McpService(S3Service s3Service, S3AsyncService s3AsyncService) {
         this.s3Service = s3Service;
+        this.s3AsyncService = s3AsyncService;
     }
     
     /**
@@ -130,10 +142,34 @@ public class McpService {
                 "type", "string",
                 "description", "Prefix to filter objects"
         ));
+        listObjectsProperties.put("maxKeys", Map.of(
+                "type", "integer",
+                "description", "Maximum number of keys per page (1-1000, default 1000)"
+        ));
+        listObjectsProperties.put("startAfter", Map.of(
+                "type", "string",
+                "description", "Start listing after this key (first page only)"
+        ));
+        listObjectsProperties.put("cursor", Map.of(
+                "type", "string",
+                "description", "Opaque cursor returned as nextCursor by the previous page"
+        ));
+        listObjectsProperties.put("parallel", Map.of(
+                "type", "boolean",
+                "description", "List the whole prefix in parallel, sharded by sub-prefix (maxKeys then caps the total)"
+        ));
+        listObjectsProperties.put("parallelism", Map.of(
+                "type", "integer",
+                "description", "Number of parallel workers when parallel is true"
+        ));
+        listObjectsProperties.put("ordered", Map.of(
+                "type", "boolean",
+                "description", "Sort parallel results by key; when truncated, they are the first keys in key order (default true)"
+        ));
         
         McpTool listObjectsTool = McpTool.builder()
                 .name("listObjects")
-                .description("Lists objects in an S3 bucket")
+                .description("Lists objects in an S3 bucket, one page at a time (follow nextCursor for more)")
                 .inputSchema(Map.of(
                         "type", "object",
                         "properties", listObjectsProperties,
@@ -213,188 +249,1443 @@ public class McpService {
         
         tools.add(getObjectMetadataTool);
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("tools", tools);
-        
-        log.info("Found {} tool(s)", tools.size());
-        return result;
-    }
-    
-    /**
-     * Call a tool by name
-     */
-    public Map<String, Object> callTool(String toolName, Map<String, Object> arguments) {
-        log.info("Calling tool: {}", toolName);
-        
-        if ("sayHello".equals(toolName)) {
-            return executeSayHello();
-        } else if ("listBuckets".equals(toolName)) {
-            return executeListBuckets(arguments);
-        } else if ("listObjects".equals(toolName)) {
-            return executeListObjects(arguments);
-        } else if ("downloadObject".equals(toolName)) {
-            return executeDownloadObject(arguments);
-        } else if ("getObjectMetadata".equals(toolName)) {
-            return executeGetObjectMetadata(arguments);
-        }
-        
-        log.error("Unknown tool: {}", toolName);
-        throw new IllegalArgumentException("Unknown tool: " + toolName);
-    }
-    
-    /**
-     * Execute sayHello tool
-     */
-    private Map<String, Object> executeSayHello() {
-        log.info("Executing sayHello tool");
-        
-        Map<String, Object> content = new HashMap<>();
-        content.put("type", "text");
-        content.put("text", "hello world");
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("content", List.of(content));
+        // Define getObjectsMetadata tool
+        Map<String, Object> getObjectsMetadataProperties = new HashMap<>();
+        getObjectsMetadataProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        getObjectsMetadataProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        getObjectsMetadataProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        getObjectsMetadataProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        getObjectsMetadataProperties.put("objectKeys", Map.of(
+                "type", "array",
+                "items", Map.of("type", "string"),
+                "description", "Object keys"
+        ));
+        getObjectsMetadataProperties.put("concurrency", Map.of(
+                "type", "integer",
+                "description", "Maximum number of concurrent HEAD requests (capped by the server)"
+        ));
         
-        log.info("sayHello tool executed successfully");
-        return result;
-    }
-    
-    /**
-     * Execute listBuckets tool
-     */
-    private Map<String, Object> executeListBuckets(Map<String, Object> arguments) {
-        log.info("Executing listBuckets tool");
+        McpTool getObjectsMetadataTool = McpTool.builder()
+                .name("getObjectsMetadata")
+                .description("Retrieves metadata for several S3 objects at once, with a result or error per key")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", getObjectsMetadataProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName", "objectKeys")
+                ))
+                .build();
         
-        String token = (String) arguments.get("token");
-        String endpoint = (String) arguments.get("endpoint");
-        String userToken = (String) arguments.get("userToken");
+        tools.add(getObjectsMetadataTool);
         
-        Map<String, Object> s3Result = s3Service.listBuckets(endpoint, token, userToken);
+        // Define readObjectRange tool
+        Map<String, Object> readObjectRangeProperties = new HashMap<>();
+        readObjectRangeProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        readObjectRangeProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        readObjectRangeProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        readObjectRangeProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        readObjectRangeProperties.put("objectKey", Map.of(
+                "type", "string",
+                "description", "Object key"
+        ));
+        readObjectRangeProperties.put("offset", Map.of(
+                "type", "integer",
+                "description", "First byte to read (default 0)"
+        ));
+        readObjectRangeProperties.put("length", Map.of(
+                "type", "integer",
+                "description", "Number of bytes to read (capped by the server)"
+        ));
+        readObjectRangeProperties.put("range", Map.of(
+                "type", "string",
+                "description", "HTTP Range instead of offset/length: bytes=start-end, bytes=start- or bytes=-suffix"
+        ));
         
-        // Build a user-friendly text that includes bucket names
-        List<String> bucketNames = new ArrayList<>();
-        Object bucketsObj = s3Result.get("buckets");
-        if (bucketsObj instanceof List<?>) {
-            for (Object item : (List<?>) bucketsObj) {
-                if (item instanceof Map<?, ?> map) {
-                    Object name = map.get("name");
-                    if (name != null) {
-                        bucketNames.add(name.toString());
-                    }
-                }
-            }
-        }
-        String summaryText = bucketNames.isEmpty()
-                ? "Buckets retrieved: 0"
-                : "Buckets (" + bucketNames.size() + "): " + String.join(", ", bucketNames);
+        McpTool readObjectRangeTool = McpTool.builder()
+                .name("readObjectRange")
+                .description("Reads a byte range of an S3 object and returns the slice with the total size and ETag; binary slices are base64-encoded")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", readObjectRangeProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName", "objectKey")
+                ))
+                .build();
         
-        Map<String, Object> content = new HashMap<>();
-        content.put("type", "text");
-        content.put("text", summaryText);
+        tools.add(readObjectRangeTool);
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("content", List.of(content));
-        result.put("data", s3Result);
+        // Define uploadObject tool
+        Map<String, Object> uploadObjectProperties = new HashMap<>();
+        uploadObjectProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        uploadObjectProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        uploadObjectProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        uploadObjectProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        uploadObjectProperties.put("objectKey", Map.of(
+                "type", "string",
+                "description", "Object key"
+        ));
+        uploadObjectProperties.put("content", Map.of(
+                "type", "string",
+                "description", "Object content"
+        ));
+        uploadObjectProperties.put("contentEncoding", Map.of(
+                "type", "string",
+                "enum", List.of("utf-8", "base64"),
+                "description", "Encoding of content: utf-8 text (default) or base64 for binary data"
+        ));
+        uploadObjectProperties.put("contentType", Map.of(
+                "type", "string",
+                "description", "MIME type of the object (default application/octet-stream)"
+        ));
         
-        log.info("listBuckets tool executed successfully");
-        return result;
-    }
-    
-    /**
-     * Execute listObjects tool
-     */
-    private Map<String, Object> executeListObjects(Map<String, Object> arguments) {
-        log.info("Executing listObjects tool");
+        McpTool uploadObjectTool = McpTool.builder()
+                .name("uploadObject")
+                .description("Uploads an object to an S3 bucket, using parallel multipart upload for large content")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", uploadObjectProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName", "objectKey", "content")
+                ))
+                .build();
         
-        String token = (String) arguments.get("token");
-        String endpoint = (String) arguments.get("endpoint");
-        String userToken = (String) arguments.get("userToken");
-        String bucketName = (String) arguments.get("bucketName");
-        String prefix = (String) arguments.getOrDefault("prefix", "");
+        tools.add(uploadObjectTool);
         
-        Map<String, Object> s3Result = s3Service.listObjects(endpoint, token, userToken, bucketName, prefix);
+        // Define copyObject tool
+        Map<String, Object> copyObjectProperties = new HashMap<>();
+        copyObjectProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        copyObjectProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        copyObjectProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        copyObjectProperties.put("sourceBucketName", Map.of(
+                "type", "string",
+                "description", "Source bucket name"
+        ));
+        copyObjectProperties.put("sourceKey", Map.of(
+                "type", "string",
+                "description", "Source object key"
+        ));
+        copyObjectProperties.put("destinationBucketName", Map.of(
+                "type", "string",
+                "description", "Destination bucket name (default: source bucket)"
+        ));
+        copyObjectProperties.put("destinationKey", Map.of(
+                "type", "string",
+                "description", "Destination object key"
+        ));
         
-        // Build a user-friendly text that includes object keys
-        List<String> objectKeys = new ArrayList<>();
-        Object objectsObj = s3Result.get("objects");
-        if (objectsObj instanceof List<?>) {
-            for (Object item : (List<?>) objectsObj) {
-                if (item instanceof Map<?, ?> map) {
-                    Object key = map.get("key");
-                    if (key != null) {
-                        objectKeys.add(key.toString());
-                    }
-                }
-            }
-        }
-        String summaryText = objectKeys.isEmpty()
-                ? "Objects retrieved: 0"
-                : "Objects (" + objectKeys.size() + "): " + String.join(", ", objectKeys);
+        McpTool copyObjectTool = McpTool.builder()
+                .name("copyObject")
+                .description("Copies an S3 object server-side, without transferring its content through the server")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", copyObjectProperties,
+                        "required", List.of("token", "endpoint", "userToken", "sourceBucketName", "sourceKey", "destinationKey")
+                ))
+                .build();
         
-        Map<String, Object> content = new HashMap<>();
-        content.put("type", "text");
-        content.put("text", summaryText);
+        tools.add(copyObjectTool);
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("content", List.of(content));
-        result.put("data", s3Result);
+        // Define deleteObjects tool
+        Map<String, Object> deleteObjectsProperties = new HashMap<>();
+        deleteObjectsProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        deleteObjectsProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        deleteObjectsProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        deleteObjectsProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        deleteObjectsProperties.put("prefix", Map.of(
+                "type", "string",
+                "description", "Delete every object under this prefix (must not be empty)"
+        ));
+        deleteObjectsProperties.put("objectKeys", Map.of(
+                "type", "array",
+                "items", Map.of("type", "string"),
+                "description", "Object keys to delete, instead of prefix"
+        ));
+        deleteObjectsProperties.put("concurrency", Map.of(
+                "type", "integer",
+                "description", "Maximum number of concurrent delete batches (capped by the server)"
+        ));
         
-        log.info("listObjects tool executed successfully");
-        return result;
-    }
-    
-    /**
-     * Execute downloadObject tool
-     */
-    private Map<String, Object> executeDownloadObject(Map<String, Object> arguments) {
-        log.info("Executing downloadObject tool");
+        McpTool deleteObjectsTool = McpTool.builder()
+                .name("deleteObjects")
+                .description("Deletes a list of S3 objects or every object under a prefix, in batches of 1000 keys")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", deleteObjectsProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName")
+                ))
+                .build();
         
-        String token = (String) arguments.get("token");
-        String endpoint = (String) arguments.get("endpoint");
-        String userToken = (String) arguments.get("userToken");
-        String bucketName = (String) arguments.get("bucketName");
-        String objectKey = (String) arguments.get("objectKey");
+        tools.add(deleteObjectsTool);
         
-        Map<String, Object> s3Result = s3Service.downloadObject(endpoint, token, userToken, bucketName, objectKey);
+        // Define searchObject tool
+        Map<String, Object> searchObjectProperties = new HashMap<>();
+        searchObjectProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        searchObjectProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        searchObjectProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        searchObjectProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        searchObjectProperties.put("objectKey", Map.of(
+                "type", "string",
+                "description", "Object key"
+        ));
+        searchObjectProperties.put("pattern", Map.of(
+                "type", "string",
+                "description", "Text to search for (a regular expression when regex is true)"
+        ));
+        searchObjectProperties.put("regex", Map.of(
+                "type", "boolean",
+                "description", "Treat pattern as a Java regular expression (default false)"
+        ));
+        searchObjectProperties.put("ignoreCase", Map.of(
+                "type", "boolean",
+                "description", "Case-insensitive matching (default false)"
+        ));
+        searchObjectProperties.put("maxMatches", Map.of(
+                "type", "integer",
+                "description", "Stop after this many matching lines (default 100, capped by the server)"
+        ));
         
-        Map<String, Object> content = new HashMap<>();
-        content.put("type", "text");
-        content.put("text", "Object downloaded: " + objectKey);
+        McpTool searchObjectTool = McpTool.builder()
+                .name("searchObject")
+                .description("Searches a text object line by line on the server and returns only the matching lines "
+                        + "with their line numbers and byte offsets")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", searchObjectProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName", "objectKey", "pattern")
+                ))
+                .build();
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("content", List.of(content));
-        result.put("data", s3Result);
+        tools.add(searchObjectTool);
         
-        log.info("downloadObject tool executed successfully");
+        // Define previewObject tool
+        Map<String, Object> previewObjectProperties = new HashMap<>();
+        previewObjectProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        previewObjectProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        previewObjectProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        previewObjectProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        previewObjectProperties.put("objectKey", Map.of(
+                "type", "string",
+                "description", "Object key"
+        ));
+        previewObjectProperties.put("lines", Map.of(
+                "type", "integer",
+                "description", "Number of lines to return (default 50, capped by the server)"
+        ));
+        previewObjectProperties.put("fromEnd", Map.of(
+                "type", "boolean",
+                "description", "Return the last lines instead of the first ones (default false)"
+        ));
+        
+        McpTool previewObjectTool = McpTool.builder()
+                .name("previewObject")
+                .description("Returns the first (or last) lines of a text object, reading only the bytes needed "
+                        + "instead of downloading the whole object")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", previewObjectProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName", "objectKey")
+                ))
+                .build();
+        
+        tools.add(previewObjectTool);
+        
+        // Define indexBucket tool
+        Map<String, Object> indexBucketProperties = new HashMap<>();
+        indexBucketProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        indexBucketProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        indexBucketProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        indexBucketProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        indexBucketProperties.put("rebuild", Map.of(
+                "type", "boolean",
+                "description", "List the whole bucket again even if it is already indexed (default false)"
+        ));
+        
+        McpTool indexBucketTool = McpTool.builder()
+                .name("indexBucket")
+                .description("Builds an in-memory index of every key of a bucket in the background, "
+                        + "so queryKeyIndex answers prefix, glob and count queries without listing S3")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", indexBucketProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName")
+                ))
+                .build();
+        
+        tools.add(indexBucketTool);
+        
+        // Define queryKeyIndex tool
+        Map<String, Object> queryKeyIndexProperties = new HashMap<>();
+        queryKeyIndexProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        queryKeyIndexProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        queryKeyIndexProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        queryKeyIndexProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        queryKeyIndexProperties.put("prefix", Map.of(
+                "type", "string",
+                "description", "Only keys starting with this prefix"
+        ));
+        queryKeyIndexProperties.put("pattern", Map.of(
+                "type", "string",
+                "description", "Glob the keys must match: * and ? within a path segment, ** across segments, "
+                        + "[a-z] character classes and {a,b} alternatives"
+        ));
+        queryKeyIndexProperties.put("countOnly", Map.of(
+                "type", "boolean",
+                "description", "Return only the count and total size (default false)"
+        ));
+        queryKeyIndexProperties.put("maxResults", Map.of(
+                "type", "integer",
+                "description", "Maximum keys returned (default 1000, capped by the server)"
+        ));
+        
+        McpTool queryKeyIndexTool = McpTool.builder()
+                .name("queryKeyIndex")
+                .description("Answers prefix, glob and count queries from the in-memory key index of a bucket "
+                        + "built by indexBucket, with the total size of the matching objects")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", queryKeyIndexProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName")
+                ))
+                .build();
+        
+        tools.add(queryKeyIndexTool);
+        
+        // Define findObjects tool
+        Map<String, Object> findObjectsProperties = new HashMap<>();
+        findObjectsProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        findObjectsProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        findObjectsProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        findObjectsProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        findObjectsProperties.put("pattern", Map.of(
+                "type", "string",
+                "description", "Glob the keys must match, e.g. logs/2026-10-*/app-*.json: * and ? within a path segment, "
+                        + "** across segments, [a-z] character classes and {a,b} alternatives"
+        ));
+        findObjectsProperties.put("regex", Map.of(
+                "type", "boolean",
+                "description", "Treat pattern as a Java regular expression matching the whole key (default false)"
+        ));
+        findObjectsProperties.put("maxResults", Map.of(
+                "type", "integer",
+                "description", "Maximum keys returned (default 1000, capped by the server)"
+        ));
+        
+        McpTool findObjectsTool = McpTool.builder()
+                .name("findObjects")
+                .description("Finds the keys of a bucket matching a glob or regex. Literal parts of the pattern "
+                        + "restrict the listing prefix and wildcard path segments are matched level by level, "
+                        + "so only the matching part of the bucket is listed")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", findObjectsProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName", "pattern")
+                ))
+                .build();
+        
+        tools.add(findObjectsTool);
+        
+        // Define summarizePrefix tool
+        Map<String, Object> summarizePrefixProperties = new HashMap<>();
+        summarizePrefixProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        summarizePrefixProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        summarizePrefixProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        summarizePrefixProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        summarizePrefixProperties.put("prefix", Map.of(
+                "type", "string",
+                "description", "Prefix to summarize (whole bucket when empty)"
+        ));
+        summarizePrefixProperties.put("parallelism", Map.of(
+                "type", "integer",
+                "description", "Number of sub-prefixes listed in parallel"
+        ));
+        
+        McpTool summarizePrefixTool = McpTool.builder()
+                .name("summarizePrefix")
+                .description("Returns the object count and total size of a prefix, broken down by storage class and "
+                        + "by sub-prefix. Sub-prefixes are listed in parallel and only counters are kept, "
+                        + "so prefixes of any size can be summarized")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", summarizePrefixProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName")
+                ))
+                .build();
+        
+        tools.add(summarizePrefixTool);
+        
+        // Define listDirectory tool
+        Map<String, Object> listDirectoryProperties = new HashMap<>();
+        listDirectoryProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        listDirectoryProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        listDirectoryProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        listDirectoryProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        listDirectoryProperties.put("prefix", Map.of(
+                "type", "string",
+                "description", "Directory to list, e.g. logs/2026/ (bucket root when empty)"
+        ));
+        listDirectoryProperties.put("depth", Map.of(
+                "type", "integer",
+                "description", "Levels to expand: 1 lists only the directory, 2 also lists its folders, etc. (default 1)"
+        ));
+        listDirectoryProperties.put("maxEntries", Map.of(
+                "type", "integer",
+                "description", "Maximum folders and files in total, across all expanded directories (default 1000)"
+        ));
+        listDirectoryProperties.put("cursor", Map.of(
+                "type", "string",
+                "description", "Opaque cursor returned as nextCursor by the previous page of the directory"
+        ));
+        
+        McpTool listDirectoryTool = McpTool.builder()
+                .name("listDirectory")
+                .description("Lists one level of a bucket like a directory: sub-folders and files are returned "
+                        + "separately, without the keys below the sub-folders. depth expands sub-folders concurrently")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", listDirectoryProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName")
+                ))
+                .build();
+        
+        tools.add(listDirectoryTool);
+        
+        // Define diffPrefixes tool
+        Map<String, Object> diffPrefixesProperties = new HashMap<>();
+        diffPrefixesProperties.put("token", Map.of(
+                "type", "string",
+                "description", "S3 Access Key ID"
+        ));
+        diffPrefixesProperties.put("endpoint", Map.of(
+                "type", "string",
+                "description", "S3 server URL"
+        ));
+        diffPrefixesProperties.put("userToken", Map.of(
+                "type", "string",
+                "description", "S3 Secret Access Key"
+        ));
+        diffPrefixesProperties.put("bucketName", Map.of(
+                "type", "string",
+                "description", "Bucket name"
+        ));
+        diffPrefixesProperties.put("prefix", Map.of(
+                "type", "string",
+                "description", "Source prefix (whole bucket when empty)"
+        ));
+        diffPrefixesProperties.put("targetBucketName", Map.of(
+                "type", "string",
+                "description", "Target bucket name (default: bucketName)"
+        ));
+        diffPrefixesProperties.put("targetPrefix", Map.of(
+                "type", "string",
+                "description", "Target prefix (default: prefix)"
+        ));
+        diffPrefixesProperties.put("targetEndpoint", Map.of(
+                "type", "string",
+                "description", "Target S3 server URL (default: endpoint)"
+        ));
+        diffPrefixesProperties.put("targetToken", Map.of(
+                "type", "string",
+                "description", "Target S3 Access Key ID (default: token)"
+        ));
+        diffPrefixesProperties.put("targetUserToken", Map.of(
+                "type", "string",
+                "description", "Target S3 Secret Access Key (default: userToken)"
+        ));
+        diffPrefixesProperties.put("sync", Map.of(
+                "type", "boolean",
+                "description", "Copy added and changed keys to the target with server-side copies (default false)"
+        ));
+        diffPrefixesProperties.put("deleteExtra", Map.of(
+                "type", "boolean",
+                "description", "With sync, also delete the target keys missing from the source (default false)"
+        ));
+        diffPrefixesProperties.put("concurrency", Map.of(
+                "type", "integer",
+                "description", "Concurrent copies in sync mode (default 8)"
+        ));
+        
+        McpTool diffPrefixesTool = McpTool.builder()
+                .name("diffPrefixes")
+                .description("Compares a source prefix with a target prefix, in the same bucket, another bucket or "
+                        + "another endpoint, by key, size and ETag: keys only in the source are added, keys only "
+                        + "in the target removed. Both sides are listed concurrently and merged in one pass. "
+                        + "sync applies the difference to the target with parallel server-side copies")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", diffPrefixesProperties,
+                        "required", List.of("token", "endpoint", "userToken", "bucketName")
+                ))
+                .build();
+        
+        tools.add(diffPrefixesTool);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("tools", tools);
+        
+        log.info("Found {} tool(s)", tools.size());
+        return result;
+    }
+    
+    /**
+     * Call a tool that blocks on S3 calls - run on a virtual thread by callToolAsync.
+     * Tools served by the async client are not dispatched here.
+     */
+    private Map<String, Object> callBlockingTool(String toolName, Map<String, Object> arguments) {
+        log.info("Calling tool: {}", toolName);
+        
+        if ("sayHello".equals(toolName)) {
+            return executeSayHello();
+        } else if ("listObjects".equals(toolName)) {
+            return executeListObjectsParallel(arguments);
+        } else if ("readObjectRange".equals(toolName)) {
+            return executeReadObjectRange(arguments);
+        } else if ("uploadObject".equals(toolName)) {
+            return executeUploadObject(arguments);
+        } else if ("copyObject".equals(toolName)) {
+            return executeCopyObject(arguments);
+        } else if ("deleteObjects".equals(toolName)) {
+            return executeDeleteObjects(arguments);
+        } else if ("searchObject".equals(toolName)) {
+            return executeSearchObject(arguments);
+        } else if ("previewObject".equals(toolName)) {
+            return executePreviewObject(arguments);
+        } else if ("indexBucket".equals(toolName)) {
+            return executeIndexBucket(arguments);
+        } else if ("queryKeyIndex".equals(toolName)) {
+            return executeQueryKeyIndex(arguments);
+        } else if ("findObjects".equals(toolName)) {
+            return executeFindObjects(arguments);
+        } else if ("summarizePrefix".equals(toolName)) {
+            return executeSummarizePrefix(arguments);
+        } else if ("listDirectory".equals(toolName)) {
+            return executeListDirectory(arguments);
+        } else if ("diffPrefixes".equals(toolName)) {
+            return executeDiffPrefixes(arguments);
+        }
+        
+        log.error("Unknown tool: {}", toolName);
+        throw new IllegalArgumentException("Unknown tool: " + toolName);
+    }
+    
+    /**
+     * Call a tool by name without blocking on S3 calls.
+     * Each tool has a single implementation: listBuckets, page listings, downloadObject and the metadata
+     * tools run on the async client; the other tools block on a virtual thread.
+     */
+    public CompletableFuture<Map<String, Object>> callToolAsync(String toolName, Map<String, Object> arguments) {
+        log.info("Calling tool asynchronously: {}", toolName);
+        
+        try {
+            if ("listBuckets".equals(toolName)) {
+                return executeListBucketsAsync(arguments);
+            } else if ("listObjects".equals(toolName) && !getBooleanArgument(arguments, "parallel", false)) {
+                return executeListObjectsAsync(arguments);
+            } else if ("downloadObject".equals(toolName)) {
+                return executeDownloadObjectAsync(arguments);
+            } else if ("getObjectMetadata".equals(toolName)) {
+                return executeGetObjectMetadataAsync(arguments);
+            } else if ("getObjectsMetadata".equals(toolName)) {
+                return executeGetObjectsMetadata(arguments);
+            }
+            
+            return CompletableFuture.supplyAsync(() -> callBlockingTool(toolName, arguments), TOOL_EXECUTOR);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Execute sayHello tool
+     */
+    private Map<String, Object> executeSayHello() {
+        log.info("Executing sayHello tool");
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "hello world");
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        
+        log.info("sayHello tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute listBuckets tool on the async client
+     */
+    private CompletableFuture<Map<String, Object>> executeListBucketsAsync(Map<String, Object> arguments) {
+        log.info("Executing listBuckets tool (async)");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        
+        return s3AsyncService.listBuckets(endpoint, token, userToken)
+                .thenApply(this::toListBucketsResult);
+    }
+    
+    /**
+     * Wrap a listBuckets result into tool content
+     */
+    private Map<String, Object> toListBucketsResult(Map<String, Object> s3Result) {
+        // Build a user-friendly text that includes bucket names
+        List<String> bucketNames = new ArrayList<>();
+        Object bucketsObj = s3Result.get("buckets");
+        if (bucketsObj instanceof List<?>) {
+            for (Object item : (List<?>) bucketsObj) {
+                if (item instanceof Map<?, ?> map) {
+                    Object name = map.get("name");
+                    if (name != null) {
+                        bucketNames.add(name.toString());
+                    }
+                }
+            }
+        }
+        String summaryText = bucketNames.isEmpty()
+                ? "Buckets retrieved: 0"
+                : "Buckets (" + bucketNames.size() + "): " + String.join(", ", bucketNames);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", summaryText);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("listBuckets tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute listObjects tool with parallel=true - a page listing runs on the async client
+     */
+    private Map<String, Object> executeListObjectsParallel(Map<String, Object> arguments) {
+        log.info("Executing listObjects tool (parallel)");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String prefix = (String) arguments.getOrDefault("prefix", "");
+        Long maxKeys = getLongArgument(arguments, "maxKeys");
+        Long parallelism = getLongArgument(arguments, "parallelism");
+        boolean ordered = getBooleanArgument(arguments, "ordered", true);
+        
+        Map<String, Object> s3Result = s3Service.listObjectsParallel(endpoint, token, userToken, bucketName, prefix,
+                parallelism != null ? parallelism.intValue() : null,
+                maxKeys != null ? maxKeys.intValue() : null, ordered);
+        
+        return toListObjectsResult(s3Result);
+    }
+    
+    /**
+     * Execute listObjects tool on the async client
+     */
+    private CompletableFuture<Map<String, Object>> executeListObjectsAsync(Map<String, Object> arguments) {
+        log.info("Executing listObjects tool (async)");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String prefix = (String) arguments.getOrDefault("prefix", "");
+        Long maxKeys = getLongArgument(arguments, "maxKeys");
+        String startAfter = (String) arguments.get("startAfter");
+        String cursor = (String) arguments.get("cursor");
+        
+        return s3AsyncService.listObjects(endpoint, token, userToken, bucketName, prefix,
+                        maxKeys != null ? maxKeys.intValue() : null, startAfter, cursor)
+                .thenApply(this::toListObjectsResult);
+    }
+    
+    /**
+     * Wrap a listObjects result into tool content
+     */
+    private Map<String, Object> toListObjectsResult(Map<String, Object> s3Result) {
+        // Build a user-friendly text that includes object keys
+        List<String> objectKeys = new ArrayList<>();
+        Object objectsObj = s3Result.get("objects");
+        if (objectsObj instanceof List<?>) {
+            for (Object item : (List<?>) objectsObj) {
+                if (item instanceof Map<?, ?> map) {
+                    Object key = map.get("key");
+                    if (key != null) {
+                        objectKeys.add(key.toString());
+                    }
+                }
+            }
+        }
+        String summaryText = objectKeys.isEmpty()
+                ? "Objects retrieved: 0"
+                : "Objects (" + objectKeys.size() + "): " + String.join(", ", objectKeys);
+        if (s3Result.get("nextCursor") != null) {
+            summaryText += " (more objects available, nextCursor: " + s3Result.get("nextCursor") + ")";
+        }
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", summaryText);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("listObjects tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute downloadObject tool on the async client
+     */
+    private CompletableFuture<Map<String, Object>> executeDownloadObjectAsync(Map<String, Object> arguments) {
+        log.info("Executing downloadObject tool (async)");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String objectKey = (String) arguments.get("objectKey");
+        
+        return s3AsyncService.downloadObject(endpoint, token, userToken, bucketName, objectKey)
+                .thenApply(s3Result -> toDownloadObjectResult(objectKey, s3Result));
+    }
+    
+    /**
+     * Wrap a downloadObject result into tool content
+     */
+    private Map<String, Object> toDownloadObjectResult(String objectKey, Map<String, Object> s3Result) {
+        Object blob = s3Result.remove("blob");
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        if (blob != null) {
+            content.put("text", "Binary object downloaded: " + objectKey + " (" + s3Result.get("size") + " bytes, "
+                    + s3Result.get("contentType") + ")");
+        } else {
+            content.put("text", Boolean.TRUE.equals(s3Result.get("binary"))
+                    ? "Binary object not returned as text: " + objectKey + " (" + s3Result.get("size") + " bytes, "
+                            + s3Result.get("contentType") + ")"
+                    : "Object downloaded: " + objectKey);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        if (blob != null) {
+            // MCP embedded resource: the base64 blob is streamed once, outside of data
+            Map<String, Object> resource = new HashMap<>();
+            resource.put("uri", s3Result.get("uri"));
+            resource.put("mimeType", s3Result.get("contentType") != null ? s3Result.get("contentType") : "application/octet-stream");
+            resource.put("blob", blob);
+            
+            Map<String, Object> resourceContent = new HashMap<>();
+            resourceContent.put("type", "resource");
+            resourceContent.put("resource", resource);
+            result.put("content", List.of(content, resourceContent));
+        } else {
+            result.put("content", List.of(content));
+        }
+        result.put("data", s3Result);
+        
+        log.info("downloadObject tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute getObjectMetadata tool on the async client
+     */
+    private CompletableFuture<Map<String, Object>> executeGetObjectMetadataAsync(Map<String, Object> arguments) {
+        log.info("Executing getObjectMetadata tool (async)");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String objectKey = (String) arguments.get("objectKey");
+        
+        return s3AsyncService.getObjectMetadata(endpoint, token, userToken, bucketName, objectKey)
+                .thenApply(s3Result -> toGetObjectMetadataResult(objectKey, s3Result));
+    }
+    
+    /**
+     * Wrap a getObjectMetadata result into tool content
+     */
+    private Map<String, Object> toGetObjectMetadataResult(String objectKey, Map<String, Object> s3Result) {
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "Metadata retrieved for: " + objectKey);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("getObjectMetadata tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute getObjectsMetadata tool - HEAD requests always run on the async client
+     */
+    private CompletableFuture<Map<String, Object>> executeGetObjectsMetadata(Map<String, Object> arguments) {
+        log.info("Executing getObjectsMetadata tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        List<String> objectKeys = getStringListArgument(arguments, "objectKeys");
+        Long concurrency = getLongArgument(arguments, "concurrency");
+        
+        return s3AsyncService.getObjectsMetadata(endpoint, token, userToken, bucketName, objectKeys,
+                        concurrency != null ? concurrency.intValue() : null)
+                .thenApply(s3Result -> {
+                    Map<String, Object> content = new HashMap<>();
+                    content.put("type", "text");
+                    content.put("text", "Metadata retrieved for " + s3Result.get("found") + " of " + s3Result.get("count")
+                            + " object(s) (" + s3Result.get("notFound") + " not found, " + s3Result.get("errors") + " failed)");
+                    
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("content", List.of(content));
+                    result.put("data", s3Result);
+                    
+                    log.info("getObjectsMetadata tool executed successfully");
+                    return result;
+                });
+    }
+    
+    /**
+     * Execute readObjectRange tool
+     */
+    private Map<String, Object> executeReadObjectRange(Map<String, Object> arguments) {
+        log.info("Executing readObjectRange tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String objectKey = (String) arguments.get("objectKey");
+        Long offset = getLongArgument(arguments, "offset");
+        Long length = getLongArgument(arguments, "length");
+        String range = (String) arguments.get("range");
+        
+        Map<String, Object> s3Result = s3Service.readObjectRange(endpoint, token, userToken, bucketName, objectKey,
+                offset, length, range);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "Range " + s3Result.get("range") + " read from: " + objectKey
+                + " (" + s3Result.get("length") + " of " + s3Result.getOrDefault("totalSize", "?") + " bytes"
+                + (Boolean.TRUE.equals(s3Result.get("binary")) ? ", binary, base64" : "") + ")");
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("readObjectRange tool executed successfully");
         return result;
     }
     
     /**
-     * Execute getObjectMetadata tool
+     * Execute uploadObject tool
      */
-    private Map<String, Object> executeGetObjectMetadata(Map<String, Object> arguments) {
-        log.info("Executing getObjectMetadata tool");
+    private Map<String, Object> executeUploadObject(Map<String, Object> arguments) {
+        log.info("Executing uploadObject tool");
         
         String token = (String) arguments.get("token");
         String endpoint = (String) arguments.get("endpoint");
         String userToken = (String) arguments.get("userToken");
         String bucketName = (String) arguments.get("bucketName");
         String objectKey = (String) arguments.get("objectKey");
+        String encodedContent = (String) arguments.get("content");
+        String contentEncoding = (String) arguments.getOrDefault("contentEncoding", "utf-8");
+        String contentType = (String) arguments.get("contentType");
+        
+        byte[] data;
+        if (encodedContent == null) {
+            data = null;
+        } else if ("base64".equalsIgnoreCase(contentEncoding)) {
+            data = decodeBase64(encodedContent);
+        } else if ("utf-8".equalsIgnoreCase(contentEncoding)) {
+            // Every char encodes to at least one byte
+            checkUploadSize(encodedContent.length());
+            data = encodedContent.getBytes(StandardCharsets.UTF_8);
+            checkUploadSize(data.length);
+        } else {
+            throw new IllegalArgumentException("contentEncoding must be utf-8 or base64");
+        }
         
-        Map<String, Object> s3Result = s3Service.getObjectMetadata(endpoint, token, userToken, bucketName, objectKey);
+        Map<String, Object> s3Result = s3Service.uploadObject(endpoint, token, userToken, bucketName, objectKey,
+                data, contentType);
         
         Map<String, Object> content = new HashMap<>();
         content.put("type", "text");
-        content.put("text", "Metadata retrieved for: " + objectKey);
+        content.put("text", "Uploaded: " + objectKey + " (" + s3Result.get("size") + " bytes"
+                + (Boolean.TRUE.equals(s3Result.get("multipart")) ? ", " + s3Result.get("parts") + " parts" : "") + ")");
         
         Map<String, Object> result = new HashMap<>();
         result.put("content", List.of(content));
         result.put("data", s3Result);
         
-        log.info("getObjectMetadata tool executed successfully");
+        log.info("uploadObject tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Decode base64 content strictly: line breaks and spaces are allowed, any other invalid character is rejected
+     */
+    private byte[] decodeBase64(String encodedContent) {
+        StringBuilder stripped = new StringBuilder(encodedContent.length());
+        for (int i = 0; i < encodedContent.length(); i++) {
+            char c = encodedContent.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                stripped.append(c);
+            }
+        }
+        // 4 base64 characters per 3 bytes - checked before allocating the decoded content
+        checkUploadSize(stripped.length() / 4L * 3);
+        try {
+            return Base64.getDecoder().decode(stripped.toString());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("content is not valid base64: " + e.getMessage());
+        }
+    }
+    
+    private void checkUploadSize(long size) {
+        if (size > maxUploadSize) {
+            throw new IllegalArgumentException("content exceeds the maximum upload size of " + maxUploadSize + " bytes");
+        }
+    }
+    
+    /**
+     * Execute copyObject tool
+     */
+    private Map<String, Object> executeCopyObject(Map<String, Object> arguments) {
+        log.info("Executing copyObject tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String sourceBucketName = (String) arguments.get("sourceBucketName");
+        String sourceKey = (String) arguments.get("sourceKey");
+        String destinationBucketName = (String) arguments.get("destinationBucketName");
+        if (destinationBucketName == null) {
+            // Absent or explicit null: copy within the source bucket
+            destinationBucketName = sourceBucketName;
+        }
+        String destinationKey = (String) arguments.get("destinationKey");
+        
+        Map<String, Object> s3Result = s3Service.copyObject(endpoint, token, userToken,
+                sourceBucketName, sourceKey, destinationBucketName, destinationKey);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "Copied: " + sourceBucketName + "/" + sourceKey + " to " + destinationBucketName + "/" + destinationKey
+                + " (" + s3Result.get("size") + " bytes"
+                + (Boolean.TRUE.equals(s3Result.get("multipart")) ? ", " + s3Result.get("parts") + " parts" : "") + ")");
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("copyObject tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute deleteObjects tool
+     */
+    private Map<String, Object> executeDeleteObjects(Map<String, Object> arguments) {
+        log.info("Executing deleteObjects tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String prefix = (String) arguments.get("prefix");
+        List<String> objectKeys = getStringListArgument(arguments, "objectKeys");
+        Long concurrency = getLongArgument(arguments, "concurrency");
+        
+        Map<String, Object> s3Result = s3Service.deleteObjects(endpoint, token, userToken, bucketName, prefix,
+                objectKeys, concurrency != null ? concurrency.intValue() : null);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "Deleted " + s3Result.get("deleted") + " object(s) from " + bucketName
+                + " (" + s3Result.get("failed") + " failed)");
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("deleteObjects tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute searchObject tool
+     */
+    private Map<String, Object> executeSearchObject(Map<String, Object> arguments) {
+        log.info("Executing searchObject tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String objectKey = (String) arguments.get("objectKey");
+        String pattern = (String) arguments.get("pattern");
+        boolean regex = getBooleanArgument(arguments, "regex", false);
+        boolean ignoreCase = getBooleanArgument(arguments, "ignoreCase", false);
+        Long maxMatches = getLongArgument(arguments, "maxMatches");
+        
+        Map<String, Object> s3Result = s3Service.searchObject(endpoint, token, userToken, bucketName, objectKey,
+                pattern, regex, ignoreCase, maxMatches != null ? maxMatches.intValue() : null);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", s3Result.get("matchCount") + " matching line(s) in: " + objectKey
+                + (Boolean.TRUE.equals(s3Result.get("complete"))
+                        ? " (" + s3Result.get("linesScanned") + " lines scanned)"
+                        : " (stopped at maxMatches after " + s3Result.get("bytesScanned") + " bytes)"));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("searchObject tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute previewObject tool
+     */
+    private Map<String, Object> executePreviewObject(Map<String, Object> arguments) {
+        log.info("Executing previewObject tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String objectKey = (String) arguments.get("objectKey");
+        Long lines = getLongArgument(arguments, "lines");
+        boolean fromEnd = getBooleanArgument(arguments, "fromEnd", false);
+        
+        Map<String, Object> s3Result = s3Service.previewObject(endpoint, token, userToken, bucketName, objectKey,
+                lines != null ? lines.intValue() : null, fromEnd);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        if (Boolean.TRUE.equals(s3Result.get("tailUnavailable"))) {
+            content.put("text", "Last lines unavailable, the object needs a whole scan and is larger than the preview limit: " + objectKey
+                    + " (" + s3Result.get("size") + " bytes)");
+        } else if (Boolean.TRUE.equals(s3Result.get("binary"))) {
+            content.put("text", "Binary object, no preview: " + objectKey + " (" + s3Result.get("size") + " bytes, "
+                    + s3Result.get("contentType") + ")");
+        } else {
+            StringJoiner text = new StringJoiner("\n");
+            for (Object line : (List<?>) s3Result.get("lines")) {
+                text.add(String.valueOf(line));
+            }
+            content.put("text", text.toString());
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("previewObject tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute indexBucket tool
+     */
+    private Map<String, Object> executeIndexBucket(Map<String, Object> arguments) {
+        log.info("Executing indexBucket tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        boolean rebuild = getBooleanArgument(arguments, "rebuild", false);
+        
+        Map<String, Object> s3Result = s3Service.indexBucket(endpoint, token, userToken, bucketName, rebuild);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "Key index of bucket " + bucketName + ": " + s3Result.get("status")
+                + (s3Result.get("keys") != null ? " (" + s3Result.get("keys") + " keys)" : ""));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("indexBucket tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute queryKeyIndex tool
+     */
+    private Map<String, Object> executeQueryKeyIndex(Map<String, Object> arguments) {
+        log.info("Executing queryKeyIndex tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String prefix = (String) arguments.get("prefix");
+        String pattern = (String) arguments.get("pattern");
+        boolean countOnly = getBooleanArgument(arguments, "countOnly", false);
+        Long maxResults = getLongArgument(arguments, "maxResults");
+        
+        Map<String, Object> s3Result = s3Service.queryKeyIndex(endpoint, token, userToken, bucketName, prefix, pattern,
+                countOnly, maxResults != null ? maxResults.intValue() : null);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", Boolean.TRUE.equals(s3Result.get("ready"))
+                ? s3Result.get("count") + " indexed object(s), " + s3Result.get("totalSize") + " bytes in bucket: " + bucketName
+                : "Key index of bucket " + bucketName + " not ready: " + s3Result.get("status"));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("queryKeyIndex tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute findObjects tool
+     */
+    private Map<String, Object> executeFindObjects(Map<String, Object> arguments) {
+        log.info("Executing findObjects tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String pattern = (String) arguments.get("pattern");
+        boolean regex = getBooleanArgument(arguments, "regex", false);
+        Long maxResults = getLongArgument(arguments, "maxResults");
+        
+        Map<String, Object> s3Result = s3Service.findObjects(endpoint, token, userToken, bucketName, pattern, regex,
+                maxResults != null ? maxResults.intValue() : null);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "Found " + s3Result.get("count") + " object(s) matching " + pattern + " in bucket: " + bucketName
+                + (Boolean.TRUE.equals(s3Result.get("isTruncated")) ? " (truncated)" : ""));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("findObjects tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute summarizePrefix tool
+     */
+    private Map<String, Object> executeSummarizePrefix(Map<String, Object> arguments) {
+        log.info("Executing summarizePrefix tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String prefix = (String) arguments.get("prefix");
+        Long parallelism = getLongArgument(arguments, "parallelism");
+        
+        Map<String, Object> s3Result = s3Service.summarizePrefix(endpoint, token, userToken, bucketName, prefix,
+                parallelism != null ? parallelism.intValue() : null);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", s3Result.get("objects") + " object(s), " + s3Result.get("totalBytes") + " bytes under '"
+                + s3Result.get("prefix") + "' in bucket: " + bucketName);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("summarizePrefix tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute listDirectory tool
+     */
+    private Map<String, Object> executeListDirectory(Map<String, Object> arguments) {
+        log.info("Executing listDirectory tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String prefix = (String) arguments.get("prefix");
+        Long depth = getLongArgument(arguments, "depth");
+        Long maxEntries = getLongArgument(arguments, "maxEntries");
+        String cursor = (String) arguments.get("cursor");
+        
+        Map<String, Object> s3Result = s3Service.listDirectory(endpoint, token, userToken, bucketName, prefix,
+                depth != null ? depth.intValue() : null,
+                maxEntries != null ? maxEntries.intValue() : null,
+                cursor);
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", "Listed " + s3Result.get("count") + " folder(s) and file(s) under '" + s3Result.get("prefix")
+                + "' in bucket: " + bucketName);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("listDirectory tool executed successfully");
+        return result;
+    }
+    
+    /**
+     * Execute diffPrefixes tool
+     */
+    private Map<String, Object> executeDiffPrefixes(Map<String, Object> arguments) {
+        log.info("Executing diffPrefixes tool");
+        
+        String token = (String) arguments.get("token");
+        String endpoint = (String) arguments.get("endpoint");
+        String userToken = (String) arguments.get("userToken");
+        String bucketName = (String) arguments.get("bucketName");
+        String prefix = (String) arguments.get("prefix");
+        String targetEndpoint = (String) arguments.get("targetEndpoint");
+        String targetToken = (String) arguments.get("targetToken");
+        String targetUserToken = (String) arguments.get("targetUserToken");
+        String targetBucketName = (String) arguments.get("targetBucketName");
+        String targetPrefix = (String) arguments.get("targetPrefix");
+        boolean sync = getBooleanArgument(arguments, "sync", false);
+        boolean deleteExtra = getBooleanArgument(arguments, "deleteExtra", false);
+        Long concurrency = getLongArgument(arguments, "concurrency");
+        
+        Map<String, Object> s3Result = s3Service.diffPrefixes(endpoint, token, userToken, bucketName, prefix,
+                targetEndpoint, targetToken, targetUserToken, targetBucketName, targetPrefix,
+                sync, deleteExtra, concurrency != null ? concurrency.intValue() : null);
+        
+        StringBuilder text = new StringBuilder();
+        text.append(s3Result.get("addedCount")).append(" added, ")
+                .append(s3Result.get("removedCount")).append(" removed, ")
+                .append(s3Result.get("changedCount")).append(" changed, ")
+                .append(s3Result.get("unchangedCount")).append(" unchanged key(s)");
+        if (s3Result.get("sync") instanceof Map<?, ?> syncResult) {
+            text.append("; synced: ").append(syncResult.get("copied")).append(" copied, ")
+                    .append(syncResult.get("deleted")).append(" deleted, ")
+                    .append(((Long) syncResult.get("copyFailed")) + ((Long) syncResult.get("deleteFailed")))
+                    .append(" failed");
+        }
+        
+        Map<String, Object> content = new HashMap<>();
+        content.put("type", "text");
+        content.put("text", text.toString());
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", List.of(content));
+        result.put("data", s3Result);
+        
+        log.info("diffPrefixes tool executed successfully");
         return result;
     }
     
+    /**
+     * Read an optional numeric argument (JSON numbers or numeric strings)
+     */
+    private Long getLongArgument(Map<String, Object> arguments, String name) {
+        Object value = arguments.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Argument " + name + " must be a number");
+        }
+    }
+    
+    /**
+     * Read an optional list of strings argument
+     */
+    private List<String> getStringListArgument(Map<String, Object> arguments, String name) {
+        Object value = arguments.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("Argument " + name + " must be an array of strings");
+        }
+        List<String> strings = new ArrayList<>(list.size());
+        for (Object item : list) {
+            if (!(item instanceof String string)) {
+                throw new IllegalArgumentException("Argument " + name + " must be an array of strings");
+            }
+            strings.add(string);
+        }
+        return strings;
+    }
+    
+    /**
+     * Read an optional boolean argument (JSON booleans or "true"/"false" strings)
+     */
+    private boolean getBooleanArgument(Map<String, Object> arguments, String name, boolean defaultValue) {
+        Object value = arguments.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        return Boolean.parseBoolean(value.toString().trim());
+    }
+    
     /**
      * Request elicitation from user - MCP 2025-06-18
      */
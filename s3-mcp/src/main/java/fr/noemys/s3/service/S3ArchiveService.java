@@ -0,0 +1,261 @@
+package fr.noemys.s3.service;
+
+import fr.noemys.s3.model.ArchiveRequest;
+import fr.noemys.s3.service.cache.S3ClientCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.regex.Pattern;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a ZIP archive of several objects straight to the HTTP response.
+ * The next objects are requested on the async client while the current one is written,
+ * and each object is copied in small chunks, so memory per archive stays bounded
+ * by the prefetch window whatever the size of the objects.
+ * 
+ * @version 1.0.0
+ */
+@Service
+public class S3ArchiveService {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3ArchiveService.class);
+    
+    // Entry name of a key made only of separators, dots and slashes
+    private static final String UNNAMED_ENTRY = "unnamed";
+    
+    // S3 bucket naming rules - the name also ends up in the Content-Disposition of the archive
+    private static final Pattern BUCKET_NAME = Pattern.compile("^[a-z0-9][a-z0-9.-]{1,61}[a-z0-9]$");
+    
+    private final S3ClientCache clientCache;
+    
+    @Value("${mcp.s3.archive.prefetch:4}")
+    private int prefetch;
+    
+    @Value("${mcp.s3.archive.max-objects:10000}")
+    private int maxObjects;
+    
+    @Autowired
+    public S3ArchiveService(S3ClientCache clientCache) {
+        this.clientCache = clientCache;
+    }
+    
+    /**
+     * Check an archive request before anything is written to the response
+     */
+    public void validate(ArchiveRequest request) {
+        if (request.getBucketName() == null || request.getBucketName().isBlank()) {
+            throw new IllegalArgumentException("bucketName is required");
+        }
+        if (!BUCKET_NAME.matcher(request.getBucketName()).matches()) {
+            throw new IllegalArgumentException("Invalid bucketName: " + request.getBucketName());
+        }
+        boolean hasKeys = request.getObjectKeys() != null && !request.getObjectKeys().isEmpty();
+        if (hasKeys == (request.getPrefix() != null)) {
+            throw new IllegalArgumentException("Either prefix or objectKeys is required, not both");
+        }
+        if (hasKeys && request.getObjectKeys().size() > maxObjects) {
+            throw new IllegalArgumentException("Archives are limited to " + maxObjects + " objects");
+        }
+        if (request.getCompression() != null
+                && !"store".equals(request.getCompression()) && !"deflate".equals(request.getCompression())) {
+            throw new IllegalArgumentException("compression must be 'store' or 'deflate'");
+        }
+    }
+    
+    /**
+     * Write the archive to out. The archive is only finished when every object was written,
+     * so a failure part way leaves a truncated archive rather than a valid incomplete one.
+     * 
+     * @return the number of entries written
+     */
+    public int writeArchive(ArchiveRequest request, OutputStream out) throws IOException {
+        validate(request);
+        String bucketName = request.getBucketName();
+        log.info("Streaming ZIP archive of bucket {} ({})", bucketName,
+                request.getPrefix() != null ? "prefix '" + request.getPrefix() + "'" : request.getObjectKeys().size() + " key(s)");
+        
+        Deque<PendingObject> pending = new ArrayDeque<>();
+        try (S3ClientCache.Lease lease = clientCache.acquire(request.getEndpoint(), request.getToken(), request.getUserToken())) {
+            Iterator<String> keys = request.getPrefix() != null
+                    ? listKeys(lease.client(), bucketName, request.getPrefix())
+                    : new LinkedHashSet<>(request.getObjectKeys()).iterator();
+            
+            ZipOutputStream zip = new ZipOutputStream(out);
+            // ZipOutputStream needs the size and CRC of stored entries up front, so "store" writes
+            // deflate blocks without compression, which keeps the archive streamable
+            zip.setLevel("store".equals(request.getCompression()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+            
+            int entries = 0;
+            Set<String> entryNames = new HashSet<>();
+            fill(pending, keys, lease, bucketName);
+            while (!pending.isEmpty()) {
+                PendingObject current = pending.poll();
+                if (++entries > maxObjects) {
+                    throw new IllegalStateException("Archives are limited to " + maxObjects + " objects");
+                }
+                // Request the next objects before writing this one
+                fill(pending, keys, lease, bucketName);
+                write(zip, current, entryNames);
+            }
+            
+            zip.finish();
+            zip.flush();
+            log.info("Streamed ZIP archive of {} object(s) from bucket {}", entries, bucketName);
+            return entries;
+        } finally {
+            for (PendingObject object : pending) {
+                object.abort();
+            }
+        }
+    }
+    
+    /**
+     * Start GETs until the prefetch window is full
+     */
+    private void fill(Deque<PendingObject> pending, Iterator<String> keys, S3ClientCache.Lease lease, String bucketName) {
+        while (pending.size() < Math.max(1, prefetch) && keys.hasNext()) {
+            String objectKey = keys.next();
+            if (objectKey.endsWith("/")) {
+                // Folder marker: written as a directory entry, nothing to fetch
+                pending.add(new PendingObject(objectKey, null));
+                continue;
+            }
+            
+            GetObjectRequest getRequest = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .build();
+            pending.add(new PendingObject(objectKey, lease.asyncClient()
+                    .getObject(getRequest, AsyncResponseTransformer.<GetObjectResponse>toBlockingInputStream())));
+        }
+    }
+    
+    /**
+     * Copy one object into the archive
+     * 
+     * @param entryNames names already written, so that no duplicate entry fails the archive half way
+     */
+    private void write(ZipOutputStream zip, PendingObject object, Set<String> entryNames) throws IOException {
+        String entryName = entryName(object.objectKey());
+        if (object.response() == null) {
+            // Folder markers normalized to the same directory are written once
+            if (entryNames.add(entryName)) {
+                zip.putNextEntry(new ZipEntry(entryName));
+                zip.closeEntry();
+            }
+            return;
+        }
+        entryName = uniqueName(entryName, entryNames);
+        
+        ResponseInputStream<GetObjectResponse> stream;
+        try {
+            stream = object.response().join();
+        } catch (Exception e) {
+            Throwable cause = S3AsyncService.unwrap(e);
+            throw new RuntimeException("Failed to fetch object " + object.objectKey() + ": " + cause.getMessage(), cause);
+        }
+        
+        try (stream) {
+            ZipEntry entry = new ZipEntry(entryName);
+            if (stream.response().lastModified() != null) {
+                entry.setLastModifiedTime(FileTime.from(stream.response().lastModified()));
+            }
+            zip.putNextEntry(entry);
+            stream.transferTo(zip);
+            zip.closeEntry();
+        } catch (IOException | RuntimeException e) {
+            stream.abort();
+            throw e;
+        }
+    }
+    
+    /**
+     * Relative entry name of a key: backslashes become slashes, and empty, "." and ".." segments are dropped,
+     * so that no entry can be extracted outside of the target directory
+     */
+    static String entryName(String objectKey) {
+        // Same test as the folder markers of fill()
+        boolean directory = objectKey.endsWith("/");
+        StringBuilder name = new StringBuilder();
+        for (String segment : objectKey.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)) {
+                continue;
+            }
+            if (!name.isEmpty()) {
+                name.append('/');
+            }
+            name.append(segment);
+        }
+        if (name.isEmpty()) {
+            name.append(UNNAMED_ENTRY);
+        }
+        return directory ? name.append('/').toString() : name.toString();
+    }
+    
+    /**
+     * Name not taken yet: "a/b.txt" already written becomes "a/b (1).txt", then "a/b (2).txt"...
+     */
+    static String uniqueName(String name, Set<String> entryNames) {
+        if (entryNames.add(name)) {
+            return name;
+        }
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        // Only an extension of the file name itself, not a leading dot
+        int split = dot > slash + 1 ? dot : name.length();
+        for (int i = 1; ; i++) {
+            String candidate = name.substring(0, split) + " (" + i + ")" + name.substring(split);
+            if (entryNames.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+    
+    /**
+     * Lazily list the keys under prefix, one page at a time
+     */
+    private Iterator<String> listKeys(S3Client s3Client, String bucketName, String prefix) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .build();
+        return s3Client.listObjectsV2Paginator(request).contents().stream()
+                .map(S3Object::key)
+                .iterator();
+    }
+    
+    /**
+     * Object whose GET was started ahead of being written
+     */
+    private record PendingObject(String objectKey, CompletableFuture<ResponseInputStream<GetObjectResponse>> response) {
+        
+        void abort() {
+            if (response != null) {
+                response.thenAccept(ResponseInputStream::abort);
+            }
+        }
+    }
+}
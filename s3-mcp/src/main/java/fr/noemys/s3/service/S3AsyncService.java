@@ -0,0 +1,395 @@
+package fr.noemys.s3.service;
+
+import fr.noemys.s3.service.cache.ContentCache;
+import fr.noemys.s3.service.cache.ListingCache;
+import fr.noemys.s3.service.cache.MetadataCache;
+import fr.noemys.s3.service.cache.S3ClientCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Asynchronous S3 Service backed by S3AsyncClient (Netty NIO).
+ * No thread is held while an S3 call is in flight.
+ * 
+ * @version 1.0.0
+ */
+@Service
+public class S3AsyncService {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3AsyncService.class);
+    
+    // Downloads peek at their first bytes before completing: never block an SDK completion thread on that
+    private static final Executor SNIFF_EXECUTOR = command -> Thread.ofVirtual().name("s3-download-sniff").start(command);
+    
+    private final S3ClientCache clientCache;
+    private final ListingCache listingCache;
+    private final MetadataCache metadataCache;
+    private final ContentCache contentCache;
+    private final S3RangedDownloader rangedDownloader;
+    
+    @Value("${mcp.s3.download.max-blob-size:10485760}")
+    private long maxBlobSize;
+    
+    @Value("${mcp.s3.decompression.max-bytes:268435456}")
+    private long maxDecompressedSize;
+    
+    @Value("${mcp.s3.batch-metadata.concurrency:16}")
+    private int batchMetadataConcurrency;
+    
+    @Value("${mcp.s3.batch-metadata.max-concurrency:64}")
+    private int batchMetadataMaxConcurrency;
+    
+    @Value("${mcp.s3.batch-metadata.max-keys:1000}")
+    private int batchMetadataMaxKeys;
+    
+    @Autowired
+    public S3AsyncService(S3ClientCache clientCache, ListingCache listingCache, MetadataCache metadataCache,
+                          ContentCache contentCache, S3RangedDownloader rangedDownloader) {
+        this.clientCache = clientCache;
+        this.listingCache = listingCache;
+        this.metadataCache = metadataCache;
+        this.contentCache = contentCache;
+        this.rangedDownloader = rangedDownloader;
+    }
+    
+    /**
+     * List all buckets
+     */
+    public CompletableFuture<Map<String, Object>> listBuckets(String endpoint, String token, String userToken) {
+        log.info("Listing all buckets from endpoint: {}", endpoint);
+        
+        return execute(endpoint, token, userToken, "Failed to list buckets",
+                s3Client -> s3Client.listBuckets()
+                        .thenApply(S3Service::toBucketsResult));
+    }
+    
+    /**
+     * List one page of objects in a bucket
+     */
+    public CompletableFuture<Map<String, Object>> listObjects(String endpoint, String token, String userToken,
+                                                              String bucketName, String prefix,
+                                                              Integer maxKeys, String startAfter, String cursor) {
+        log.info("Listing objects in bucket: {} with prefix: {}", bucketName, prefix);
+        
+        ListObjectsV2Request request = S3Service.buildListObjectsRequest(bucketName, prefix, maxKeys, startAfter, cursor);
+        ListingCache.ListingKey cacheKey = listingCache.key(endpoint, token, userToken, bucketName, prefix, cursor,
+                "page", maxKeys, startAfter);
+        Map<String, Object> cached = listingCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        return execute(endpoint, token, userToken, "Failed to list objects",
+                s3Client -> s3Client.listObjectsV2(request)
+                        .thenApply(response -> listingCache.put(cacheKey,
+                                S3Service.toObjectsResult(response, bucketName, prefix))));
+    }
+    
+    /**
+     * Download an object from a bucket - large objects are read with parallel ranges
+     */
+    public CompletableFuture<Map<String, Object>> downloadObject(String endpoint, String token, String userToken,
+                                                                 String bucketName, String objectKey) {
+        log.info("Downloading object: {} from bucket: {}", objectKey, bucketName);
+        
+        // The future completes on response headers; the body is pulled while the result is serialized
+        // so the lease is released with the stream rather than on completion
+        S3ClientCache.Lease lease;
+        try {
+            lease = clientCache.acquire(endpoint, token, userToken);
+        } catch (Exception e) {
+            log.error("Error creating S3 async client", e);
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to download object: " + e.getMessage(), e));
+        }
+        
+        try {
+            return contentCache.open(contentCache.key(endpoint, bucketName, objectKey),
+                            eTag -> rangedDownloader.open(lease.asyncClient(), bucketName, objectKey, eTag))
+                    .handleAsync((stream, error) -> {
+                        if (error != null) {
+                            lease.close();
+                            Throwable cause = unwrap(error);
+                            log.error("Failed to download object", cause);
+                            throw new CompletionException(
+                                    new RuntimeException("Failed to download object: " + cause.getMessage(), cause));
+                        }
+                        return S3Service.toDownloadResult(bucketName, objectKey, stream, lease, maxBlobSize,
+                                maxDecompressedSize);
+                    }, SNIFF_EXECUTOR);
+        } catch (Exception e) {
+            lease.close();
+            log.error("Failed to download object", e);
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to download object: " + e.getMessage(), e));
+        }
+    }
+    
+    /**
+     * Get object metadata
+     */
+    public CompletableFuture<Map<String, Object>> getObjectMetadata(String endpoint, String token, String userToken,
+                                                                    String bucketName, String objectKey) {
+        log.info("Getting metadata for object: {} in bucket: {}", objectKey, bucketName);
+        
+        MetadataCache.MetadataKey cacheKey = metadataCache.key(endpoint, token, userToken, bucketName, objectKey);
+        MetadataCache.CachedMetadata cached = metadataCache.get(cacheKey);
+        if (cached != null) {
+            return cached.found()
+                    ? CompletableFuture.completedFuture(cached.metadata())
+                    : CompletableFuture.failedFuture(new RuntimeException(
+                            "Failed to get object metadata: Object not found: " + objectKey + " (cached)"));
+        }
+        
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(objectKey)
+                .build();
+        
+        return execute(endpoint, token, userToken, "Failed to get object metadata",
+                s3Client -> s3Client.headObject(request)
+                        .whenComplete((response, error) -> {
+                            if (error != null) {
+                                metadataCache.putIfNotFound(cacheKey, error);
+                            }
+                        })
+                        .thenApply(response -> {
+                            log.info("Retrieved metadata for object {}", objectKey);
+                            return metadataCache.putFound(cacheKey, S3Service.toMetadataResult(objectKey, response));
+                        }));
+    }
+    
+    /**
+     * Get the metadata of many objects with concurrent HEAD requests on one client.
+     * At most concurrency requests are in flight; each key gets its own result or error.
+     */
+    public CompletableFuture<Map<String, Object>> getObjectsMetadata(String endpoint, String token, String userToken,
+                                                                     String bucketName, List<String> objectKeys,
+                                                                     Integer concurrency) {
+        if (objectKeys == null || objectKeys.isEmpty()) {
+            throw new IllegalArgumentException("objectKeys must contain at least one key");
+        }
+        if (objectKeys.size() > batchMetadataMaxKeys) {
+            throw new IllegalArgumentException("objectKeys is limited to " + batchMetadataMaxKeys + " keys per call");
+        }
+        if (concurrency != null && concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be greater than 0");
+        }
+        int window = Math.max(1, Math.min(concurrency != null ? concurrency : batchMetadataConcurrency,
+                batchMetadataMaxConcurrency));
+        log.info("Getting metadata for {} object(s) in bucket: {} ({} concurrent request(s))",
+                objectKeys.size(), bucketName, window);
+        
+        S3ClientCache.Lease lease;
+        try {
+            lease = clientCache.acquire(endpoint, token, userToken);
+        } catch (Exception e) {
+            log.error("Error creating S3 async client", e);
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to get objects metadata: " + e.getMessage(), e));
+        }
+        
+        MetadataBatch batch = new MetadataBatch(lease.asyncClient(), endpoint, token, userToken, bucketName, objectKeys);
+        for (int i = 0; i < Math.min(window, objectKeys.size()); i++) {
+            batch.headNext();
+        }
+        
+        return batch.done.handle((ignored, error) -> {
+            lease.close();
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                log.error("Failed to get objects metadata", cause);
+                throw new CompletionException(
+                        new RuntimeException("Failed to get objects metadata: " + cause.getMessage(), cause));
+            }
+            return batch.toResult(window);
+        });
+    }
+    
+    /**
+     * State of a getObjectsMetadata call: every completed HEAD starts the next pending key,
+     * which keeps a constant number of requests in flight without holding a thread.
+     */
+    private final class MetadataBatch {
+        
+        private final S3AsyncClient s3Client;
+        private final String endpoint;
+        private final String token;
+        private final String userToken;
+        private final String bucketName;
+        private final List<String> objectKeys;
+        private final AtomicReferenceArray<Map<String, Object>> results;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        
+        private MetadataBatch(S3AsyncClient s3Client, String endpoint, String token, String userToken,
+                              String bucketName, List<String> objectKeys) {
+            this.s3Client = s3Client;
+            this.endpoint = endpoint;
+            this.token = token;
+            this.userToken = userToken;
+            this.bucketName = bucketName;
+            this.objectKeys = objectKeys;
+            this.results = new AtomicReferenceArray<>(objectKeys.size());
+            this.remaining = new AtomicInteger(objectKeys.size());
+        }
+        
+        /**
+         * Send the HEAD of the next pending key, answering cached keys on the way
+         */
+        private void headNext() {
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < objectKeys.size()) {
+                String objectKey = objectKeys.get(index);
+                MetadataCache.MetadataKey cacheKey = metadataCache.key(endpoint, token, userToken, bucketName, objectKey);
+                MetadataCache.CachedMetadata cached = metadataCache.get(cacheKey);
+                if (cached != null) {
+                    complete(index, cached.found()
+                            ? found(objectKey, cached.metadata())
+                            : failed(objectKey, "notFound", "Object not found (cached)"));
+                    continue;
+                }
+                
+                int slot = index;
+                CompletableFuture<HeadObjectResponse> head;
+                try {
+                    head = s3Client.headObject(HeadObjectRequest.builder()
+                            .bucket(bucketName)
+                            .key(objectKey)
+                            .build());
+                } catch (Exception e) {
+                    head = CompletableFuture.failedFuture(e);
+                }
+                head.whenComplete((response, error) -> {
+                    if (error == null) {
+                        complete(slot, found(objectKey,
+                                metadataCache.putFound(cacheKey, S3Service.toMetadataResult(objectKey, response))));
+                    } else {
+                        Throwable cause = unwrap(error);
+                        metadataCache.putIfNotFound(cacheKey, cause);
+                        complete(slot, MetadataCache.isNotFound(cause)
+                                ? failed(objectKey, "notFound", "Object not found")
+                                : failed(objectKey, "error", cause.getMessage()));
+                    }
+                    headNext();
+                });
+                return;
+            }
+        }
+        
+        private void complete(int index, Map<String, Object> result) {
+            results.set(index, result);
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        }
+        
+        private Map<String, Object> found(String objectKey, Map<String, Object> metadata) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("key", objectKey);
+            result.put("status", "ok");
+            result.put("metadata", metadata);
+            return result;
+        }
+        
+        private Map<String, Object> failed(String objectKey, String status, String error) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("key", objectKey);
+            result.put("status", status);
+            result.put("error", error);
+            return result;
+        }
+        
+        /**
+         * Per-key results in request order, with counts
+         */
+        private Map<String, Object> toResult(int window) {
+            List<Map<String, Object>> objects = new ArrayList<>(results.length());
+            int foundCount = 0;
+            int notFoundCount = 0;
+            for (int i = 0; i < results.length(); i++) {
+                Map<String, Object> result = results.get(i);
+                objects.add(result);
+                if ("ok".equals(result.get("status"))) {
+                    foundCount++;
+                } else if ("notFound".equals(result.get("status"))) {
+                    notFoundCount++;
+                }
+            }
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("bucketName", bucketName);
+            result.put("objects", objects);
+            result.put("count", objects.size());
+            result.put("found", foundCount);
+            result.put("notFound", notFoundCount);
+            result.put("errors", objects.size() - foundCount - notFoundCount);
+            result.put("concurrency", window);
+            result.put("durationMs", (System.nanoTime() - startNanos) / 1_000_000);
+            
+            log.info("Retrieved metadata for {}/{} object(s) in bucket {}", foundCount, objects.size(), bucketName);
+            return result;
+        }
+    }
+    
+    /**
+     * Run an operation on a leased async client, releasing the lease when the call completes
+     */
+    private <T> CompletableFuture<T> execute(String endpoint, String token, String userToken, String errorMessage,
+                                             Function<S3AsyncClient, CompletableFuture<T>> operation) {
+        S3ClientCache.Lease lease;
+        CompletableFuture<T> future;
+        
+        try {
+            lease = clientCache.acquire(endpoint, token, userToken);
+        } catch (Exception e) {
+            log.error("Error creating S3 async client", e);
+            return CompletableFuture.failedFuture(new RuntimeException(errorMessage + ": " + e.getMessage(), e));
+        }
+        
+        try {
+            future = operation.apply(lease.asyncClient());
+        } catch (Exception e) {
+            lease.close();
+            log.error(errorMessage, e);
+            return CompletableFuture.failedFuture(new RuntimeException(errorMessage + ": " + e.getMessage(), e));
+        }
+        
+        return future.handle((result, error) -> {
+            lease.close();
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                log.error(errorMessage, cause);
+                throw new CompletionException(new RuntimeException(errorMessage + ": " + cause.getMessage(), cause));
+            }
+            return result;
+        });
+    }
+    
+    /**
+     * Unwrap the completion wrappers added by CompletableFuture
+     */
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,153 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batched delete engine built on the multi-object delete API.
+ * Keys are grouped into DeleteObjects requests of up to 1000 keys as they are read (a prefix listing
+ * is consumed page by page), and batches run concurrently on a bounded worker pool.
+ * Per-key failures are collected instead of failing the whole call.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3BatchDeleter {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3BatchDeleter.class);
+    
+    // DeleteObjects accepts at most 1000 keys per request
+    static final int MAX_KEYS_PER_REQUEST = 1000;
+    
+    @Value("${mcp.s3.delete.concurrency:8}")
+    private int defaultConcurrency;
+    
+    @Value("${mcp.s3.delete.max-concurrency:32}")
+    private int maxConcurrency;
+    
+    @Value("${mcp.s3.delete.max-reported-errors:1000}")
+    private int maxReportedErrors;
+    
+    /**
+     * Delete every key returned by keys
+     * 
+     * @return deleted and failed counts, with the first failures per key
+     */
+    public Map<String, Object> delete(S3Client s3Client, String bucketName, Iterator<String> keys, Integer concurrency) {
+        int workers = Math.max(1, Math.min(concurrency != null ? concurrency : defaultConcurrency, maxConcurrency));
+        long startNanos = System.nanoTime();
+        
+        AtomicLong deleted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        // Bounds the batches read ahead of the workers, so a huge prefix is never held in memory
+        Semaphore slots = new Semaphore(workers);
+        int batches = 0;
+        
+        try (ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofVirtual().name("s3-delete-", 0).factory())) {
+            List<Future<?>> deletions = new ArrayList<>();
+            List<String> batch = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+            while (keys.hasNext()) {
+                batch.add(keys.next());
+                if (batch.size() < MAX_KEYS_PER_REQUEST && keys.hasNext()) {
+                    continue;
+                }
+                
+                List<String> batchKeys = batch;
+                batch = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+                slots.acquireUninterruptibly();
+                deletions.add(pool.submit(() -> {
+                    try {
+                        deleteBatch(s3Client, bucketName, batchKeys, deleted, failed, errors);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+                batches++;
+            }
+            for (Future<?> deletion : deletions) {
+                S3ParallelLister.await(deletion, pool);
+            }
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("bucketName", bucketName);
+        result.put("deleted", deleted.get());
+        result.put("failed", failed.get());
+        result.put("errors", errors);
+        result.put("errorsTruncated", failed.get() > errors.size());
+        result.put("batches", batches);
+        result.put("concurrency", workers);
+        result.put("durationMs", (System.nanoTime() - startNanos) / 1_000_000);
+        
+        log.info("Deleted {} object(s) from bucket {} in {} batch(es), {} failure(s)",
+                deleted.get(), bucketName, batches, failed.get());
+        return result;
+    }
+    
+    /**
+     * One DeleteObjects request in quiet mode: only failures are returned.
+     * A failed request marks all its keys as failed.
+     */
+    private void deleteBatch(S3Client s3Client, String bucketName, List<String> keys,
+                             AtomicLong deleted, AtomicLong failed, List<Map<String, Object>> errors) {
+        List<ObjectIdentifier> objects = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            objects.add(ObjectIdentifier.builder().key(key).build());
+        }
+        
+        try {
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder()
+                            .objects(objects)
+                            .quiet(true)
+                            .build())
+                    .build());
+            
+            deleted.addAndGet(keys.size() - response.errors().size());
+            failed.addAndGet(response.errors().size());
+            for (S3Error error : response.errors()) {
+                addError(errors, error.key(), error.code(), error.message());
+            }
+        } catch (Exception e) {
+            log.error("Error deleting a batch of {} object(s) from bucket {}", keys.size(), bucketName, e);
+            failed.addAndGet(keys.size());
+            for (String key : keys) {
+                addError(errors, key, "RequestFailed", e.getMessage());
+            }
+        }
+    }
+    
+    private void addError(List<Map<String, Object>> errors, String key, String code, String message) {
+        synchronized (errors) {
+            if (errors.size() >= maxReportedErrors) {
+                return;
+            }
+            Map<String, Object> error = new HashMap<>();
+            error.put("key", key);
+            error.put("code", code);
+            error.put("message", message);
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Directory-style browsing of a bucket.
+ * One level is listed with delimiter "/": commonPrefixes are the folders and contents the files, so a level
+ * costs one small request whatever the number of keys below it. Deeper levels are expanded breadth-first,
+ * the folders of a level being listed concurrently, within a budget of directories and of entries per call.
+ * Entries are reserved from the budget before each request, so concurrent listings never return more in total.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3DirectoryLister {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3DirectoryLister.class);
+    
+    private static final String DELIMITER = "/";
+    
+    @Value("${mcp.s3.directory.max-entries:1000}")
+    private int maxEntriesLimit;
+    
+    @Value("${mcp.s3.directory.max-depth:5}")
+    private int maxDepth;
+    
+    @Value("${mcp.s3.directory.max-directories:500}")
+    private int maxDirectories;
+    
+    @Value("${mcp.s3.directory.concurrency:8}")
+    private int concurrency;
+    
+    /**
+     * List a directory and its sub-directories down to depth levels, up to maxEntries entries in total
+     * 
+     * @param continuationToken continuation of the top-level directory, or null
+     */
+    public Map<String, Object> list(S3Client s3Client, String bucketName, String prefix, Integer depth,
+                                    Integer maxEntries, String continuationToken) {
+        int levels = depth != null ? depth : 1;
+        if (levels < 1 || levels > maxDepth) {
+            throw new IllegalArgumentException("depth must be between 1 and " + maxDepth);
+        }
+        if (maxEntries != null && maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        int limit = Math.min(maxEntries != null ? maxEntries : maxEntriesLimit, maxEntriesLimit);
+        String directory = prefix != null ? prefix : "";
+        if (!directory.isEmpty() && !directory.endsWith(DELIMITER)) {
+            // "logs" is browsed as the folder "logs/"
+            directory += DELIMITER;
+        }
+        long startTime = System.currentTimeMillis();
+        
+        AtomicInteger requests = new AtomicInteger();
+        // Entries left for the whole expansion
+        AtomicInteger budget = new AtomicInteger(limit);
+        Level root = listLevel(s3Client, bucketName, directory, continuationToken, budget, requests);
+        int directoriesListed = 1;
+        int entries = root.entries();
+        boolean expansionTruncated = false;
+        
+        List<Map<String, Object>> frontier = root.folders();
+        try (ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency),
+                Thread.ofVirtual().name("s3-dir-", 0).factory())) {
+            for (int level = 1; level < levels && !frontier.isEmpty(); level++) {
+                if (budget.get() <= 0) {
+                    expansionTruncated = true;
+                    break;
+                }
+                int room = maxDirectories - directoriesListed;
+                if (frontier.size() > room) {
+                    expansionTruncated = true;
+                    frontier = frontier.subList(0, Math.max(room, 0));
+                }
+                
+                List<Future<Level>> listings = new ArrayList<>();
+                for (Map<String, Object> folder : frontier) {
+                    String folderPrefix = (String) folder.get("prefix");
+                    listings.add(pool.submit(() -> listLevel(s3Client, bucketName, folderPrefix, null, budget, requests)));
+                }
+                
+                List<Map<String, Object>> next = new ArrayList<>();
+                for (int i = 0; i < listings.size(); i++) {
+                    Level listing = S3ParallelLister.await(listings.get(i), pool);
+                    frontier.get(i).putAll(listing.listing());
+                    entries += listing.entries();
+                    next.addAll(listing.folders());
+                }
+                directoriesListed += listings.size();
+                frontier = next;
+            }
+        }
+        
+        Map<String, Object> result = root.listing();
+        result.put("depth", levels);
+        result.put("count", entries);
+        result.put("directoriesListed", directoriesListed);
+        result.put("requests", requests.get());
+        result.put("expansionTruncated", expansionTruncated);
+        result.put("durationMs", System.currentTimeMillis() - startTime);
+        
+        log.info("Listed directory '{}' of bucket {}: {} entr(ies) in {} director(ies), {} request(s)",
+                directory, bucketName, entries, directoriesListed, requests.get());
+        return result;
+    }
+    
+    /**
+     * Listing of one directory, with its folders to expand
+     */
+    private record Level(Map<String, Object> listing, List<Map<String, Object>> folders, int entries) {
+    }
+    
+    /**
+     * List the direct folders and files of one directory, while the shared budget has entries left
+     */
+    private Level listLevel(S3Client s3Client, String bucketName, String directory, String continuationToken,
+                            AtomicInteger budget, AtomicInteger requests) {
+        List<Map<String, Object>> folders = new ArrayList<>();
+        List<Map<String, Object>> files = new ArrayList<>();
+        String token = continuationToken;
+        boolean truncated;
+        do {
+            int previous = budget.getAndUpdate(left -> left - Math.min(left, S3Service.MAX_KEYS_PER_PAGE));
+            int reserved = Math.min(previous, S3Service.MAX_KEYS_PER_PAGE);
+            if (reserved <= 0) {
+                // Budget spent by this or another directory before this page
+                truncated = true;
+                break;
+            }
+            
+            ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(directory)
+                    .delimiter(DELIMITER)
+                    // Folders count towards maxKeys as well
+                    .maxKeys(reserved);
+            if (token != null) {
+                requestBuilder.continuationToken(token);
+            }
+            
+            ListObjectsV2Response response;
+            try {
+                response = s3Client.listObjectsV2(requestBuilder.build());
+            } catch (RuntimeException e) {
+                budget.addAndGet(reserved);
+                throw e;
+            }
+            requests.incrementAndGet();
+            // Give back what the page did not use
+            budget.addAndGet(reserved - response.commonPrefixes().size() - response.contents().size());
+            for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+                Map<String, Object> folder = new HashMap<>();
+                folder.put("prefix", commonPrefix.prefix());
+                folder.put("name", commonPrefix.prefix().substring(directory.length()));
+                folders.add(folder);
+            }
+            for (S3Object s3Object : response.contents()) {
+                // Zero-byte marker of the directory itself
+                if (s3Object.key().equals(directory)) {
+                    continue;
+                }
+                Map<String, Object> file = S3Service.toObjectInfo(s3Object);
+                file.put("name", s3Object.key().substring(directory.length()));
+                files.add(file);
+            }
+            truncated = Boolean.TRUE.equals(response.isTruncated());
+            token = truncated ? response.nextContinuationToken() : null;
+        } while (truncated);
+        
+        Map<String, Object> listing = new HashMap<>();
+        listing.put("prefix", directory);
+        listing.put("folders", folders);
+        listing.put("files", files);
+        listing.put("isTruncated", truncated);
+        if (truncated && token != null) {
+            listing.put("nextCursor", S3Service.encodeCursor(token));
+        }
+        return new Level(listing, folders, folders.size() + files.size());
+    }
+}
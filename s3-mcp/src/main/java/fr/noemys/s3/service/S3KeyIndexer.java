@@ -0,0 +1,404 @@
+package fr.noemys.s3.service;
+
+import fr.noemys.s3.service.cache.KeyIndex;
+import fr.noemys.s3.service.cache.S3ClientCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional in-memory index of the keys of hot buckets.
+ * An index is built by a background parallel listing of the whole bucket, then answers prefix,
+ * glob and count queries from memory. Keys written or deleted by this server mark their prefix
+ * as changed: only that prefix is listed again, in the background, and queries report the snapshot
+ * as stale meanwhile. The whole bucket is listed again in the background once the index is older
+ * than the refresh interval, while the previous snapshot keeps serving queries.
+ * Indexes are kept per endpoint, credentials and bucket, within a shared memory budget.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3KeyIndexer {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3KeyIndexer.class);
+    
+    @Value("${mcp.s3.key-index.max-indexes:16}")
+    private int maxIndexes;
+    
+    @Value("${mcp.s3.key-index.max-keys:1000000}")
+    private long maxKeys;
+    
+    @Value("${mcp.s3.key-index.max-memory-bytes:134217728}")
+    private long maxMemoryBytes;
+    
+    @Value("${mcp.s3.key-index.refresh-seconds:600}")
+    private long refreshSeconds;
+    
+    @Value("${mcp.s3.key-index.default-max-results:1000}")
+    private int defaultMaxResults;
+    
+    @Value("${mcp.s3.key-index.max-results:10000}")
+    private int maxResultsLimit;
+    
+    private final S3ClientCache clientCache;
+    private final S3ParallelLister parallelLister;
+    
+    private final Map<IndexKey, IndexState> indexes = new ConcurrentHashMap<>();
+    
+    // Orders changes against listings: a listing started after a change covers it
+    private final AtomicLong changeSequence = new AtomicLong();
+    
+    public S3KeyIndexer(S3ClientCache clientCache, S3ParallelLister parallelLister) {
+        this.clientCache = clientCache;
+        this.parallelLister = parallelLister;
+    }
+    
+    private record IndexKey(String endpoint, String principal, String bucketName) {
+    }
+    
+    /**
+     * One bucket index: the current snapshot, its build state, and the prefixes changed since it was listed
+     */
+    private static final class IndexState {
+        
+        private final IndexKey key;
+        private volatile KeyIndex snapshot;
+        private volatile String error;
+        private volatile long builtAtMillis;
+        private volatile long buildMillis;
+        private final AtomicBoolean building = new AtomicBoolean();
+        private final AtomicBoolean splicing = new AtomicBoolean();
+        // Changed prefix -> sequence number of its last change
+        private final Map<String, Long> changedPrefixes = new ConcurrentHashMap<>();
+        
+        private IndexState(IndexKey key) {
+            this.key = key;
+        }
+        
+        private String status() {
+            if (snapshot != null) {
+                return building.get() ? "refreshing" : "ready";
+            }
+            return building.get() ? "building" : error != null ? "failed" : "pending";
+        }
+    }
+    
+    /**
+     * Start building the index of a bucket in the background, or rebuild it when rebuild is true
+     * 
+     * @return the index status
+     */
+    public Map<String, Object> index(String endpoint, String token, String userToken, String bucketName, boolean rebuild) {
+        IndexKey key = new IndexKey(endpoint, S3ClientCache.principal(token, userToken), bucketName);
+        AtomicBoolean created = new AtomicBoolean();
+        IndexState state;
+        // Indexes of other buckets may be created concurrently: the limit is checked under one lock
+        synchronized (indexes) {
+            state = indexes.compute(key, (indexKey, existing) -> {
+                if (existing != null) {
+                    return existing;
+                }
+                if (indexes.size() >= maxIndexes) {
+                    throw new IllegalArgumentException("Too many bucket indexes (max " + maxIndexes + ")");
+                }
+                created.set(true);
+                return new IndexState(indexKey);
+            });
+        }
+        if (rebuild || created.get()) {
+            startBuild(state, token, userToken);
+        }
+        return describe(state, true);
+    }
+    
+    /**
+     * Query the index of a bucket: keys under prefix, optionally matching a glob, with their count and total size
+     * 
+     * @return the result (ready false while the first build runs), or null when the bucket is not indexed
+     */
+    public Map<String, Object> query(String endpoint, String token, String userToken, String bucketName,
+                                     String prefix, String glob, boolean countOnly, Integer maxResults) {
+        if (maxResults != null && maxResults <= 0) {
+            throw new IllegalArgumentException("maxResults must be greater than 0");
+        }
+        GlobPattern pattern = glob != null ? GlobPattern.compile(glob) : null;
+        IndexState state = indexes.get(new IndexKey(endpoint, S3ClientCache.principal(token, userToken), bucketName));
+        if (state == null) {
+            return null;
+        }
+        if (state.snapshot == null) {
+            Map<String, Object> description = describe(state, true);
+            description.put("ready", false);
+            return description;
+        }
+        
+        startSplice(state, token, userToken);
+        boolean stale = !state.changedPrefixes.isEmpty();
+        if (System.currentTimeMillis() - state.builtAtMillis > refreshSeconds * 1000) {
+            startBuild(state, token, userToken);
+        }
+        
+        long startNanos = System.nanoTime();
+        KeyIndex index = state.snapshot;
+        String searchPrefix = prefix != null ? prefix : "";
+        if (pattern != null && pattern.literalPrefix().startsWith(searchPrefix)) {
+            searchPrefix = pattern.literalPrefix();
+        } else if (pattern != null && !searchPrefix.startsWith(pattern.literalPrefix())) {
+            // Disjoint prefix and glob: nothing can match
+            searchPrefix = null;
+        }
+        int from = searchPrefix != null ? index.lowerBound(searchPrefix) : 0;
+        int to = searchPrefix != null ? index.upperBound(searchPrefix, from) : 0;
+        int limit = Math.min(maxResults != null ? maxResults : defaultMaxResults, maxResultsLimit);
+        
+        List<Map<String, Object>> objects = new ArrayList<>();
+        long count;
+        long totalSize;
+        if (pattern == null) {
+            count = to - from;
+            totalSize = index.totalSize(from, to);
+            for (int i = from; !countOnly && i < to && objects.size() < limit; i++) {
+                objects.add(toObjectInfo(index, i));
+            }
+        } else {
+            count = 0;
+            totalSize = 0;
+            for (int i = from; i < to; i++) {
+                if (pattern.matches(index.key(i))) {
+                    count++;
+                    totalSize += index.size(i);
+                    if (!countOnly && objects.size() < limit) {
+                        objects.add(toObjectInfo(index, i));
+                    }
+                }
+            }
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("ready", true);
+        result.put("bucketName", bucketName);
+        result.put("prefix", prefix != null ? prefix : "");
+        if (glob != null) {
+            result.put("pattern", glob);
+        }
+        if (!countOnly) {
+            result.put("objects", objects);
+            result.put("truncated", count > objects.size());
+        }
+        result.put("count", count);
+        result.put("totalSize", totalSize);
+        result.put("indexedKeys", index.size());
+        result.put("indexAgeMs", System.currentTimeMillis() - state.builtAtMillis);
+        result.put("stale", stale);
+        result.put("queryMicros", (System.nanoTime() - startNanos) / 1000);
+        return result;
+    }
+    
+    /**
+     * Mark a prefix of every index of the bucket as changed - called after this server wrote or deleted under it
+     */
+    public void invalidatePrefix(String endpoint, String bucketName, String prefix) {
+        long sequence = changeSequence.incrementAndGet();
+        for (IndexState state : indexes.values()) {
+            if (state.key.endpoint().equals(endpoint) && state.key.bucketName().equals(bucketName)) {
+                state.changedPrefixes.put(prefix != null ? prefix : "", sequence);
+            }
+        }
+    }
+    
+    /**
+     * Drop the index of a bucket
+     */
+    public boolean remove(String endpoint, String token, String userToken, String bucketName) {
+        return indexes.remove(new IndexKey(endpoint, S3ClientCache.principal(token, userToken), bucketName)) != null;
+    }
+    
+    /**
+     * List the changed prefixes again on a virtual thread and splice them into the snapshot.
+     * A change of the whole bucket needs a full listing: it is left to a background rebuild.
+     */
+    private void startSplice(IndexState state, String token, String userToken) {
+        if (state.changedPrefixes.isEmpty() || !state.splicing.compareAndSet(false, true)) {
+            return;
+        }
+        
+        Thread.ofVirtual().name("s3-key-index-splice").start(() -> {
+            String bucketName = state.key.bucketName();
+            try (S3ClientCache.Lease lease = clientCache.acquire(state.key.endpoint(), token, userToken)) {
+                for (Map.Entry<String, Long> change : new ArrayList<>(state.changedPrefixes.entrySet())) {
+                    String prefix = change.getKey();
+                    if (prefix.isEmpty()) {
+                        startBuild(state, token, userToken);
+                        continue;
+                    }
+                    
+                    List<KeyIndex.Entry> entries = new ArrayList<>();
+                    lease.client().listObjectsV2Paginator(ListObjectsV2Request.builder()
+                                    .bucket(bucketName)
+                                    .prefix(prefix)
+                                    .build())
+                            .contents()
+                            .forEach(s3Object -> entries.add(toEntry(s3Object)));
+                    synchronized (state) {
+                        state.snapshot = state.snapshot.splice(prefix, entries);
+                    }
+                    // A build in progress may have listed the prefix before the change: keep it for after the swap
+                    if (!state.building.get()) {
+                        state.changedPrefixes.remove(prefix, change.getValue());
+                    }
+                    log.info("Key index of bucket {} refreshed under '{}' ({} key(s))", bucketName, prefix, entries.size());
+                }
+            } catch (Exception e) {
+                // The prefixes stay changed: the next query tries again
+                log.error("Error refreshing key index of bucket {}", bucketName, e);
+            } finally {
+                state.splicing.set(false);
+            }
+        });
+    }
+    
+    /**
+     * List the whole bucket on a virtual thread and swap the snapshot when done
+     */
+    private void startBuild(IndexState state, String token, String userToken) {
+        if (!state.building.compareAndSet(false, true)) {
+            return;
+        }
+        long startSequence = changeSequence.get();
+        Map<String, Long> coveredChanges = new HashMap<>(state.changedPrefixes);
+        
+        Thread.ofVirtual().name("s3-key-index").start(() -> {
+            long startNanos = System.nanoTime();
+            String bucketName = state.key.bucketName();
+            try (S3ClientCache.Lease lease = clientCache.acquire(state.key.endpoint(), token, userToken)) {
+                KeyIndex.Builder builder = new KeyIndex.Builder();
+                // The previous snapshot of this bucket is replaced, the other indexes stay
+                long memoryBudget = maxMemoryBytes - memoryBytes() + (state.snapshot != null ? state.snapshot.memoryBytes() : 0);
+                AtomicBoolean tooManyKeys = new AtomicBoolean();
+                AtomicBoolean tooLarge = new AtomicBoolean();
+                parallelLister.list(lease.client(), state.key.endpoint(), bucketName, "", null, (shardPrefix, objects) -> {
+                    synchronized (builder) {
+                        for (S3Object s3Object : objects) {
+                            builder.add(s3Object.key(), s3Object.size() != null ? s3Object.size() : 0,
+                                    s3Object.lastModified() != null ? s3Object.lastModified().toEpochMilli() : 0);
+                        }
+                        tooManyKeys.set(builder.size() > maxKeys);
+                        tooLarge.set(builder.memoryBytes() > memoryBudget);
+                        return !tooManyKeys.get() && !tooLarge.get();
+                    }
+                });
+                if (tooManyKeys.get()) {
+                    throw new IllegalStateException("Bucket has more than " + maxKeys + " keys");
+                }
+                if (tooLarge.get()) {
+                    throw new IllegalStateException("Index would exceed the key index memory budget of "
+                            + maxMemoryBytes + " bytes");
+                }
+                
+                KeyIndex index = builder.build();
+                synchronized (state) {
+                    state.snapshot = index;
+                    state.builtAtMillis = System.currentTimeMillis();
+                    state.buildMillis = (System.nanoTime() - startNanos) / 1_000_000;
+                    state.error = null;
+                }
+                // Changes made before the listing started are in the new snapshot
+                coveredChanges.forEach((prefix, sequence) -> {
+                    if (sequence <= startSequence) {
+                        state.changedPrefixes.remove(prefix, sequence);
+                    }
+                });
+                log.info("Key index of bucket {} built: {} key(s), ~{} bytes in {} ms",
+                        bucketName, index.size(), index.memoryBytes(), state.buildMillis);
+            } catch (Exception e) {
+                state.error = e.getMessage();
+                log.error("Error building key index of bucket {}", bucketName, e);
+            } finally {
+                state.building.set(false);
+            }
+        });
+    }
+    
+    /**
+     * Estimated heap used by every index
+     */
+    private long memoryBytes() {
+        long memoryBytes = 0;
+        for (IndexState state : indexes.values()) {
+            KeyIndex index = state.snapshot;
+            memoryBytes += index != null ? index.memoryBytes() : 0;
+        }
+        return memoryBytes;
+    }
+    
+    /**
+     * Status and memory usage of one index
+     * 
+     * @param detailed include the endpoint, bucket and error - only for the caller owning the index
+     */
+    private Map<String, Object> describe(IndexState state, boolean detailed) {
+        KeyIndex index = state.snapshot;
+        Map<String, Object> description = new HashMap<>();
+        if (detailed) {
+            description.put("endpoint", state.key.endpoint());
+            description.put("bucketName", state.key.bucketName());
+        }
+        description.put("status", state.status());
+        description.put("pendingChanges", state.changedPrefixes.size());
+        if (index != null) {
+            description.put("keys", index.size());
+            description.put("memoryBytes", index.memoryBytes());
+            description.put("builtAt", Instant.ofEpochMilli(state.builtAtMillis).toString());
+            description.put("buildMs", state.buildMillis);
+        }
+        if (detailed && state.error != null) {
+            description.put("error", state.error);
+        }
+        return description;
+    }
+    
+    /**
+     * Index statistics, with the memory used by each bucket index.
+     * Endpoints, bucket names and errors are left out: the stats are not tied to any credentials.
+     */
+    public Map<String, Object> getStats() {
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (IndexState state : indexes.values()) {
+            buckets.add(describe(state, false));
+        }
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", buckets.size());
+        stats.put("maxIndexes", maxIndexes);
+        stats.put("memoryBytes", memoryBytes());
+        stats.put("maxMemoryBytes", maxMemoryBytes);
+        stats.put("refreshSeconds", refreshSeconds);
+        stats.put("buckets", buckets);
+        return stats;
+    }
+    
+    private static KeyIndex.Entry toEntry(S3Object s3Object) {
+        return new KeyIndex.Entry(s3Object.key(), s3Object.size() != null ? s3Object.size() : 0,
+                s3Object.lastModified() != null ? s3Object.lastModified().toEpochMilli() : 0);
+    }
+    
+    private static Map<String, Object> toObjectInfo(KeyIndex index, int i) {
+        Map<String, Object> objectInfo = new HashMap<>();
+        objectInfo.put("key", index.key(i));
+        objectInfo.put("size", index.size(i));
+        objectInfo.put("lastModified", Instant.ofEpochMilli(index.lastModified(i)).toString());
+        return objectInfo;
+    }
+}
@@ -0,0 +1,336 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Upload engine: single PUT below a size threshold, parallel multipart upload above it.
+ * Parts are sent concurrently on a bounded worker pool straight from the source array (no copies),
+ * and an incomplete multipart upload is aborted so no orphan parts are left behind.
+ * Server-side copies use the same engine with UploadPartCopy, so no data flows through the JVM.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3MultipartUploader {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3MultipartUploader.class);
+    
+    // S3 limits: every part but the last is at least 5 MB, at most 10000 parts per upload
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+    
+    // Largest object (and part) CopyObject / UploadPartCopy accept
+    static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+    
+    @Value("${mcp.s3.upload.multipart-threshold:16777216}")
+    private long multipartThreshold;
+    
+    @Value("${mcp.s3.upload.part-size:8388608}")
+    private long partSize;
+    
+    @Value("${mcp.s3.upload.concurrency:4}")
+    private int concurrency;
+    
+    @Value("${mcp.s3.copy.multipart-threshold:5368709120}")
+    private long copyThreshold;
+    
+    @Value("${mcp.s3.copy.part-size:536870912}")
+    private long copyPartSize;
+    
+    @Value("${mcp.s3.copy.concurrency:8}")
+    private int copyConcurrency;
+    
+    /**
+     * Upload data to bucketName/objectKey
+     * 
+     * @return upload result with eTag, size, multipart and parts
+     */
+    public Map<String, Object> upload(S3Client s3Client, String bucketName, String objectKey, byte[] data,
+                                      String contentType) {
+        long startNanos = System.nanoTime();
+        Map<String, Object> result = data.length < Math.max(multipartThreshold, MIN_PART_SIZE)
+                ? putObject(s3Client, bucketName, objectKey, data, contentType)
+                : multipartUpload(s3Client, bucketName, objectKey, data, contentType);
+        
+        result.put("key", objectKey);
+        result.put("bucketName", bucketName);
+        result.put("size", data.length);
+        result.put("durationMs", (System.nanoTime() - startNanos) / 1_000_000);
+        return result;
+    }
+    
+    /**
+     * Server-side copy: CopyObject up to the copy threshold, parallel UploadPartCopy above it.
+     * The source ETag is pinned with x-amz-copy-source-if-match so every part comes from the same version.
+     * 
+     * @return copy result with eTag, size, multipart and parts
+     */
+    public Map<String, Object> copy(S3Client s3Client, String sourceBucketName, String sourceKey,
+                                    String bucketName, String objectKey) {
+        long startNanos = System.nanoTime();
+        HeadObjectResponse source = s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(sourceBucketName)
+                .key(sourceKey)
+                .build());
+        long size = source.contentLength();
+        
+        Map<String, Object> result;
+        if (size <= Math.min(copyThreshold, MAX_COPY_SIZE)) {
+            CopyObjectResponse response = s3Client.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(sourceBucketName)
+                    .sourceKey(sourceKey)
+                    .destinationBucket(bucketName)
+                    .destinationKey(objectKey)
+                    .copySourceIfMatch(source.eTag())
+                    .build());
+            
+            result = new HashMap<>();
+            result.put("eTag", response.copyObjectResult().eTag());
+            result.put("versionId", response.versionId());
+            result.put("multipart", false);
+            result.put("parts", 1);
+        } else {
+            result = multipartCopy(s3Client, source, sourceBucketName, sourceKey, bucketName, objectKey);
+        }
+        
+        result.put("sourceBucketName", sourceBucketName);
+        result.put("sourceKey", sourceKey);
+        result.put("key", objectKey);
+        result.put("bucketName", bucketName);
+        result.put("size", size);
+        result.put("durationMs", (System.nanoTime() - startNanos) / 1_000_000);
+        return result;
+    }
+    
+    /**
+     * Single PUT
+     */
+    private Map<String, Object> putObject(S3Client s3Client, String bucketName, String objectKey, byte[] data,
+                                          String contentType) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(objectKey)
+                .contentType(contentType)
+                .build();
+        
+        PutObjectResponse response = s3Client.putObject(request, slice(data, 0, data.length, contentType));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("eTag", response.eTag());
+        result.put("versionId", response.versionId());
+        result.put("multipart", false);
+        result.put("parts", 1);
+        return result;
+    }
+    
+    /**
+     * Concurrent UploadPart calls over slices of data
+     */
+    private Map<String, Object> multipartUpload(S3Client s3Client, String bucketName, String objectKey, byte[] data,
+                                                String contentType) {
+        // Grow the part size when the configured one would need more than MAX_PARTS parts
+        long effectivePartSize = Math.max(Math.max(partSize, MIN_PART_SIZE), (data.length + MAX_PARTS - 1L) / MAX_PARTS);
+        int parts = (int) ((data.length + effectivePartSize - 1) / effectivePartSize);
+        log.info("Uploading {} ({} bytes) in {} part(s) of {} bytes", objectKey, data.length, parts, effectivePartSize);
+        
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(objectKey)
+                .contentType(contentType)
+                .build();
+        CompleteMultipartUploadResponse response = multipart(s3Client, createRequest, parts, concurrency,
+                (uploadId, partNumber) -> {
+                    int offset = (int) ((partNumber - 1) * effectivePartSize);
+                    int length = (int) Math.min(effectivePartSize, data.length - offset);
+                    return s3Client.uploadPart(UploadPartRequest.builder()
+                            .bucket(bucketName)
+                            .key(objectKey)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength((long) length)
+                            .build(), slice(data, offset, length, contentType)).eTag();
+                });
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("eTag", response.eTag());
+        result.put("versionId", response.versionId());
+        result.put("multipart", true);
+        result.put("parts", parts);
+        result.put("partSize", effectivePartSize);
+        return result;
+    }
+    
+    /**
+     * Concurrent UploadPartCopy calls over byte ranges of the source.
+     * Unlike CopyObject, a multipart upload starts with no attributes: the source headers, user metadata,
+     * storage class, encryption and tags are set on CreateMultipartUpload.
+     */
+    private Map<String, Object> multipartCopy(S3Client s3Client, HeadObjectResponse source, String sourceBucketName,
+                                              String sourceKey, String bucketName, String objectKey) {
+        long size = source.contentLength();
+        long effectivePartSize = Math.min(MAX_COPY_SIZE,
+                Math.max(Math.max(copyPartSize, MIN_PART_SIZE), (size + MAX_PARTS - 1) / MAX_PARTS));
+        int parts = (int) ((size + effectivePartSize - 1) / effectivePartSize);
+        log.info("Copying {}/{} to {}/{} ({} bytes) in {} part(s) of {} bytes",
+                sourceBucketName, sourceKey, bucketName, objectKey, size, parts, effectivePartSize);
+        
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(objectKey)
+                .contentType(source.contentType())
+                .contentEncoding(source.contentEncoding())
+                .cacheControl(source.cacheControl())
+                .contentDisposition(source.contentDisposition())
+                .contentLanguage(source.contentLanguage())
+                .expires(source.expires())
+                .metadata(source.metadata())
+                .storageClass(source.storageClassAsString())
+                .serverSideEncryption(source.serverSideEncryptionAsString())
+                .ssekmsKeyId(source.ssekmsKeyId())
+                .bucketKeyEnabled(source.bucketKeyEnabled())
+                .tagging(tagging(s3Client, sourceBucketName, sourceKey))
+                .build();
+        CompleteMultipartUploadResponse response = multipart(s3Client, createRequest, parts, copyConcurrency,
+                (uploadId, partNumber) -> {
+                    long first = (partNumber - 1) * effectivePartSize;
+                    long last = Math.min(first + effectivePartSize, size) - 1;
+                    return s3Client.uploadPartCopy(UploadPartCopyRequest.builder()
+                            .sourceBucket(sourceBucketName)
+                            .sourceKey(sourceKey)
+                            .destinationBucket(bucketName)
+                            .destinationKey(objectKey)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .copySourceRange("bytes=" + first + "-" + last)
+                            .copySourceIfMatch(source.eTag())
+                            .build()).copyPartResult().eTag();
+                });
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("eTag", response.eTag());
+        result.put("versionId", response.versionId());
+        result.put("multipart", true);
+        result.put("parts", parts);
+        result.put("partSize", effectivePartSize);
+        return result;
+    }
+    
+    /**
+     * Tags of an object as an x-amz-tagging header value, or null when it has none
+     */
+    private String tagging(S3Client s3Client, String bucketName, String objectKey) {
+        List<Tag> tags;
+        try {
+            tags = s3Client.getObjectTagging(GetObjectTaggingRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .build()).tagSet();
+        } catch (S3Exception e) {
+            // S3-compatible servers without object tagging
+            if (e.statusCode() == 501) {
+                log.warn("Object tagging not supported, tags of {}/{} not copied", bucketName, objectKey);
+                return null;
+            }
+            throw e;
+        }
+        if (tags.isEmpty()) {
+            return null;
+        }
+        return tags.stream()
+                .map(tag -> SdkHttpUtils.urlEncode(tag.key()) + "=" + SdkHttpUtils.urlEncode(tag.value()))
+                .collect(Collectors.joining("&"));
+    }
+    
+    /**
+     * CreateMultipartUpload, concurrent parts on a bounded worker pool, then CompleteMultipartUpload.
+     * The upload is aborted if any step fails.
+     */
+    private CompleteMultipartUploadResponse multipart(S3Client s3Client, CreateMultipartUploadRequest createRequest,
+                                                      int parts, int maxWorkers, PartWriter partWriter) {
+        String bucketName = createRequest.bucket();
+        String objectKey = createRequest.key();
+        String uploadId = s3Client.createMultipartUpload(createRequest).uploadId();
+        int workers = Math.max(1, Math.min(maxWorkers, parts));
+        
+        try {
+            CompletedPart[] completedParts = new CompletedPart[parts];
+            try (ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofVirtual().name("s3-upload-", 0).factory())) {
+                List<Future<?>> writes = new ArrayList<>();
+                for (int i = 0; i < parts; i++) {
+                    int partNumber = i + 1;
+                    writes.add(pool.submit(() -> {
+                        completedParts[partNumber - 1] = CompletedPart.builder()
+                                .partNumber(partNumber)
+                                .eTag(partWriter.write(uploadId, partNumber))
+                                .build();
+                    }));
+                }
+                for (Future<?> write : writes) {
+                    S3ParallelLister.await(write, pool);
+                }
+            }
+            
+            return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder()
+                            .parts(Arrays.asList(completedParts))
+                            .build())
+                    .build());
+        } catch (RuntimeException e) {
+            abort(s3Client, bucketName, objectKey, uploadId);
+            throw e;
+        }
+    }
+    
+    /**
+     * Abort a multipart upload so its parts are not kept (and billed) by the server
+     */
+    private void abort(S3Client s3Client, String bucketName, String objectKey, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .uploadId(uploadId)
+                    .build());
+            log.info("Aborted multipart upload of {}", objectKey);
+        } catch (Exception e) {
+            log.warn("Error aborting multipart upload {} of {}: {}", uploadId, objectKey, e.getMessage());
+        }
+    }
+    
+    /**
+     * Writes one part and returns its ETag - called concurrently from worker threads
+     */
+    @FunctionalInterface
+    private interface PartWriter {
+        String write(String uploadId, int partNumber);
+    }
+    
+    /**
+     * Request body reading a slice of data in place - retries get a fresh stream over the same bytes
+     */
+    private static RequestBody slice(byte[] data, int offset, int length, String contentType) {
+        return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(data, offset, length), length,
+                contentType != null ? contentType : "application/octet-stream");
+    }
+}
@@ -0,0 +1,248 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Key search by glob or regex, pushed down into listObjectsV2.
+ * Literal path segments of a glob become part of the listing prefix; a wildcard segment is listed one level
+ * with delimiter "/" and only the matching commonPrefixes are descended into, until a ** segment needs
+ * a recursive listing of what is left. The pattern is evaluated on each page as it arrives, and the
+ * listing stops as soon as enough keys matched.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3ObjectFinder {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3ObjectFinder.class);
+    
+    private static final String DELIMITER = "/";
+    
+    // Regex metacharacters ending the literal prefix of a regex
+    private static final String REGEX_METACHARACTERS = ".[]{}()*+?^$|";
+    
+    @Value("${mcp.s3.find.default-max-results:1000}")
+    private int defaultMaxResults;
+    
+    @Value("${mcp.s3.find.max-results:10000}")
+    private int maxResultsLimit;
+    
+    @Value("${mcp.s3.find.max-scanned-keys:1000000}")
+    private long maxScannedKeys;
+    
+    /**
+     * Find the keys of a bucket matching a glob (or a regex matching the whole key)
+     */
+    public Map<String, Object> find(S3Client s3Client, String bucketName, String pattern, boolean regex,
+                                    Integer maxResults) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("pattern is required");
+        }
+        if (maxResults != null && maxResults <= 0) {
+            throw new IllegalArgumentException("maxResults must be greater than 0");
+        }
+        int limit = Math.min(maxResults != null ? maxResults : defaultMaxResults, maxResultsLimit);
+        long startTime = System.currentTimeMillis();
+        
+        Search search;
+        if (regex) {
+            Pattern compiled;
+            try {
+                compiled = Pattern.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex: " + e.getDescription());
+            }
+            search = new Search(s3Client, bucketName, key -> compiled.matcher(key).matches(), limit);
+            search.listRecursive(regexPrefix(pattern));
+        } else {
+            GlobPattern glob = GlobPattern.compile(pattern);
+            List<GlobPattern> segments = glob.segments();
+            search = new Search(s3Client, bucketName, glob::matches, limit);
+            if (segments != null) {
+                search.walk("", segments, 0);
+            } else {
+                search.listRecursive(glob.literalPrefix());
+            }
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("pattern", pattern);
+        result.put("regex", regex);
+        result.put("objects", search.objects);
+        result.put("count", search.objects.size());
+        result.put("isTruncated", search.limitReached || search.scanLimitReached);
+        result.put("scanLimitReached", search.scanLimitReached);
+        result.put("keysScanned", search.keysScanned);
+        result.put("requests", search.requests);
+        result.put("durationMs", System.currentTimeMillis() - startTime);
+        
+        log.info("Found {} key(s) matching '{}' in bucket {} ({} scanned, {} request(s))",
+                search.objects.size(), pattern, bucketName, search.keysScanned, search.requests);
+        return result;
+    }
+    
+    /**
+     * Characters every key matched by the regex starts with
+     */
+    static String regexPrefix(String regex) {
+        // An alternative anywhere may not share the prefix
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                c = regex.charAt(i + 1);
+                i += 2;
+            } else if (c == '\\' || REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                break;
+            } else {
+                i++;
+            }
+            // A quantified character is optional
+            if (i < regex.length() && "*?{".indexOf(regex.charAt(i)) >= 0) {
+                break;
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+    
+    /**
+     * State of one search: matches found, keys scanned and requests sent so far
+     */
+    private final class Search {
+        
+        private final S3Client s3Client;
+        private final String bucketName;
+        private final Predicate<String> matcher;
+        private final int limit;
+        
+        private final List<Map<String, Object>> objects = new ArrayList<>();
+        private long keysScanned;
+        private int requests;
+        private boolean limitReached;
+        private boolean scanLimitReached;
+        
+        private Search(S3Client s3Client, String bucketName, Predicate<String> matcher, int limit) {
+            this.s3Client = s3Client;
+            this.bucketName = bucketName;
+            this.matcher = matcher;
+            this.limit = limit;
+        }
+        
+        private boolean done() {
+            return limitReached || scanLimitReached;
+        }
+        
+        /**
+         * Match the glob segments from index below prefix, one listing level per wildcard segment
+         */
+        private void walk(String prefix, List<GlobPattern> segments, int index) {
+            while (index < segments.size() - 1 && segments.get(index).isLiteral()) {
+                prefix += segments.get(index).literalPrefix() + DELIMITER;
+                index++;
+            }
+            GlobPattern segment = segments.get(index);
+            String listPrefix = prefix + segment.literalPrefix();
+            if (segment.crossesSegments()) {
+                listRecursive(listPrefix);
+                return;
+            }
+            
+            boolean last = index == segments.size() - 1;
+            String parent = prefix;
+            int next = index + 1;
+            forEachPage(listPrefix, DELIMITER, response -> {
+                if (last) {
+                    match(response.contents());
+                    return;
+                }
+                for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+                    if (done() || !scanned(1)) {
+                        return;
+                    }
+                    // Segment name between the parent prefix and the trailing delimiter
+                    String name = commonPrefix.prefix().substring(parent.length(), commonPrefix.prefix().length() - 1);
+                    if (segment.matches(name)) {
+                        walk(commonPrefix.prefix(), segments, next);
+                    }
+                }
+            });
+        }
+        
+        /**
+         * Match every key below prefix
+         */
+        private void listRecursive(String prefix) {
+            forEachPage(prefix, null, response -> match(response.contents()));
+        }
+        
+        private void match(List<S3Object> contents) {
+            for (S3Object s3Object : contents) {
+                if (done() || !scanned(1)) {
+                    return;
+                }
+                if (matcher.test(s3Object.key())) {
+                    objects.add(S3Service.toObjectInfo(s3Object));
+                    limitReached = objects.size() >= limit;
+                }
+            }
+        }
+        
+        /**
+         * Count scanned entries
+         * 
+         * @return false once the scan limit is reached
+         */
+        private boolean scanned(int count) {
+            keysScanned += count;
+            scanLimitReached = keysScanned > maxScannedKeys;
+            return !scanLimitReached;
+        }
+        
+        /**
+         * Walk listObjectsV2 pages until the last one or until the search is done
+         */
+        private void forEachPage(String prefix, String delimiter, Consumer<ListObjectsV2Response> handler) {
+            String continuationToken = null;
+            do {
+                if (done()) {
+                    return;
+                }
+                
+                ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .delimiter(delimiter);
+                if (continuationToken != null) {
+                    requestBuilder.continuationToken(continuationToken);
+                }
+                
+                ListObjectsV2Response response = s3Client.listObjectsV2(requestBuilder.build());
+                requests++;
+                handler.accept(response);
+                continuationToken = Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+            } while (continuationToken != null);
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * First or last lines of an object, read with small byte ranges.
+ * A leading (or suffix) window is fetched first and the range is doubled only while fewer than
+ * the requested lines were found; a head read stops the current window as soon as the last line ends.
+ * Total bytes read per preview are bounded.
+ * Compressed objects cannot be read by ranges: they are streamed through a decompressor instead,
+ * a head read stopping after the last line and a tail read keeping only the last bytes in memory.
+ * A tail read has to go through the whole object, so it is only done for compressed objects of at most max-bytes.
+ * Ranged reads never go past their length, even when the server ignores the range.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3ObjectPreviewer {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3ObjectPreviewer.class);
+    
+    private static final Pattern CONTENT_RANGE = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+|\\*)$");
+    
+    private static final int CHUNK_SIZE = 8192;
+    
+    @Value("${mcp.s3.preview.default-lines:50}")
+    private int defaultLines;
+    
+    @Value("${mcp.s3.preview.max-lines:1000}")
+    private int maxLines;
+    
+    @Value("${mcp.s3.preview.window-size:16384}")
+    private long windowSize;
+    
+    @Value("${mcp.s3.preview.max-bytes:1048576}")
+    private long maxBytes;
+    
+    @Value("${mcp.s3.decompression.max-bytes:268435456}")
+    private long maxDecompressedSize;
+    
+    /**
+     * Read the first lines of an object, or the last ones when fromEnd is true
+     * 
+     * @return lines with lineCount, bytesRead, requests, and complete when the whole object was covered
+     */
+    public Map<String, Object> preview(S3Client s3Client, String bucketName, String objectKey, Integer lines,
+                                       boolean fromEnd) throws IOException {
+        if (lines != null && lines <= 0) {
+            throw new IllegalArgumentException("lines must be greater than 0");
+        }
+        int wanted = Math.min(lines != null ? lines : defaultLines, maxLines);
+        
+        Window window = null;
+        if (!Decompression.isExpected(null, objectKey)) {
+            window = fromEnd
+                    ? tail(s3Client, bucketName, objectKey, wanted)
+                    : head(s3Client, bucketName, objectKey, wanted);
+        }
+        if (window == null || window.compressed || window.rangeIgnored) {
+            window = streamed(s3Client, bucketName, objectKey, wanted, fromEnd, window != null ? window.requests : 0);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("key", objectKey);
+        result.put("bucketName", bucketName);
+        result.put("fromEnd", fromEnd);
+        result.put("size", window.totalSize);
+        result.put("contentType", window.contentType);
+        result.put("bytesRead", window.bytesRead);
+        result.put("requests", window.requests);
+        result.put("complete", window.complete);
+        if (window.codec != null) {
+            // bytesRead counts decompressed bytes
+            result.put("compression", window.codec.label());
+        }
+        if (window.tailUnavailable) {
+            log.info("Object {} needs a whole-object scan and is larger than {} bytes, no tail preview",
+                    objectKey, maxBytes);
+            result.put("tailUnavailable", true);
+            result.put("lines", List.of());
+            result.put("lineCount", 0);
+            result.put("truncated", true);
+            return result;
+        }
+        
+        // Content-Type describes the decompressed content only when Content-Encoding is set
+        String contentType = window.codec != null && window.contentEncoding == null ? null : window.contentType;
+        ContentSniffer.Detection detection = ContentSniffer.detect(window.data, window.data.length, contentType);
+        result.put("binary", detection.binary());
+        if (detection.binary()) {
+            log.info("Object {} is binary, no preview", objectKey);
+            return result;
+        }
+        
+        List<String> text = split(new String(window.data, detection.bomLength(), window.data.length - detection.bomLength(),
+                detection.charset()));
+        result.put("lines", text);
+        result.put("lineCount", text.size());
+        result.put("charset", detection.charset().name());
+        if (!fromEnd) {
+            result.put("firstLine", 1);
+        } else if (window.complete) {
+            result.put("firstLine", window.lineCount - text.size() + 1);
+        }
+        // Byte limit reached before the requested lines: the line at the cut is partial
+        result.put("truncated", window.truncated);
+        
+        log.info("Previewed {} line(s) of {} with {} request(s), {} of {} bytes",
+                text.size(), objectKey, window.requests, window.bytesRead, window.totalSize);
+        return result;
+    }
+    
+    /**
+     * Bytes collected for a preview
+     */
+    private static final class Window {
+        
+        private byte[] data = new byte[0];
+        private long totalSize;
+        private String contentType;
+        private String contentEncoding;
+        private long bytesRead;
+        private int requests;
+        private boolean complete;
+        private boolean truncated;
+        // Lines in the whole object, known for tail previews covering it
+        private long lineCount;
+        // Compressed object found by a ranged read: read it again through a decompressor
+        private boolean compressed;
+        private Decompression.Codec codec;
+        // Suffix range ignored by the server: the last lines need a scan of the whole object
+        private boolean rangeIgnored;
+        // Compressed (or range ignored) object too large to be scanned for its last lines
+        private boolean tailUnavailable;
+    }
+    
+    /**
+     * Leading ranges until wanted lines have ended, the object ends or maxBytes
+     */
+    private Window head(S3Client s3Client, String bucketName, String objectKey, int wanted) throws IOException {
+        Window window = new Window();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        long offset = 0;
+        long size = Math.max(1, windowSize);
+        int newlines = 0;
+        long totalSize = Long.MAX_VALUE;
+        
+        while (newlines < wanted && offset < totalSize && offset < maxBytes) {
+            long length = Math.min(size, maxBytes - offset);
+            ResponseInputStream<GetObjectResponse> stream = get(s3Client, bucketName, objectKey,
+                    "bytes=" + offset + "-" + (offset + length - 1), window);
+            if (stream == null) {
+                totalSize = offset;
+                break;
+            }
+            
+            try (stream) {
+                totalSize = totalSize(stream.response());
+                if (Decompression.isExpected(window.contentEncoding, null)) {
+                    window.compressed = true;
+                    stream.abort();
+                    return window;
+                }
+                // A server ignoring the range sends the object from its start: read on, up to maxBytes
+                long remaining = stream.response().contentRange() != null ? length : maxBytes - offset;
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int n;
+                while (newlines < wanted && remaining > 0
+                        && (n = stream.read(chunk, 0, (int) Math.min(chunk.length, remaining))) > 0) {
+                    if (window.bytesRead == 0 && Decompression.detect(chunk, n) != null) {
+                        window.compressed = true;
+                        stream.abort();
+                        return window;
+                    }
+                    int end = n;
+                    for (int i = 0; i < n; i++) {
+                        if (chunk[i] == '\n' && ++newlines == wanted) {
+                            end = i + 1;
+                            break;
+                        }
+                    }
+                    data.write(chunk, 0, end);
+                    offset += end;
+                    window.bytesRead += n;
+                    remaining -= n;
+                }
+                if (newlines >= wanted || (remaining == 0 && stream.read() >= 0)) {
+                    // Last line or length reached: drop the rest of the body
+                    stream.abort();
+                }
+            }
+            size *= 2;
+        }
+        
+        window.data = data.toByteArray();
+        window.totalSize = totalSize == Long.MAX_VALUE ? offset : totalSize;
+        window.complete = offset >= window.totalSize;
+        window.truncated = newlines < wanted && !window.complete;
+        return window;
+    }
+    
+    /**
+     * Suffix ranges, growing towards the start, until wanted complete lines, the start of the object or maxBytes
+     */
+    private Window tail(S3Client s3Client, String bucketName, String objectKey, int wanted) throws IOException {
+        Window window = new Window();
+        byte[] data;
+        long size = Math.max(1, Math.min(windowSize, maxBytes));
+        
+        ResponseInputStream<GetObjectResponse> first = get(s3Client, bucketName, objectKey, "bytes=-" + size, window);
+        if (first == null) {
+            window.complete = true;
+            return window;
+        }
+        long start;
+        try (first) {
+            if (Decompression.isExpected(window.contentEncoding, null)) {
+                window.compressed = true;
+                first.abort();
+                return window;
+            }
+            window.totalSize = totalSize(first.response());
+            if (first.response().contentRange() == null && window.totalSize > size) {
+                // Whole object sent from its start: its end is only reached by a scan
+                window.rangeIgnored = true;
+                first.abort();
+                return window;
+            }
+            data = readAtMost(first, size);
+            start = window.totalSize - data.length;
+        }
+        window.bytesRead = data.length;
+        
+        while (start > 0 && countLines(data) <= wanted && window.bytesRead < maxBytes) {
+            size *= 2;
+            long length = Math.min(Math.min(size, start), maxBytes - window.bytesRead);
+            ResponseInputStream<GetObjectResponse> stream = get(s3Client, bucketName, objectKey,
+                    "bytes=" + (start - length) + "-" + (start - 1), window);
+            if (stream == null) {
+                break;
+            }
+            byte[] previous;
+            try (stream) {
+                previous = readAtMost(stream, length);
+            }
+            byte[] joined = Arrays.copyOf(previous, previous.length + data.length);
+            System.arraycopy(data, 0, joined, previous.length, data.length);
+            data = joined;
+            start -= previous.length;
+            window.bytesRead += previous.length;
+        }
+        
+        window.complete = start <= 0;
+        if (window.complete ? Decompression.detect(data, data.length) != null
+                : ContentSniffer.detect(data, data.length, window.contentType).binary()
+                        && startsCompressed(s3Client, bucketName, objectKey, window)) {
+            window.compressed = true;
+            return window;
+        }
+        int from = lastLinesStart(data, wanted, window.complete);
+        window.truncated = from < 0;
+        window.data = Arrays.copyOfRange(data, Math.max(0, from), data.length);
+        if (window.complete) {
+            window.lineCount = countLines(data);
+        }
+        return window;
+    }
+    
+    /**
+     * Whether the object starts with compression magic bytes - checked when a suffix looks binary
+     */
+    private boolean startsCompressed(S3Client s3Client, String bucketName, String objectKey, Window window)
+            throws IOException {
+        ResponseInputStream<GetObjectResponse> stream = get(s3Client, bucketName, objectKey, "bytes=0-15", window);
+        if (stream == null) {
+            return false;
+        }
+        try (stream) {
+            byte[] magic = readAtMost(stream, 16);
+            return Decompression.detect(magic, magic.length) != null;
+        }
+    }
+    
+    /**
+     * Whole-object GET read through the decompressor: a head read stops after the wanted lines,
+     * a tail read scans the whole object keeping its last maxBytes in a ring buffer.
+     * The scan of a tail read is bounded by maxBytes of compressed content.
+     */
+    private Window streamed(S3Client s3Client, String bucketName, String objectKey, int wanted, boolean fromEnd,
+                            int requests) throws IOException {
+        Window window = new Window();
+        window.requests = requests + 1;
+        try (ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(objectKey)
+                .build())) {
+            GetObjectResponse response = stream.response();
+            window.totalSize = response.contentLength();
+            window.contentType = response.contentType();
+            window.contentEncoding = response.contentEncoding();
+            if (fromEnd && (response.contentLength() == null || response.contentLength() > maxBytes)) {
+                window.tailUnavailable = true;
+                stream.abort();
+                return window;
+            }
+            
+            Decompression.Opened opened = Decompression.open(stream, maxDecompressedSize);
+            window.codec = opened.codec();
+            int limit = (int) Math.max(1, Math.min(maxBytes, Integer.MAX_VALUE - 8));
+            if (fromEnd) {
+                streamedTail(opened.stream(), window, wanted, limit);
+            } else {
+                streamedHead(opened.stream(), window, wanted, limit);
+            }
+            if (!window.complete) {
+                stream.abort();
+            }
+        }
+        return window;
+    }
+    
+    private void streamedHead(InputStream in, Window window, int wanted, int limit) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int newlines = 0;
+        boolean ended = false;
+        while (newlines < wanted && data.size() < limit) {
+            int n = in.read(chunk, 0, Math.min(chunk.length, limit - data.size()));
+            if (n < 0) {
+                ended = true;
+                break;
+            }
+            int end = n;
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] == '\n' && ++newlines == wanted) {
+                    end = i + 1;
+                    break;
+                }
+            }
+            data.write(chunk, 0, end);
+            window.bytesRead += n;
+        }
+        
+        window.data = data.toByteArray();
+        window.complete = ended;
+        window.truncated = newlines < wanted && !ended;
+    }
+    
+    private void streamedTail(InputStream in, Window window, int wanted, int limit) throws IOException {
+        byte[] ring = new byte[limit];
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, limit)];
+        long total = 0;
+        long newlines = 0;
+        byte last = 0;
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] == '\n') {
+                    newlines++;
+                }
+            }
+            last = chunk[n - 1];
+            int position = (int) (total % limit);
+            int first = Math.min(n, limit - position);
+            System.arraycopy(chunk, 0, ring, position, first);
+            System.arraycopy(chunk, first, ring, 0, n - first);
+            total += n;
+        }
+        
+        byte[] data;
+        if (total <= limit) {
+            data = Arrays.copyOf(ring, (int) total);
+        } else {
+            int position = (int) (total % limit);
+            data = new byte[limit];
+            System.arraycopy(ring, position, data, 0, limit - position);
+            System.arraycopy(ring, 0, data, limit - position, position);
+        }
+        
+        int from = lastLinesStart(data, wanted, total <= limit);
+        window.truncated = from < 0;
+        window.data = Arrays.copyOfRange(data, Math.max(0, from), data.length);
+        window.bytesRead = total;
+        window.complete = true;
+        window.lineCount = total == 0 ? 0 : last == '\n' ? newlines : newlines + 1;
+    }
+    
+    /**
+     * Ranged GET, or null when the range starts after the end of the object (empty object)
+     */
+    private ResponseInputStream<GetObjectResponse> get(S3Client s3Client, String bucketName, String objectKey,
+                                                       String range, Window window) {
+        window.requests++;
+        try {
+            ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .range(range)
+                    .build());
+            window.contentType = stream.response().contentType();
+            window.contentEncoding = stream.response().contentEncoding();
+            return stream;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 416) {
+                return null;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * At most length bytes of a ranged response - a longer body (range ignored) is aborted, not drained
+     */
+    private static byte[] readAtMost(ResponseInputStream<GetObjectResponse> stream, long length) throws IOException {
+        byte[] data = stream.readNBytes((int) Math.min(length, Integer.MAX_VALUE - 8));
+        if (stream.read() >= 0) {
+            stream.abort();
+        }
+        return data;
+    }
+    
+    /**
+     * Object size from the Content-Range of a ranged response (its length when the range was ignored)
+     */
+    private static long totalSize(GetObjectResponse response) {
+        if (response.contentRange() != null) {
+            Matcher matcher = CONTENT_RANGE.matcher(response.contentRange().trim());
+            if (matcher.matches() && !"*".equals(matcher.group(3))) {
+                return Long.parseLong(matcher.group(3));
+            }
+        }
+        return response.contentLength();
+    }
+    
+    /**
+     * Number of lines in data, a trailing newline not starting a new line
+     */
+    private static long countLines(byte[] data) {
+        if (data.length == 0) {
+            return 0;
+        }
+        long newlines = 0;
+        for (byte b : data) {
+            if (b == '\n') {
+                newlines++;
+            }
+        }
+        return data[data.length - 1] == '\n' ? newlines : newlines + 1;
+    }
+    
+    /**
+     * Start of the last wanted complete lines of data, 0 if data starts the object,
+     * or -1 if data holds fewer (its first line is then partial)
+     */
+    private static int lastLinesStart(byte[] data, int wanted, boolean atStart) {
+        int end = data.length;
+        if (end > 0 && data[end - 1] == '\n') {
+            end--;
+        }
+        int newlines = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            if (data[i] == '\n' && ++newlines == wanted) {
+                return i + 1;
+            }
+        }
+        return atStart ? 0 : -1;
+    }
+    
+    /**
+     * Split text on line feeds, dropping carriage returns and the empty line after a final newline
+     */
+    private static List<String> split(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            int next = end < 0 ? text.length() : end + 1;
+            if (end < 0) {
+                end = text.length();
+            }
+            if (end > start && text.charAt(end - 1) == '\r') {
+                end--;
+            }
+            lines.add(text.substring(start, end));
+            start = next;
+        }
+        return lines;
+    }
+}
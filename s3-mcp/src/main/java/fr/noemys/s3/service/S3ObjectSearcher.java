@@ -0,0 +1,373 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Line-by-line search over a streamed object.
+ * Bytes are scanned in fixed chunks and split on '\n' while tracking line numbers and byte offsets;
+ * only matching lines are decoded and kept. The charset is detected from the first bytes and the Content-Type;
+ * UTF-16 content is transcoded to UTF-8 first, so that lines still end on a '\n' byte.
+ * Case-sensitive literals are matched on the raw bytes of UTF-8 content, so non-matching lines are never
+ * turned into strings. Lines longer than the limit are cut, and a regex gets a time budget per line.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3ObjectSearcher {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3ObjectSearcher.class);
+    
+    private static final int CHUNK_SIZE = 64 * 1024;
+    
+    @Value("${mcp.s3.search.default-max-matches:100}")
+    private int defaultMaxMatches;
+    
+    @Value("${mcp.s3.search.max-matches:1000}")
+    private int maxMatchesLimit;
+    
+    @Value("${mcp.s3.search.max-line-length:65536}")
+    private int maxLineLength;
+    
+    @Value("${mcp.s3.search.max-returned-line-length:1024}")
+    private int maxReturnedLineLength;
+    
+    @Value("${mcp.s3.search.regex-timeout-millis:1000}")
+    private long regexTimeoutMillis;
+    
+    /**
+     * Matcher of one line, given its bytes and their charset
+     */
+    @FunctionalInterface
+    public interface LineMatcher {
+        boolean matches(byte[] line, int length, Charset charset);
+    }
+    
+    /**
+     * Build a line matcher - a regex or a literal, optionally case-insensitive
+     */
+    public LineMatcher matcher(String pattern, boolean regex, boolean ignoreCase) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("pattern is required");
+        }
+        
+        if (regex) {
+            Pattern compiled;
+            try {
+                compiled = Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex: " + e.getDescription());
+            }
+            long timeoutNanos = Math.max(1, regexTimeoutMillis) * 1_000_000;
+            return (line, length, charset) -> compiled.matcher(
+                    new BoundedCharSequence(new String(line, 0, length, charset), System.nanoTime() + timeoutNanos)).find();
+        }
+        if (ignoreCase) {
+            String needle = pattern.toLowerCase(Locale.ROOT);
+            return (line, length, charset) -> new String(line, 0, length, charset).toLowerCase(Locale.ROOT).contains(needle);
+        }
+        byte[] needle = pattern.getBytes(StandardCharsets.UTF_8);
+        return (line, length, charset) -> StandardCharsets.UTF_8.equals(charset)
+                ? indexOf(line, length, needle) >= 0
+                : new String(line, 0, length, charset).contains(pattern);
+    }
+    
+    /**
+     * Scan the stream until its end or maxMatches matching lines
+     * 
+     * @param contentType Content-Type of the (decompressed) content, or null
+     * @return matches with lineNumber, offset and line, and scan counters; complete is false when stopped early
+     */
+    public Map<String, Object> search(InputStream stream, String contentType, LineMatcher matcher, Integer maxMatches)
+            throws IOException {
+        if (maxMatches != null && maxMatches <= 0) {
+            throw new IllegalArgumentException("maxMatches must be greater than 0");
+        }
+        int limit = Math.min(maxMatches != null ? maxMatches : defaultMaxMatches, maxMatchesLimit);
+        
+        BufferedInputStream buffered = new BufferedInputStream(stream, CHUNK_SIZE);
+        buffered.mark(ContentSniffer.SAMPLE_SIZE);
+        byte[] sample = buffered.readNBytes(ContentSniffer.SAMPLE_SIZE);
+        buffered.reset();
+        ContentSniffer.Detection detection = ContentSniffer.detect(sample, sample.length, contentType);
+        // Binary content is still searched, as UTF-8
+        Charset charset = detection.binary() ? StandardCharsets.UTF_8 : detection.charset();
+        buffered.skipNBytes(detection.bomLength());
+        InputStream content = buffered;
+        boolean transcoded = !isAsciiCompatible(charset);
+        if (transcoded) {
+            content = new Utf8Transcoder(new InputStreamReader(buffered, charset));
+        }
+        Charset lineCharset = transcoded ? StandardCharsets.UTF_8 : charset;
+        
+        List<Map<String, Object>> matches = new ArrayList<>();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        byte[] line = new byte[Math.min(CHUNK_SIZE, Math.max(1, maxLineLength))];
+        int lineLength = 0;
+        boolean lineCut = false;
+        // Offsets of UTF-8 and single-byte content stay object offsets, the byte order mark included
+        long lineOffset = transcoded ? 0 : detection.bomLength();
+        long lineNumber = 1;
+        long bytesScanned = lineOffset;
+        boolean complete = true;
+        
+        int n;
+        scan:
+        while ((n = content.read(chunk)) > 0) {
+            for (int i = 0; i < n; i++) {
+                byte b = chunk[i];
+                if (b == '\n') {
+                    if (matchLine(matcher, lineCharset, line, lineLength, lineCut, lineNumber, lineOffset, matches)
+                            && matches.size() >= limit) {
+                        bytesScanned += i + 1;
+                        complete = false;
+                        break scan;
+                    }
+                    lineOffset = bytesScanned + i + 1;
+                    lineNumber++;
+                    lineLength = 0;
+                    lineCut = false;
+                } else if (lineLength < maxLineLength) {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, Math.min(line.length * 2, maxLineLength));
+                    }
+                    line[lineLength++] = b;
+                } else {
+                    lineCut = true;
+                }
+            }
+            bytesScanned += n;
+        }
+        
+        // Last line without a trailing newline
+        if (complete && (lineLength > 0 || lineCut)) {
+            matchLine(matcher, lineCharset, line, lineLength, lineCut, lineNumber, lineOffset, matches);
+        } else if (complete) {
+            lineNumber--;
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("matches", matches);
+        result.put("matchCount", matches.size());
+        result.put("maxMatches", limit);
+        result.put("complete", complete);
+        result.put("bytesScanned", bytesScanned);
+        result.put("linesScanned", lineNumber);
+        result.put("charset", charset.name());
+        if (transcoded) {
+            // Offsets count the bytes of the text re-encoded as UTF-8, after the byte order mark
+            result.put("offsetsInUtf8", true);
+        }
+        
+        log.info("Search matched {} line(s) in {} line(s) / {} bytes (complete: {})",
+                matches.size(), lineNumber, bytesScanned, complete);
+        return result;
+    }
+    
+    /**
+     * Test one line and record it if it matches
+     */
+    private boolean matchLine(LineMatcher matcher, Charset charset, byte[] line, int length, boolean cut,
+                              long lineNumber, long offset, List<Map<String, Object>> matches) {
+        // Windows line endings
+        if (!cut && length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        try {
+            if (!matcher.matches(line, length, charset)) {
+                return false;
+            }
+        } catch (RegexTimeoutException e) {
+            throw new IllegalArgumentException("Regex took longer than " + regexTimeoutMillis + " ms on line "
+                    + lineNumber + ": simplify the pattern");
+        }
+        
+        String text = new String(line, 0, length, charset);
+        boolean truncated = cut;
+        if (text.length() > maxReturnedLineLength) {
+            int end = maxReturnedLineLength;
+            // Do not split a surrogate pair
+            if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            text = text.substring(0, end);
+            truncated = true;
+        }
+        
+        Map<String, Object> match = new HashMap<>();
+        match.put("lineNumber", lineNumber);
+        match.put("offset", offset);
+        match.put("line", text);
+        if (truncated) {
+            match.put("lineTruncated", true);
+        }
+        matches.add(match);
+        return true;
+    }
+    
+    /**
+     * Whether lines of the charset end on a '\n' byte and carriage returns are '\r' bytes
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        return Arrays.equals("\r\n".getBytes(charset), new byte[] {'\r', '\n'});
+    }
+    
+    /**
+     * Thrown by BoundedCharSequence once the regex ran out of time
+     */
+    private static final class RegexTimeoutException extends RuntimeException {
+        
+        private RegexTimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+    
+    /**
+     * Line handed to the regex engine, checking a deadline as characters are read,
+     * so that a catastrophically backtracking pattern cannot hold the thread
+     */
+    static final class BoundedCharSequence implements CharSequence {
+        
+        private static final int CHECK_INTERVAL = 4096;
+        
+        private final String text;
+        private final long deadlineNanos;
+        private int reads;
+        
+        BoundedCharSequence(String text, long deadlineNanos) {
+            this.text = text;
+            this.deadlineNanos = deadlineNanos;
+        }
+        
+        @Override
+        public char charAt(int index) {
+            if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() - deadlineNanos > 0) {
+                throw new RegexTimeoutException();
+            }
+            return text.charAt(index);
+        }
+        
+        @Override
+        public int length() {
+            return text.length();
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+        
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+    
+    /**
+     * UTF-8 encoding of the characters of a reader, as a stream
+     */
+    private static final class Utf8Transcoder extends InputStream {
+        
+        private final Reader reader;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE / 4).flip();
+        // At most 3 bytes per char
+        private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE / 4 * 3).flip();
+        private boolean ended;
+        
+        private Utf8Transcoder(Reader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!bytes.hasRemaining()) {
+                if (ended) {
+                    return -1;
+                }
+                fill();
+            }
+            int n = Math.min(len, bytes.remaining());
+            bytes.get(b, off, n);
+            return n;
+        }
+        
+        /**
+         * Encode the next characters - a high surrogate left at the end waits for its pair
+         */
+        private void fill() throws IOException {
+            chars.compact();
+            int n = reader.read(chars);
+            chars.flip();
+            bytes.clear();
+            if (n < 0) {
+                ended = true;
+                encoder.encode(chars, bytes, true);
+                encoder.flush(bytes);
+            } else {
+                encoder.encode(chars, bytes, false);
+            }
+            bytes.flip();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+    
+    /**
+     * First index of needle in the first length bytes of haystack, or -1
+     */
+    static int indexOf(byte[] haystack, int length, byte[] needle) {
+        int last = length - needle.length;
+        byte first = needle[0];
+        for (int i = 0; i <= last; i++) {
+            if (haystack[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && haystack[i + j] == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,226 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Parallel listing engine for very large buckets.
+ * Sub-prefixes are discovered level by level with delimiter "/" and commonPrefixes,
+ * then each sub-prefix (shard) is listed with continuation tokens on a bounded worker pool.
+ * Concurrent listObjectsV2 calls are also capped per endpoint across all listings.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3ParallelLister {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3ParallelLister.class);
+    
+    private static final String DELIMITER = "/";
+    
+    @Value("${mcp.s3.parallel-list.parallelism:8}")
+    private int defaultParallelism;
+    
+    @Value("${mcp.s3.parallel-list.max-parallelism-per-endpoint:32}")
+    private int maxParallelismPerEndpoint;
+    
+    @Value("${mcp.s3.parallel-list.discovery-depth:2}")
+    private int discoveryDepth;
+    
+    // Caps concurrent listing requests per endpoint, whatever the number of listings in progress
+    private final Map<String, Semaphore> endpointPermits = new ConcurrentHashMap<>();
+    
+    /**
+     * Visitor receiving listed pages - called concurrently from worker threads.
+     * Returning false stops the listing.
+     */
+    @FunctionalInterface
+    public interface PageVisitor {
+        boolean visit(String shardPrefix, List<S3Object> objects);
+    }
+    
+    /**
+     * What a shard visitor asks for after a page
+     */
+    public enum Visit {
+        CONTINUE,
+        // Stop listing this shard only: its next pages hold greater keys
+        SKIP_SHARD,
+        STOP
+    }
+    
+    /**
+     * Visitor that can also stop listing a single shard - called concurrently from worker threads
+     */
+    @FunctionalInterface
+    public interface ShardVisitor {
+        Visit visit(String shardPrefix, List<S3Object> objects);
+    }
+    
+    /**
+     * List every object under prefix in parallel, handing pages to the visitor
+     * 
+     * @return the shard prefixes that were listed (objects found during discovery are reported under the parent prefix)
+     */
+    public List<String> list(S3Client s3Client, String endpoint, String bucketName, String prefix,
+                             Integer parallelism, PageVisitor visitor) {
+        return listShards(s3Client, endpoint, bucketName, prefix, parallelism,
+                (shardPrefix, objects) -> visitor.visit(shardPrefix, objects) ? Visit.CONTINUE : Visit.STOP);
+    }
+    
+    /**
+     * List every object under prefix in parallel, letting the visitor skip the rest of a shard.
+     * Pages of a shard come in key order.
+     * 
+     * @return the shard prefixes that were listed (objects found during discovery are reported under the parent prefix)
+     */
+    public List<String> listShards(S3Client s3Client, String endpoint, String bucketName, String prefix,
+                                   Integer parallelism, ShardVisitor visitor) {
+        int workers = Math.max(1, Math.min(parallelism != null ? parallelism : defaultParallelism, maxParallelismPerEndpoint));
+        Semaphore permits = endpointPermits.computeIfAbsent(endpoint, e -> new Semaphore(maxParallelismPerEndpoint));
+        String basePrefix = prefix != null ? prefix : "";
+        
+        // Once the visitor asks to stop, no further page is requested by any worker
+        AtomicBoolean stopped = new AtomicBoolean();
+        ShardVisitor guardedVisitor = (shardPrefix, objects) -> {
+            Visit visit = visitor.visit(shardPrefix, objects);
+            if (visit == Visit.STOP) {
+                stopped.set(true);
+            }
+            return stopped.get() ? Visit.STOP : visit;
+        };
+        
+        try (ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofVirtual().name("s3-list-", 0).factory())) {
+            // Discover sub-prefixes until there are enough shards to keep every worker busy
+            List<String> frontier = List.of(basePrefix);
+            for (int depth = 0; depth < discoveryDepth && !frontier.isEmpty() && frontier.size() < workers
+                    && !stopped.get(); depth++) {
+                List<Future<List<String>>> discoveries = new ArrayList<>();
+                for (String shardPrefix : frontier) {
+                    discoveries.add(pool.submit(() -> discover(s3Client, permits, bucketName, shardPrefix, guardedVisitor, stopped)));
+                }
+                
+                List<String> next = new ArrayList<>();
+                for (Future<List<String>> discovery : discoveries) {
+                    next.addAll(await(discovery, pool));
+                }
+                frontier = next;
+            }
+            
+            log.info("Listing bucket {} prefix '{}' in {} shard(s) with {} worker(s)",
+                    bucketName, basePrefix, frontier.size(), workers);
+            
+            // List every shard fully
+            List<Future<?>> listings = new ArrayList<>();
+            for (String shardPrefix : frontier) {
+                listings.add(pool.submit(() -> listShard(s3Client, permits, bucketName, shardPrefix, guardedVisitor, stopped)));
+            }
+            for (Future<?> listing : listings) {
+                await(listing, pool);
+            }
+            return frontier;
+        }
+    }
+    
+    /**
+     * List one level below shardPrefix: direct objects go to the visitor, sub-prefixes are returned
+     */
+    private List<String> discover(S3Client s3Client, Semaphore permits, String bucketName, String shardPrefix,
+                                  ShardVisitor visitor, AtomicBoolean stopped) {
+        List<String> subPrefixes = new ArrayList<>();
+        forEachPage(s3Client, permits, bucketName, shardPrefix, DELIMITER, stopped, response -> {
+            for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+                subPrefixes.add(commonPrefix.prefix());
+            }
+            // A skipped level is still listed for its sub-prefixes
+            return response.contents().isEmpty() || visitor.visit(shardPrefix, response.contents()) != Visit.STOP;
+        });
+        return subPrefixes;
+    }
+    
+    /**
+     * List every object below shardPrefix
+     */
+    private void listShard(S3Client s3Client, Semaphore permits, String bucketName, String shardPrefix,
+                           ShardVisitor visitor, AtomicBoolean stopped) {
+        forEachPage(s3Client, permits, bucketName, shardPrefix, null, stopped,
+                response -> visitor.visit(shardPrefix, response.contents()) == Visit.CONTINUE);
+    }
+    
+    /**
+     * Walk listObjectsV2 pages until the last one or until the handler returns false
+     */
+    private void forEachPage(S3Client s3Client, Semaphore permits, String bucketName, String prefix, String delimiter,
+                             AtomicBoolean stopped, PageHandler handler) {
+        String continuationToken = null;
+        do {
+            if (stopped.get()) {
+                return;
+            }
+            
+            ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .delimiter(delimiter);
+            if (continuationToken != null) {
+                requestBuilder.continuationToken(continuationToken);
+            }
+            
+            ListObjectsV2Response response;
+            permits.acquireUninterruptibly();
+            try {
+                response = s3Client.listObjectsV2(requestBuilder.build());
+            } finally {
+                permits.release();
+            }
+            
+            if (!handler.handle(response) || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            continuationToken = Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+        } while (continuationToken != null);
+    }
+    
+    /**
+     * Wait for a task, cancelling the remaining work if it failed
+     */
+    static <T> T await(Future<T> future, ExecutorService pool) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for S3 requests", e);
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface PageHandler {
+        boolean handle(ListObjectsV2Response response);
+    }
+}
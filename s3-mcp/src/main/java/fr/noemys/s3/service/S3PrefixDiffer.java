@@ -0,0 +1,464 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diff of two prefixes, in the same bucket or not, on the same endpoint or not.
+ * Both sides are listed concurrently, each by a background thread a couple of pages ahead, and the two sorted
+ * key streams are merge-joined on the key relative to their prefix: memory stays at a few pages per side
+ * whatever the number of keys. Keys on both sides are compared by size and ETag.
+ * In sync mode the differences are applied while the diff runs, with server-side copies in parallel
+ * and optional batched deletes of the keys missing from the source.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3PrefixDiffer {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3PrefixDiffer.class);
+    
+    // Pages listed ahead of the merge on each side
+    private static final int PREFETCH_PAGES = 2;
+    
+    @Value("${mcp.s3.diff.max-reported-keys:1000}")
+    private int maxReportedKeys;
+    
+    @Value("${mcp.s3.diff.sync-concurrency:8}")
+    private int defaultConcurrency;
+    
+    @Value("${mcp.s3.diff.max-sync-concurrency:32}")
+    private int maxConcurrency;
+    
+    private final S3MultipartUploader uploader;
+    private final S3BatchDeleter batchDeleter;
+    
+    public S3PrefixDiffer(S3MultipartUploader uploader, S3BatchDeleter batchDeleter) {
+        this.uploader = uploader;
+        this.batchDeleter = batchDeleter;
+    }
+    
+    /**
+     * One side of a diff
+     */
+    public record Side(S3Client s3Client, String bucketName, String prefix) {
+    }
+    
+    /**
+     * Compare two prefixes and, in sync mode, make target match source
+     * 
+     * @param deleteExtra in sync mode, also delete the target keys missing from source
+     */
+    public Map<String, Object> diff(Side source, Side target, boolean sync, boolean deleteExtra, Integer concurrency) {
+        if (concurrency != null && concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be greater than 0");
+        }
+        long startNanos = System.nanoTime();
+        Report report = new Report();
+        Sync syncer = sync ? new Sync(source, target, Math.max(1, Math.min(concurrency != null ? concurrency
+                : defaultConcurrency, maxConcurrency))) : null;
+        
+        try (KeyStream sourceKeys = new KeyStream(source); KeyStream targetKeys = new KeyStream(target)) {
+            S3Object sourceObject = sourceKeys.peek();
+            S3Object targetObject = targetKeys.peek();
+            while (sourceObject != null || targetObject != null) {
+                int order = sourceObject == null ? 1 : targetObject == null ? -1
+                        : compareKeys(sourceKeys.relativeKey(sourceObject), targetKeys.relativeKey(targetObject));
+                if (order < 0) {
+                    String key = sourceKeys.relativeKey(sourceObject);
+                    report.added(key, sourceObject);
+                    if (syncer != null) {
+                        syncer.copy(key, sizeOf(sourceObject));
+                    }
+                    sourceKeys.advance();
+                } else if (order > 0) {
+                    String key = targetKeys.relativeKey(targetObject);
+                    report.removed(key, targetObject);
+                    if (syncer != null && deleteExtra) {
+                        syncer.delete(key);
+                    }
+                    targetKeys.advance();
+                } else {
+                    String key = sourceKeys.relativeKey(sourceObject);
+                    String reason = difference(sourceObject, targetObject, report);
+                    if (reason != null) {
+                        report.changed(key, sourceObject, targetObject, reason);
+                        if (syncer != null) {
+                            syncer.copy(key, sizeOf(sourceObject));
+                        }
+                    } else {
+                        report.unchanged++;
+                    }
+                    sourceKeys.advance();
+                    targetKeys.advance();
+                }
+                sourceObject = sourceKeys.peek();
+                targetObject = targetKeys.peek();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while listing prefixes", e);
+        } finally {
+            if (syncer != null) {
+                // Waits for the copies and deletes in flight
+                syncer.close();
+            }
+        }
+        
+        Map<String, Object> result = report.toMap();
+        result.put("source", Map.of("bucketName", source.bucketName(), "prefix", source.prefix()));
+        result.put("target", Map.of("bucketName", target.bucketName(), "prefix", target.prefix()));
+        if (syncer != null) {
+            result.put("sync", syncer.toMap());
+        }
+        result.put("durationMs", (System.nanoTime() - startNanos) / 1_000_000);
+        
+        log.info("Diffed {}/{} with {}/{}: {} added, {} removed, {} changed, {} unchanged",
+                source.bucketName(), source.prefix(), target.bucketName(), target.prefix(),
+                report.addedCount, report.removedCount, report.changedCount, report.unchanged);
+        return result;
+    }
+    
+    /**
+     * Why two objects differ, or null when they look identical.
+     * Multipart ETags are not an MD5 of the content: they are only compared with ETags of the same part count.
+     */
+    private static String difference(S3Object source, S3Object target, Report report) {
+        if (!Objects.equals(source.size(), target.size())) {
+            return "size";
+        }
+        String sourceETag = source.eTag();
+        String targetETag = target.eTag();
+        if (sourceETag == null || targetETag == null) {
+            report.unverified++;
+            return null;
+        }
+        if (!partCount(sourceETag).equals(partCount(targetETag))) {
+            report.unverified++;
+            return null;
+        }
+        return sourceETag.equals(targetETag) ? null : "etag";
+    }
+    
+    /**
+     * Size of a listed object - some S3-compatible servers omit it
+     */
+    private static long sizeOf(S3Object s3Object) {
+        return s3Object.size() != null ? s3Object.size() : 0L;
+    }
+    
+    private static String partCount(String eTag) {
+        int dash = eTag.lastIndexOf('-');
+        return dash < 0 ? "" : eTag.substring(dash + 1).replace("\"", "");
+    }
+    
+    /**
+     * Compare keys in code point order, which is the UTF-8 byte order S3 lists keys in
+     */
+    static int compareKeys(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return i < a.length() ? 1 : j < b.length() ? -1 : 0;
+    }
+    
+    /**
+     * Sorted objects of one side, listed by a background thread at most a few pages ahead
+     */
+    private static final class KeyStream implements AutoCloseable {
+        
+        // Marks the end of the listing
+        private static final List<S3Object> END = new ArrayList<>();
+        
+        private final Side side;
+        private final BlockingQueue<List<S3Object>> pages = new ArrayBlockingQueue<>(PREFETCH_PAGES);
+        private final Thread lister;
+        private volatile Exception failure;
+        private List<S3Object> page = List.of();
+        private int index;
+        private boolean ended;
+        
+        private KeyStream(Side side) {
+            this.side = side;
+            this.lister = Thread.ofVirtual().name("s3-diff-list").start(this::list);
+        }
+        
+        private void list() {
+            try {
+                try {
+                    for (ListObjectsV2Response response : side.s3Client().listObjectsV2Paginator(ListObjectsV2Request.builder()
+                            .bucket(side.bucketName())
+                            .prefix(side.prefix())
+                            .build())) {
+                        pages.put(response.contents());
+                    }
+                } catch (InterruptedException e) {
+                    // Closed before the end
+                    return;
+                } catch (Exception e) {
+                    failure = e;
+                }
+                pages.put(END);
+            } catch (InterruptedException e) {
+                // Closed before the end
+            }
+        }
+        
+        /**
+         * Next object without consuming it, or null at the end
+         */
+        private S3Object peek() throws InterruptedException {
+            while (index >= page.size()) {
+                if (ended) {
+                    return null;
+                }
+                List<S3Object> next = pages.take();
+                if (next == END) {
+                    ended = true;
+                    if (failure != null) {
+                        throw new IllegalStateException("Failed to list " + side.bucketName() + "/" + side.prefix()
+                                + ": " + failure.getMessage(), failure);
+                    }
+                    return null;
+                }
+                page = next;
+                index = 0;
+            }
+            return page.get(index);
+        }
+        
+        private void advance() {
+            index++;
+        }
+        
+        private String relativeKey(S3Object s3Object) {
+            return s3Object.key().substring(side.prefix().length());
+        }
+        
+        @Override
+        public void close() {
+            lister.interrupt();
+        }
+    }
+    
+    /**
+     * Counts of the diff, with the first keys of each kind
+     */
+    private final class Report {
+        
+        private final List<Map<String, Object>> added = new ArrayList<>();
+        private final List<Map<String, Object>> removed = new ArrayList<>();
+        private final List<Map<String, Object>> changed = new ArrayList<>();
+        private long addedCount;
+        private long addedBytes;
+        private long removedCount;
+        private long removedBytes;
+        private long changedCount;
+        private long unchanged;
+        private long unverified;
+        
+        private void added(String key, S3Object s3Object) {
+            addedCount++;
+            addedBytes += sizeOf(s3Object);
+            if (added.size() < maxReportedKeys) {
+                added.add(entry(key, s3Object));
+            }
+        }
+        
+        private void removed(String key, S3Object s3Object) {
+            removedCount++;
+            removedBytes += sizeOf(s3Object);
+            if (removed.size() < maxReportedKeys) {
+                removed.add(entry(key, s3Object));
+            }
+        }
+        
+        private void changed(String key, S3Object source, S3Object target, String reason) {
+            changedCount++;
+            if (changed.size() < maxReportedKeys) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("key", key);
+                entry.put("reason", reason);
+                entry.put("sourceSize", source.size());
+                entry.put("targetSize", target.size());
+                entry.put("sourceETag", source.eTag());
+                entry.put("targetETag", target.eTag());
+                changed.add(entry);
+            }
+        }
+        
+        private Map<String, Object> entry(String key, S3Object s3Object) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("key", key);
+            entry.put("size", s3Object.size());
+            entry.put("eTag", s3Object.eTag());
+            if (s3Object.lastModified() != null) {
+                entry.put("lastModified", s3Object.lastModified().toString());
+            }
+            return entry;
+        }
+        
+        private Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("added", added);
+            result.put("removed", removed);
+            result.put("changed", changed);
+            result.put("addedCount", addedCount);
+            result.put("addedBytes", addedBytes);
+            result.put("removedCount", removedCount);
+            result.put("removedBytes", removedBytes);
+            result.put("changedCount", changedCount);
+            result.put("unchangedCount", unchanged);
+            result.put("unverifiedCount", unverified);
+            result.put("identical", addedCount == 0 && removedCount == 0 && changedCount == 0);
+            result.put("reportTruncated", addedCount > added.size() || removedCount > removed.size()
+                    || changedCount > changed.size());
+            return result;
+        }
+    }
+    
+    /**
+     * Copies and deletes applied to the target while the diff runs.
+     * Tasks are submitted to a bounded pool; slots bound the tasks queued ahead of the workers.
+     */
+    private final class Sync implements AutoCloseable {
+        
+        private final Side source;
+        private final Side target;
+        private final int workers;
+        private final ExecutorService pool;
+        private final Semaphore slots;
+        private final AtomicLong copied = new AtomicLong();
+        private final AtomicLong copiedBytes = new AtomicLong();
+        private final AtomicLong copyFailed = new AtomicLong();
+        private final AtomicLong deleted = new AtomicLong();
+        private final AtomicLong deleteFailed = new AtomicLong();
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private List<String> deleteBatch = new ArrayList<>();
+        
+        private Sync(Side source, Side target, int workers) {
+            this.source = source;
+            this.target = target;
+            this.workers = workers;
+            this.pool = Executors.newFixedThreadPool(workers, Thread.ofVirtual().name("s3-sync-", 0).factory());
+            this.slots = new Semaphore(workers * 2);
+        }
+        
+        /**
+         * Server-side copy of a source key to the same relative key under the target prefix
+         */
+        private void copy(String key, long size) {
+            submit(() -> {
+                try {
+                    uploader.copy(target.s3Client(), source.bucketName(), source.prefix() + key,
+                            target.bucketName(), target.prefix() + key);
+                    copied.incrementAndGet();
+                    copiedBytes.addAndGet(size);
+                } catch (Exception e) {
+                    log.error("Error copying {}/{}{} to {}/{}{}", source.bucketName(), source.prefix(), key,
+                            target.bucketName(), target.prefix(), key, e);
+                    copyFailed.incrementAndGet();
+                    addError(key, "copy", e.getMessage());
+                }
+            });
+        }
+        
+        /**
+         * Queue a target key for deletion, sent by batches of DeleteObjects
+         */
+        private void delete(String key) {
+            deleteBatch.add(target.prefix() + key);
+            if (deleteBatch.size() >= S3BatchDeleter.MAX_KEYS_PER_REQUEST) {
+                flushDeletes();
+            }
+        }
+        
+        private void flushDeletes() {
+            if (deleteBatch.isEmpty()) {
+                return;
+            }
+            List<String> keys = deleteBatch;
+            deleteBatch = new ArrayList<>();
+            submit(() -> {
+                Map<String, Object> result = batchDeleter.delete(target.s3Client(), target.bucketName(), keys.iterator(), 1);
+                deleted.addAndGet((Long) result.get("deleted"));
+                deleteFailed.addAndGet((Long) result.get("failed"));
+                for (Object error : (List<?>) result.get("errors")) {
+                    if (error instanceof Map<?, ?> deleteError) {
+                        addError(String.valueOf(deleteError.get("key")), "delete", String.valueOf(deleteError.get("message")));
+                    }
+                }
+            });
+        }
+        
+        private void submit(Runnable task) {
+            slots.acquireUninterruptibly();
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+        
+        private void addError(String key, String operation, String message) {
+            synchronized (errors) {
+                if (errors.size() >= maxReportedKeys) {
+                    return;
+                }
+                Map<String, Object> error = new HashMap<>();
+                error.put("key", key);
+                error.put("operation", operation);
+                error.put("message", message);
+                errors.add(error);
+            }
+        }
+        
+        private Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("copied", copied.get());
+            result.put("copiedBytes", copiedBytes.get());
+            result.put("copyFailed", copyFailed.get());
+            result.put("deleted", deleted.get());
+            result.put("deleteFailed", deleteFailed.get());
+            synchronized (errors) {
+                result.put("errors", new ArrayList<>(errors));
+            }
+            result.put("concurrency", workers);
+            return result;
+        }
+        
+        @Override
+        public void close() {
+            flushDeletes();
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size and count aggregation of a prefix.
+ * Pages from the parallel lister are folded into primitive counters as they arrive - totals, per storage
+ * class and per first-level sub-prefix - so no per-object map or list is ever built, whatever the number of keys.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3PrefixSummarizer {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3PrefixSummarizer.class);
+    
+    private static final String DELIMITER = "/";
+    
+    // Sub-prefixes beyond the limit are added to this entry
+    private static final String OTHER_SUB_PREFIXES = "(other)";
+    
+    @Value("${mcp.s3.summary.max-sub-prefixes:1000}")
+    private int maxSubPrefixes;
+    
+    private final S3ParallelLister parallelLister;
+    
+    public S3PrefixSummarizer(S3ParallelLister parallelLister) {
+        this.parallelLister = parallelLister;
+    }
+    
+    /**
+     * Object count and bytes of a prefix in total, per storage class and per sub-prefix
+     */
+    public Map<String, Object> summarize(S3Client s3Client, String endpoint, String bucketName, String prefix,
+                                         Integer parallelism) {
+        String basePrefix = prefix != null ? prefix : "";
+        long startTime = System.currentTimeMillis();
+        Summary summary = new Summary(basePrefix);
+        
+        List<String> shards = parallelLister.list(s3Client, endpoint, bucketName, basePrefix, parallelism,
+                (shardPrefix, objects) -> {
+                    summary.add(objects);
+                    return true;
+                });
+        
+        Map<String, Object> result = summary.toMap();
+        result.put("bucketName", bucketName);
+        result.put("shards", shards.size());
+        result.put("durationMs", System.currentTimeMillis() - startTime);
+        
+        log.info("Summarized prefix '{}' of bucket {}: {} object(s), {} bytes in {} shard(s)",
+                basePrefix, bucketName, summary.total.objects, summary.total.bytes, shards.size());
+        return result;
+    }
+    
+    /**
+     * Object count and bytes
+     */
+    private static final class Totals {
+        
+        private long objects;
+        private long bytes;
+        
+        private void add(long size) {
+            objects++;
+            bytes += size;
+        }
+        
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("objects", objects);
+            map.put("bytes", bytes);
+            return map;
+        }
+    }
+    
+    /**
+     * Counters of one summary - pages are added from several listing threads
+     */
+    private final class Summary {
+        
+        private final String prefix;
+        private final Totals total = new Totals();
+        private final Totals directObjects = new Totals();
+        private final Map<String, Totals> storageClasses = new HashMap<>();
+        private final Map<String, Totals> subPrefixes = new HashMap<>();
+        private boolean subPrefixesTruncated;
+        private String largestKey;
+        private long largestSize = -1;
+        private long oldestMillis = Long.MAX_VALUE;
+        private long newestMillis = Long.MIN_VALUE;
+        
+        private Summary(String prefix) {
+            this.prefix = prefix;
+        }
+        
+        private synchronized void add(List<S3Object> objects) {
+            for (S3Object s3Object : objects) {
+                long size = s3Object.size() != null ? s3Object.size() : 0;
+                total.add(size);
+                
+                String storageClass = s3Object.storageClassAsString() != null ? s3Object.storageClassAsString() : "STANDARD";
+                storageClasses.computeIfAbsent(storageClass, c -> new Totals()).add(size);
+                
+                String key = s3Object.key();
+                int end = key.indexOf(DELIMITER, prefix.length());
+                if (end < 0) {
+                    directObjects.add(size);
+                } else {
+                    subPrefix(key.substring(0, end + 1)).add(size);
+                }
+                
+                if (size > largestSize) {
+                    largestSize = size;
+                    largestKey = key;
+                }
+                if (s3Object.lastModified() != null) {
+                    long lastModified = s3Object.lastModified().toEpochMilli();
+                    oldestMillis = Math.min(oldestMillis, lastModified);
+                    newestMillis = Math.max(newestMillis, lastModified);
+                }
+            }
+        }
+        
+        private Totals subPrefix(String subPrefix) {
+            Totals totals = subPrefixes.get(subPrefix);
+            if (totals == null) {
+                if (subPrefixes.size() >= maxSubPrefixes) {
+                    subPrefixesTruncated = true;
+                    return subPrefixes.computeIfAbsent(OTHER_SUB_PREFIXES, p -> new Totals());
+                }
+                totals = new Totals();
+                subPrefixes.put(subPrefix, totals);
+            }
+            return totals;
+        }
+        
+        private synchronized Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("prefix", prefix);
+            result.put("objects", total.objects);
+            result.put("totalBytes", total.bytes);
+            result.put("directObjects", directObjects.toMap());
+            
+            Map<String, Object> byStorageClass = new HashMap<>();
+            storageClasses.forEach((storageClass, totals) -> byStorageClass.put(storageClass, totals.toMap()));
+            result.put("storageClasses", byStorageClass);
+            
+            // Largest sub-prefixes first
+            List<Map.Entry<String, Totals>> sorted = new ArrayList<>(subPrefixes.entrySet());
+            sorted.sort(Comparator.comparingLong((Map.Entry<String, Totals> entry) -> entry.getValue().bytes).reversed());
+            List<Map<String, Object>> bySubPrefix = new ArrayList<>(sorted.size());
+            for (Map.Entry<String, Totals> entry : sorted) {
+                Map<String, Object> subPrefix = entry.getValue().toMap();
+                subPrefix.put("prefix", entry.getKey());
+                bySubPrefix.add(subPrefix);
+            }
+            result.put("subPrefixes", bySubPrefix);
+            result.put("subPrefixesTruncated", subPrefixesTruncated);
+            
+            if (largestKey != null) {
+                result.put("largestObject", Map.of("key", largestKey, "size", largestSize));
+            }
+            if (total.objects > 0 && oldestMillis <= newestMillis) {
+                result.put("oldestLastModified", Instant.ofEpochMilli(oldestMillis).toString());
+                result.put("newestLastModified", Instant.ofEpochMilli(newestMillis).toString());
+            }
+            return result;
+        }
+    }
+}
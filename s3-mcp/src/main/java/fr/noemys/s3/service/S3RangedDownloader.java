@@ -0,0 +1,408 @@
+package fr.noemys.s3.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parallel ranged GET engine for large objects.
+ * The first range is streamed as it arrives and tells the object size; the following ranges
+ * are fetched concurrently on the pooled async connections and handed out in order, so the
+ * caller reads one plain InputStream. The part size adapts to the measured time per part.
+ * At most concurrency parts are buffered per download, and all downloads share a budget of buffered bytes:
+ * once it is spent, a download reads its next range straight from the response instead of buffering ahead.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3RangedDownloader {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3RangedDownloader.class);
+    
+    private static final Pattern CONTENT_RANGE_TOTAL = Pattern.compile("^bytes \\d+-\\d+/(\\d+)$");
+    
+    @Value("${mcp.s3.parallel-download.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${mcp.s3.parallel-download.concurrency:4}")
+    private int concurrency;
+    
+    @Value("${mcp.s3.parallel-download.part-size:8388608}")
+    private long initialPartSize;
+    
+    @Value("${mcp.s3.parallel-download.min-part-size:1048576}")
+    private long minPartSize;
+    
+    @Value("${mcp.s3.parallel-download.max-part-size:33554432}")
+    private long maxPartSize;
+    
+    @Value("${mcp.s3.parallel-download.target-part-millis:1000}")
+    private long targetPartMillis;
+    
+    @Value("${mcp.s3.parallel-download.max-buffered-bytes:134217728}")
+    private long maxBufferedBytes;
+    
+    // Bytes of parts buffered or in flight, across all downloads
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    
+    /**
+     * Open an object for reading. Objects larger than the first part are read with parallel ranges;
+     * the returned response describes the whole object.
+     */
+    public CompletableFuture<ResponseInputStream<GetObjectResponse>> open(S3AsyncClient s3Client, String bucketName,
+                                                                         String objectKey) {
+        return open(s3Client, bucketName, objectKey, null);
+    }
+    
+    /**
+     * Open an object for reading unless its ETag is still ifNoneMatch - the future then fails with a 304
+     */
+    public CompletableFuture<ResponseInputStream<GetObjectResponse>> open(S3AsyncClient s3Client, String bucketName,
+                                                                         String objectKey, String ifNoneMatch) {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(objectKey)
+                .ifNoneMatch(ifNoneMatch);
+        if (!enabled) {
+            return s3Client.getObject(request.build(), AsyncResponseTransformer.toBlockingInputStream());
+        }
+        
+        long firstPartSize = Math.max(1, initialPartSize);
+        return s3Client.getObject(request.range("bytes=0-" + (firstPartSize - 1)).build(),
+                        AsyncResponseTransformer.<GetObjectResponse>toBlockingInputStream())
+                .handle((first, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(first);
+                    }
+                    // Empty objects cannot satisfy a range: read them with a plain GET
+                    Throwable cause = S3AsyncService.unwrap(error);
+                    if (cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 416) {
+                        return s3Client.getObject(GetObjectRequest.builder().bucket(bucketName).key(objectKey)
+                                        .ifNoneMatch(ifNoneMatch).build(),
+                                AsyncResponseTransformer.<GetObjectResponse>toBlockingInputStream());
+                    }
+                    return CompletableFuture.<ResponseInputStream<GetObjectResponse>>failedFuture(cause);
+                })
+                .thenCompose(future -> future)
+                .thenApply(first -> {
+                    GetObjectResponse response = first.response();
+                    Long totalSize = totalSize(response.contentRange());
+                    if (totalSize == null || totalSize <= response.contentLength()) {
+                        // Whole object in the first response
+                        return first;
+                    }
+                    
+                    log.info("Downloading {} ({} bytes) with parallel ranges of {} bytes", objectKey, totalSize, firstPartSize);
+                    ParallelRangeStream stream = new ParallelRangeStream(s3Client, bucketName, objectKey, response.eTag(),
+                            first, response.contentLength(), totalSize, firstPartSize);
+                    GetObjectResponse wholeObject = response.toBuilder()
+                            .contentLength(totalSize)
+                            .contentRange(null)
+                            .build();
+                    return new ResponseInputStream<>(wholeObject, AbortableInputStream.create(stream, stream::abort));
+                });
+    }
+    
+    /**
+     * Object size from a Content-Range header, or null
+     */
+    static Long totalSize(String contentRange) {
+        if (contentRange == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE_TOTAL.matcher(contentRange.trim());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : null;
+    }
+    
+    /**
+     * Take bytes from the shared buffer budget
+     * 
+     * @return false if the budget is spent
+     */
+    private boolean reserve(long bytes) {
+        while (true) {
+            long buffered = bufferedBytes.get();
+            if (buffered + bytes > maxBufferedBytes) {
+                return false;
+            }
+            if (bufferedBytes.compareAndSet(buffered, buffered + bytes)) {
+                return true;
+            }
+        }
+    }
+    
+    private void release(long bytes) {
+        bufferedBytes.addAndGet(-bytes);
+    }
+    
+    /**
+     * Range fetched ahead of the reader
+     */
+    private static final class Part {
+        
+        private final long start;
+        private final int length;
+        // SDK future, cancelled to abort the request
+        private final CompletableFuture<ResponseBytes<GetObjectResponse>> request;
+        // Completes after elapsedNanos is recorded
+        private final CompletableFuture<ResponseBytes<GetObjectResponse>> bytes;
+        private volatile long elapsedNanos;
+        
+        private Part(long start, int length, TimedBytes transformer,
+                     CompletableFuture<ResponseBytes<GetObjectResponse>> request) {
+            this.start = start;
+            this.length = length;
+            this.request = request;
+            this.bytes = request.whenComplete((result, error) -> elapsedNanos = transformer.elapsedNanos());
+        }
+    }
+    
+    /**
+     * Buffers a response like toBytes() and times the last attempt from when it started, so that parts
+     * queued behind others for a connection do not look slow
+     */
+    private static final class TimedBytes
+            implements AsyncResponseTransformer<GetObjectResponse, ResponseBytes<GetObjectResponse>> {
+        
+        private final AsyncResponseTransformer<GetObjectResponse, ResponseBytes<GetObjectResponse>> delegate =
+                AsyncResponseTransformer.toBytes();
+        private volatile long startNanos;
+        
+        @Override
+        public CompletableFuture<ResponseBytes<GetObjectResponse>> prepare() {
+            // Called by the SDK when each attempt starts
+            startNanos = System.nanoTime();
+            return delegate.prepare();
+        }
+        
+        @Override
+        public void onResponse(GetObjectResponse response) {
+            delegate.onResponse(response);
+        }
+        
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> publisher) {
+            delegate.onStream(publisher);
+        }
+        
+        @Override
+        public void exceptionOccurred(Throwable error) {
+            delegate.exceptionOccurred(error);
+        }
+        
+        private long elapsedNanos() {
+            return startNanos == 0 ? 0 : System.nanoTime() - startNanos;
+        }
+    }
+    
+    /**
+     * Reassembles the ranges in order: the first range is read straight from its response,
+     * the others from their buffers while the next ones are in flight.
+     * Single reader, not thread-safe.
+     */
+    private final class ParallelRangeStream extends InputStream {
+        
+        private final S3AsyncClient s3Client;
+        private final String bucketName;
+        private final String objectKey;
+        private final String eTag;
+        private final long totalSize;
+        private final Deque<Part> inFlight = new ArrayDeque<>();
+        
+        private InputStream current;
+        // Bytes of the shared budget held by current
+        private long currentReserved;
+        // Range read straight from its response: the first one, or one fetched once the budget was spent
+        private ResponseInputStream<GetObjectResponse> streamed;
+        private long nextOffset;
+        private long partSize;
+        private boolean closed;
+        
+        private ParallelRangeStream(S3AsyncClient s3Client, String bucketName, String objectKey, String eTag,
+                                    ResponseInputStream<GetObjectResponse> first, long firstLength, long totalSize,
+                                    long partSize) {
+            this.s3Client = s3Client;
+            this.bucketName = bucketName;
+            this.objectKey = objectKey;
+            this.eTag = eTag;
+            this.streamed = first;
+            this.current = first;
+            this.nextOffset = firstLength;
+            this.totalSize = totalSize;
+            this.partSize = partSize;
+            schedule();
+        }
+        
+        /**
+         * Start range GETs until concurrency parts are in flight or buffered, or the shared budget is spent
+         */
+        private void schedule() {
+            while (inFlight.size() < Math.max(1, concurrency) && nextOffset < totalSize) {
+                int length = (int) Math.min(partSize, totalSize - nextOffset);
+                if (!reserve(length)) {
+                    return;
+                }
+                TimedBytes transformer = new TimedBytes();
+                inFlight.add(new Part(nextOffset, length, transformer, s3Client.getObject(rangeRequest(length), transformer)));
+                nextOffset += length;
+            }
+        }
+        
+        /**
+         * GET of the next length bytes.
+         * If-Match: fail rather than mix two versions of the object if it changes meanwhile
+         */
+        private GetObjectRequest rangeRequest(int length) {
+            return GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .range("bytes=" + nextOffset + "-" + (nextOffset + length - 1))
+                    .ifMatch(eTag)
+                    .build();
+        }
+        
+        /**
+         * Read the next range straight from its response, without buffering - the budget was spent
+         */
+        private InputStream stream() throws IOException {
+            int length = (int) Math.min(partSize, totalSize - nextOffset);
+            try {
+                streamed = s3Client.getObject(rangeRequest(length),
+                        AsyncResponseTransformer.<GetObjectResponse>toBlockingInputStream()).join();
+            } catch (Exception e) {
+                Throwable cause = S3AsyncService.unwrap(e);
+                throw new IOException("Failed to read range at " + nextOffset + " of " + objectKey + ": "
+                        + cause.getMessage(), cause);
+            }
+            nextOffset += length;
+            return streamed;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            
+            while (true) {
+                if (current != null) {
+                    int n = current.read(b, off, len);
+                    if (n > 0) {
+                        return n;
+                    }
+                    current.close();
+                    current = null;
+                    streamed = null;
+                    release(currentReserved);
+                    currentReserved = 0;
+                }
+                
+                schedule();
+                Part part = inFlight.poll();
+                if (part == null) {
+                    if (nextOffset >= totalSize) {
+                        return -1;
+                    }
+                    current = stream();
+                    continue;
+                }
+                // Held until the buffer is read, or released by abort
+                currentReserved = part.length;
+                current = new ByteArrayInputStream(await(part));
+                adapt(part);
+                schedule();
+            }
+        }
+        
+        /**
+         * Wait for a buffered part and check it is complete
+         */
+        private byte[] await(Part part) throws IOException {
+            byte[] data;
+            try {
+                data = part.bytes.join().asByteArrayUnsafe();
+            } catch (Exception e) {
+                Throwable cause = S3AsyncService.unwrap(e);
+                throw new IOException("Failed to read range at " + part.start + " of " + objectKey + ": "
+                        + cause.getMessage(), cause);
+            }
+            if (data.length != part.length) {
+                throw new IOException("Short range at " + part.start + " of " + objectKey + ": "
+                        + data.length + " of " + part.length + " bytes");
+            }
+            return data;
+        }
+        
+        /**
+         * Double the part size when parts come back well under the target time, halve it when well over
+         */
+        private void adapt(Part part) {
+            long elapsedMillis = part.elapsedNanos / 1_000_000;
+            long target = Math.max(1, targetPartMillis);
+            if (elapsedMillis < target / 2 && part.length >= partSize) {
+                partSize = Math.min(partSize * 2, Math.max(maxPartSize, minPartSize));
+            } else if (elapsedMillis > target * 2) {
+                partSize = Math.max(partSize / 2, Math.max(1, minPartSize));
+            }
+        }
+        
+        /**
+         * Drop every pending range and the first response without draining them
+         */
+        private void abort() {
+            if (streamed != null) {
+                streamed.abort();
+            }
+            for (Part part : inFlight) {
+                part.request.cancel(true);
+                release(part.length);
+            }
+            inFlight.clear();
+            release(currentReserved);
+            currentReserved = 0;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            abort();
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+}
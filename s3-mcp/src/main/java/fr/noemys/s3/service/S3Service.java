@@ -1,20 +1,36 @@
 package fr.noemys.s3.service;
 
+import fr.noemys.s3.model.streaming.StreamingContent;
+import fr.noemys.s3.service.cache.ListingCache;
+import fr.noemys.s3.service.cache.MetadataCache;
+import fr.noemys.s3.service.cache.S3ClientCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
-import java.net.URI;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * S3 Service for managing S3 operations
@@ -26,155 +42,903 @@ public class S3Service {
     
     private static final Logger log = LoggerFactory.getLogger(S3Service.class);
     
-    /**
-     * Create S3 client from credentials
-     */
-    private S3Client createS3Client(String endpoint, String token, String userToken) {
-        // Use token and userToken as S3 credentials (access key and secret key)
-        AwsBasicCredentials credentials = AwsBasicCredentials.create(token, userToken);
-        
-        return S3Client.builder()
-                .endpointOverride(URI.create(endpoint))
-                .region(Region.US_EAST_1) // Default region, can be parameterized
-                .credentialsProvider(StaticCredentialsProvider.create(credentials))
-                .build();
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+|\\*)$");
+    
+    // S3 never returns more than 1000 keys per listObjectsV2 page
+    static final int MAX_KEYS_PER_PAGE = 1000;
+    
+    @Value("${mcp.s3.range.max-length:1048576}")
+    private long rangeMaxLength;
+    
+    @Value("${mcp.s3.parallel-list.max-keys:100000}")
+    private int parallelListMaxKeys;
+    
+    @Value("${mcp.s3.decompression.max-bytes:268435456}")
+    private long maxDecompressedSize;
+    
+    @Value("${mcp.s3.delete.max-keys:100000}")
+    private int deleteMaxKeys;
+    
+    private final S3ClientCache clientCache;
+    private final S3ParallelLister parallelLister;
+    private final ListingCache listingCache;
+    private final MetadataCache metadataCache;
+    private final S3MultipartUploader uploader;
+    private final S3RangedDownloader rangedDownloader;
+    private final S3BatchDeleter batchDeleter;
+    private final S3ObjectSearcher searcher;
+    private final S3ObjectPreviewer previewer;
+    private final S3KeyIndexer keyIndexer;
+    private final S3ObjectFinder finder;
+    private final S3PrefixSummarizer summarizer;
+    private final S3DirectoryLister directoryLister;
+    private final S3PrefixDiffer differ;
+    
+    @Autowired
+    public S3Service(S3ClientCache clientCache, S3ParallelLister parallelLister, ListingCache listingCache,
+                     MetadataCache metadataCache, S3MultipartUploader uploader,
+                     S3RangedDownloader rangedDownloader, S3BatchDeleter batchDeleter, S3ObjectSearcher searcher,
+                     S3ObjectPreviewer previewer, S3KeyIndexer keyIndexer, S3ObjectFinder finder,
+                     S3PrefixSummarizer summarizer, S3DirectoryLister directoryLister, S3PrefixDiffer differ) {
+        this.clientCache = clientCache;
+        this.parallelLister = parallelLister;
+        this.listingCache = listingCache;
+        this.metadataCache = metadataCache;
+        this.uploader = uploader;
+        this.rangedDownloader = rangedDownloader;
+        this.batchDeleter = batchDeleter;
+        this.searcher = searcher;
+        this.previewer = previewer;
+        this.keyIndexer = keyIndexer;
+        this.finder = finder;
+        this.summarizer = summarizer;
+        this.directoryLister = directoryLister;
+        this.differ = differ;
     }
     
     /**
-     * List all buckets
+     * List all objects under a prefix in parallel, sharded by sub-prefix
+     * Returns at most maxKeys objects (capped by configuration): the first ones in key order when ordered,
+     * otherwise the first ones listed by any shard.
      */
-    public Map<String, Object> listBuckets(String endpoint, String token, String userToken) {
-        log.info("Listing all buckets from endpoint: {}", endpoint);
+    public Map<String, Object> listObjectsParallel(String endpoint, String token, String userToken,
+                                                   String bucketName, String prefix,
+                                                   Integer parallelism, Integer maxKeys, boolean ordered) {
+        log.info("Listing objects in parallel in bucket: {} with prefix: {}", bucketName, prefix);
+        
+        int limit = maxKeys != null ? Math.min(maxKeys, parallelListMaxKeys) : parallelListMaxKeys;
+        if (limit <= 0) {
+            throw new IllegalArgumentException("maxKeys must be > 0");
+        }
+        ListingCache.ListingKey cacheKey = listingCache.key(endpoint, token, userToken, bucketName, prefix, null,
+                "parallel", limit, ordered);
+        Map<String, Object> cached = listingCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        long startTime = System.currentTimeMillis();
         
-        try (S3Client s3Client = createS3Client(endpoint, token, userToken)) {
-            ListBucketsResponse response = s3Client.listBuckets();
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            S3Client s3Client = lease.client();
+            Comparator<S3Object> byKey = (a, b) -> S3PrefixDiffer.compareKeys(a.key(), b.key());
+            List<S3Object> found = new ArrayList<>();
+            // Ordered: the limit smallest keys so far, greatest on top to be evicted first
+            PriorityQueue<S3Object> smallest = new PriorityQueue<>(byKey.reversed());
+            // Set once a key beyond the limit was actually listed
+            boolean[] truncated = {false};
+            
+            List<String> shards = parallelLister.listShards(s3Client, endpoint, bucketName, prefix, parallelism,
+                    (shardPrefix, page) -> {
+                        synchronized (found) {
+                            if (ordered) {
+                                return keepSmallest(smallest, page, limit, byKey, truncated);
+                            }
+                            if (page.isEmpty()) {
+                                return S3ParallelLister.Visit.CONTINUE;
+                            }
+                            int room = limit - found.size();
+                            found.addAll(page.subList(0, Math.min(room, page.size())));
+                            if (page.size() > room) {
+                                truncated[0] = true;
+                                return S3ParallelLister.Visit.STOP;
+                            }
+                            return S3ParallelLister.Visit.CONTINUE;
+                        }
+                    });
+            
+            if (ordered) {
+                found.addAll(smallest);
+                found.sort(byKey);
+            }
             
-            List<Map<String, Object>> buckets = new ArrayList<>();
-            for (Bucket bucket : response.buckets()) {
-                Map<String, Object> bucketInfo = new HashMap<>();
-                bucketInfo.put("name", bucket.name());
-                bucketInfo.put("creationDate", bucket.creationDate().toString());
-                buckets.add(bucketInfo);
+            List<Map<String, Object>> objects = new ArrayList<>(found.size());
+            for (S3Object s3Object : found) {
+                objects.add(toObjectInfo(s3Object));
             }
             
             Map<String, Object> result = new HashMap<>();
-            result.put("buckets", buckets);
-            result.put("count", buckets.size());
+            result.put("objects", objects);
+            result.put("count", objects.size());
+            result.put("prefix", prefix != null ? prefix : "");
+            result.put("isTruncated", truncated[0]);
+            result.put("parallel", true);
+            result.put("ordered", ordered);
+            result.put("shards", shards.size());
+            result.put("durationMs", System.currentTimeMillis() - startTime);
             
-            log.info("Found {} bucket(s)", buckets.size());
-            return result;
+            log.info("Found {} object(s) in bucket {} across {} shard(s)", objects.size(), bucketName, shards.size());
+            return listingCache.put(cacheKey, result);
         } catch (Exception e) {
-            log.error("Error listing buckets", e);
-            throw new RuntimeException("Failed to list buckets: " + e.getMessage(), e);
+            log.error("Error listing objects in parallel", e);
+            throw new RuntimeException("Failed to list objects: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Keep the limit smallest keys of a page in smallest.
+     * Pages of a shard come in key order, so once a key does not make it, the rest of the shard is skipped.
+     */
+    private static S3ParallelLister.Visit keepSmallest(PriorityQueue<S3Object> smallest, List<S3Object> page, int limit,
+                                                       Comparator<S3Object> byKey, boolean[] truncated) {
+        for (S3Object s3Object : page) {
+            if (smallest.size() < limit) {
+                smallest.add(s3Object);
+                continue;
+            }
+            truncated[0] = true;
+            if (byKey.compare(s3Object, smallest.peek()) >= 0) {
+                return S3ParallelLister.Visit.SKIP_SHARD;
+            }
+            smallest.poll();
+            smallest.add(s3Object);
         }
+        return S3ParallelLister.Visit.CONTINUE;
     }
     
     /**
-     * List objects in a bucket
+     * Read a byte range of an object
+     * The range is given either as offset/length or as an HTTP Range header value
+     * (bytes=start-end, bytes=start- or bytes=-suffix) and is capped to the configured max length.
      */
-    public Map<String, Object> listObjects(String endpoint, String token, String userToken, 
-                                           String bucketName, String prefix) {
-        log.info("Listing objects in bucket: {} with prefix: {}", bucketName, prefix);
+    public Map<String, Object> readObjectRange(String endpoint, String token, String userToken,
+                                               String bucketName, String objectKey,
+                                               Long offset, Long length, String range) {
+        String httpRange = toHttpRange(offset, length, range);
+        log.info("Reading range {} of object: {} from bucket: {}", httpRange, objectKey, bucketName);
         
-        try (S3Client s3Client = createS3Client(endpoint, token, userToken)) {
-            ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
-                    .bucket(bucketName);
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            S3Client s3Client = lease.client();
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .range(httpRange)
+                    .build();
             
-            if (prefix != null && !prefix.isEmpty()) {
-                requestBuilder.prefix(prefix);
+            GetObjectResponse getObjectResponse;
+            byte[] content;
+            try (ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(request)) {
+                getObjectResponse = stream.response();
+                // Never more than the requested length, even if the server ignores the range
+                content = stream.readNBytes(rangeLength(httpRange));
+                Long contentLength = getObjectResponse.contentLength();
+                if (contentLength == null || contentLength > content.length) {
+                    // Do not drain the rest of the body on close
+                    stream.abort();
+                }
             }
             
-            ListObjectsV2Response response = s3Client.listObjectsV2(requestBuilder.build());
+            Map<String, Object> result = new HashMap<>();
+            result.put("key", objectKey);
+            result.put("range", httpRange);
+            result.put("length", content.length);
+            result.put("contentType", getObjectResponse.contentType());
+            result.put("eTag", getObjectResponse.eTag());
             
-            List<Map<String, Object>> objects = new ArrayList<>();
-            for (S3Object s3Object : response.contents()) {
-                Map<String, Object> objectInfo = new HashMap<>();
-                objectInfo.put("key", s3Object.key());
-                objectInfo.put("size", s3Object.size());
-                objectInfo.put("lastModified", s3Object.lastModified().toString());
-                objectInfo.put("storageClass", s3Object.storageClassAsString());
-                objects.add(objectInfo);
+            Matcher contentRange = getObjectResponse.contentRange() != null
+                    ? CONTENT_RANGE_PATTERN.matcher(getObjectResponse.contentRange())
+                    : null;
+            long start = 0;
+            if (contentRange != null && contentRange.matches()) {
+                start = Long.parseLong(contentRange.group(1));
+                result.put("offset", start);
+                result.put("end", Long.parseLong(contentRange.group(2)));
+                if (!"*".equals(contentRange.group(3))) {
+                    long totalSize = Long.parseLong(contentRange.group(3));
+                    result.put("totalSize", totalSize);
+                    result.put("hasMore", start + content.length < totalSize);
+                }
+            } else {
+                // Server ignored the range and returned the whole object: only its first bytes were read
+                Long contentLength = getObjectResponse.contentLength();
+                result.put("offset", 0L);
+                result.put("totalSize", contentLength);
+                result.put("hasMore", contentLength == null || content.length < contentLength);
             }
             
-            Map<String, Object> result = new HashMap<>();
-            result.put("objects", objects);
-            result.put("count", objects.size());
-            result.put("prefix", prefix != null ? prefix : "");
+            // Stored bytes of an object with a Content-Encoding are compressed: never decoded as text
+            RangeText text = getObjectResponse.contentEncoding() == null
+                    ? rangeText(content, start, getObjectResponse.contentType())
+                    : null;
+            if (text == null) {
+                result.put("binary", true);
+                result.put("encoding", "base64");
+                result.put("content", Base64.getEncoder().encodeToString(content));
+            } else {
+                result.put("binary", false);
+                result.put("encoding", "text");
+                result.put("charset", text.charset().name());
+                result.put("content", new String(content, text.from(), text.to() - text.from(), text.charset()));
+                // Bytes of a character cut by either end of the range are left out
+                result.put("textOffset", start + text.from());
+                result.put("textLength", text.to() - text.from());
+            }
+            if (Boolean.TRUE.equals(result.get("hasMore"))) {
+                // Next range, starting on a character boundary
+                result.put("nextOffset", start + (text != null ? text.to() : content.length));
+            }
             
-            log.info("Found {} object(s) in bucket {}", objects.size(), bucketName);
+            log.info("Read {} byte(s) of object {}", content.length, objectKey);
             return result;
         } catch (Exception e) {
-            log.error("Error listing objects", e);
-            throw new RuntimeException("Failed to list objects: " + e.getMessage(), e);
+            log.error("Error reading object range", e);
+            throw new RuntimeException("Failed to read object range: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Download an object from a bucket
+     * Characters of a range: content[from, to) decoded with charset
      */
-    public Map<String, Object> downloadObject(String endpoint, String token, String userToken,
-                                              String bucketName, String objectKey) {
-        log.info("Downloading object: {} from bucket: {}", objectKey, bucketName);
+    record RangeText(Charset charset, int from, int to) {
+    }
+    
+    /**
+     * Text part of a range starting at offset of the object, or null if the range is binary.
+     * A UTF-8 or UTF-16 character cut by the start or the end of the range is left out.
+     */
+    static RangeText rangeText(byte[] content, long offset, String contentType) {
+        // Continuation bytes of a UTF-8 character started before the range
+        int lead = 0;
+        while (offset > 0 && lead < Math.min(3, content.length) && (content[lead] & 0xC0) == 0x80) {
+            lead++;
+        }
+        byte[] sample = Arrays.copyOfRange(content, lead, Math.min(content.length, lead + ContentSniffer.SAMPLE_SIZE));
+        ContentSniffer.Detection detection = ContentSniffer.detect(sample, sample.length, contentType);
+        if (detection.binary()) {
+            return null;
+        }
         
-        try (S3Client s3Client = createS3Client(endpoint, token, userToken)) {
-            GetObjectRequest request = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(objectKey)
-                    .build();
-            
-            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request);
+        Charset charset = detection.charset();
+        int from = detection.bomLength();
+        int to = content.length;
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            from += lead;
+            to -= incompleteUtf8Tail(content, from, to);
+        } else if (StandardCharsets.UTF_16BE.equals(charset) || StandardCharsets.UTF_16LE.equals(charset)
+                || StandardCharsets.UTF_16.equals(charset)) {
+            // Code units start at even offsets of the object
+            from += (int) (offset % 2);
+            to = from + Math.max(0, to - from) / 2 * 2;
+            if (to - from >= 2 && isHighSurrogate(content, to - 2, charset)) {
+                to -= 2;
+            }
+        }
+        return new RangeText(charset, from, Math.max(from, to));
+    }
+    
+    /**
+     * Bytes of the last UTF-8 character of content[from, to) when it is incomplete, otherwise 0
+     */
+    private static int incompleteUtf8Tail(byte[] content, int from, int to) {
+        for (int i = to - 1; i >= Math.max(from, to - 4); i--) {
+            int b = content[i] & 0xff;
+            if ((b & 0xC0) == 0x80) {
+                continue;
+            }
+            int needed = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            return to - i < needed ? to - i : 0;
+        }
+        return 0;
+    }
+    
+    private static boolean isHighSurrogate(byte[] content, int index, Charset charset) {
+        int high = StandardCharsets.UTF_16LE.equals(charset) ? content[index + 1] & 0xff : content[index] & 0xff;
+        return high >= 0xD8 && high <= 0xDB;
+    }
+    
+    /**
+     * Search an object line by line without downloading it to the client.
+     * The object is streamed from S3 and the connection is dropped as soon as maxMatches lines matched.
+     */
+    public Map<String, Object> searchObject(String endpoint, String token, String userToken,
+                                            String bucketName, String objectKey, String pattern,
+                                            boolean regex, boolean ignoreCase, Integer maxMatches) {
+        log.info("Searching object: {} in bucket: {}", objectKey, bucketName);
+        
+        S3ObjectSearcher.LineMatcher matcher = searcher.matcher(pattern, regex, ignoreCase);
+        
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken);
+             ResponseInputStream<GetObjectResponse> stream = rangedDownloader.open(lease.asyncClient(), bucketName, objectKey)
+                     .join()) {
+            Map<String, Object> result;
+            Decompression.Codec codec;
+            try {
+                Decompression.Opened opened = Decompression.open(stream, maxDecompressedSize);
+                codec = opened.codec();
+                // Content-Type describes the decompressed content only when Content-Encoding is set
+                String contentType = codec != null && stream.response().contentEncoding() == null
+                        ? null : stream.response().contentType();
+                result = searcher.search(opened.stream(), contentType, matcher, maxMatches);
+            } catch (IOException | RuntimeException | LinkageError e) {
+                stream.abort();
+                throw e;
+            }
+            if (!Boolean.TRUE.equals(result.get("complete"))) {
+                // Do not read the rest of the object just to reuse the connection
+                stream.abort();
+            }
             
-            // Read the content
-            byte[] content = response.readAllBytes();
-            String contentString = new String(content);
+            result.put("key", objectKey);
+            result.put("size", stream.response().contentLength());
+            if (codec != null) {
+                // bytesScanned counts decompressed bytes
+                result.put("compression", codec.label());
+            }
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            Throwable cause = S3AsyncService.unwrap(e);
+            log.error("Error searching object", cause);
+            throw new RuntimeException("Failed to search object: " + cause.getMessage(), cause);
+        }
+    }
+    
+    /**
+     * First or last lines of an object, read with small growing ranges instead of the whole object
+     */
+    public Map<String, Object> previewObject(String endpoint, String token, String userToken,
+                                             String bucketName, String objectKey, Integer lines, boolean fromEnd) {
+        log.info("Previewing object: {} in bucket: {}", objectKey, bucketName);
+        
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            return previewer.preview(lease.client(), bucketName, objectKey, lines, fromEnd);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error previewing object", e);
+            throw new RuntimeException("Failed to preview object: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Upload an object - single PUT for small payloads, parallel multipart upload above the threshold
+     */
+    public Map<String, Object> uploadObject(String endpoint, String token, String userToken,
+                                            String bucketName, String objectKey, byte[] data, String contentType) {
+        log.info("Uploading object: {} to bucket: {} ({} bytes)", objectKey, bucketName, data != null ? data.length : 0);
+        
+        if (objectKey == null || objectKey.isEmpty()) {
+            throw new IllegalArgumentException("objectKey is required");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("content is required");
+        }
+        
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            Map<String, Object> result = uploader.upload(lease.client(), bucketName, objectKey, data, contentType);
             
-            Map<String, Object> result = new HashMap<>();
-            result.put("content", contentString);
-            result.put("size", content.length);
-            result.put("contentType", response.response().contentType());
+            log.info("Uploaded object {} ({} bytes)", objectKey, data.length);
+            return result;
+        } catch (Exception e) {
+            log.error("Error uploading object", e);
+            throw new RuntimeException("Failed to upload object: " + e.getMessage(), e);
+        } finally {
+            // Even a failed PUT may have replaced the object
+            listingCache.invalidateKey(endpoint, bucketName, objectKey);
+            metadataCache.invalidateKey(endpoint, bucketName, objectKey);
+            keyIndexer.invalidatePrefix(endpoint, bucketName, objectKey);
+        }
+    }
+    
+    /**
+     * Copy an object server-side - CopyObject for small objects, parallel UploadPartCopy above the threshold
+     */
+    public Map<String, Object> copyObject(String endpoint, String token, String userToken,
+                                          String sourceBucketName, String sourceKey,
+                                          String bucketName, String objectKey) {
+        log.info("Copying object: {}/{} to {}/{}", sourceBucketName, sourceKey, bucketName, objectKey);
+        
+        if (sourceBucketName == null || sourceBucketName.isEmpty()) {
+            throw new IllegalArgumentException("sourceBucketName is required");
+        }
+        if (bucketName == null || bucketName.isEmpty()) {
+            throw new IllegalArgumentException("destinationBucketName is required");
+        }
+        if (sourceKey == null || sourceKey.isEmpty()) {
+            throw new IllegalArgumentException("sourceKey is required");
+        }
+        if (objectKey == null || objectKey.isEmpty()) {
+            throw new IllegalArgumentException("destinationKey is required");
+        }
+        if (sourceBucketName.equals(bucketName) && sourceKey.equals(objectKey)) {
+            throw new IllegalArgumentException("Source and destination are the same object");
+        }
+        
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            Map<String, Object> result = uploader.copy(lease.client(), sourceBucketName, sourceKey, bucketName, objectKey);
             
-            log.info("Downloaded object {} ({} bytes)", objectKey, content.length);
+            log.info("Copied object {}/{} to {}/{}", sourceBucketName, sourceKey, bucketName, objectKey);
             return result;
         } catch (Exception e) {
-            log.error("Error downloading object", e);
-            throw new RuntimeException("Failed to download object: " + e.getMessage(), e);
+            log.error("Error copying object", e);
+            throw new RuntimeException("Failed to copy object: " + e.getMessage(), e);
+        } finally {
+            listingCache.invalidateKey(endpoint, bucketName, objectKey);
+            metadataCache.invalidateKey(endpoint, bucketName, objectKey);
+            keyIndexer.invalidatePrefix(endpoint, bucketName, objectKey);
         }
     }
     
     /**
-     * Get object metadata
+     * Delete a list of keys or every object under a non-empty prefix, with concurrent DeleteObjects batches
      */
-    public Map<String, Object> getObjectMetadata(String endpoint, String token, String userToken,
-                                                 String bucketName, String objectKey) {
-        log.info("Getting metadata for object: {} in bucket: {}", objectKey, bucketName);
+    public Map<String, Object> deleteObjects(String endpoint, String token, String userToken, String bucketName,
+                                             String prefix, List<String> objectKeys, Integer concurrency) {
+        boolean hasKeys = objectKeys != null && !objectKeys.isEmpty();
+        if (hasKeys == (prefix != null)) {
+            throw new IllegalArgumentException("Either prefix or objectKeys is required, not both");
+        }
+        if (prefix != null && prefix.isEmpty()) {
+            throw new IllegalArgumentException("prefix must not be empty: deleting a whole bucket is not supported");
+        }
+        if (hasKeys && objectKeys.size() > deleteMaxKeys) {
+            throw new IllegalArgumentException("objectKeys is limited to " + deleteMaxKeys + " keys per call");
+        }
+        if (concurrency != null && concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be greater than 0");
+        }
+        log.info("Deleting {} from bucket: {}", hasKeys ? objectKeys.size() + " object(s)" : "prefix '" + prefix + "'", bucketName);
         
-        try (S3Client s3Client = createS3Client(endpoint, token, userToken)) {
-            HeadObjectRequest request = HeadObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(objectKey)
-                    .build();
+        String changedPrefix = hasKeys ? commonPrefix(objectKeys) : prefix;
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            S3Client s3Client = lease.client();
+            Iterator<String> keys = hasKeys
+                    ? new LinkedHashSet<>(objectKeys).iterator()
+                    : s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                            .bucket(bucketName)
+                            .prefix(prefix)
+                            .build())
+                    .contents().stream()
+                    .map(S3Object::key)
+                    .iterator();
             
-            HeadObjectResponse response = s3Client.headObject(request);
+            Map<String, Object> result = batchDeleter.delete(s3Client, bucketName, keys, concurrency);
+            if (!hasKeys) {
+                result.put("prefix", prefix);
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("Error deleting objects", e);
+            throw new RuntimeException("Failed to delete objects: " + e.getMessage(), e);
+        } finally {
+            listingCache.invalidatePrefix(endpoint, bucketName, changedPrefix);
+            metadataCache.invalidatePrefix(endpoint, bucketName, changedPrefix);
+            keyIndexer.invalidatePrefix(endpoint, bucketName, changedPrefix);
+        }
+    }
+    
+    /**
+     * Start building the in-memory key index of a bucket (background full listing)
+     */
+    public Map<String, Object> indexBucket(String endpoint, String token, String userToken, String bucketName,
+                                           boolean rebuild) {
+        log.info("Indexing keys of bucket: {}", bucketName);
+        
+        if (bucketName == null || bucketName.isEmpty()) {
+            throw new IllegalArgumentException("bucketName is required");
+        }
+        return keyIndexer.index(endpoint, token, userToken, bucketName, rebuild);
+    }
+    
+    /**
+     * Answer a prefix, glob or count query from the key index of a bucket
+     */
+    public Map<String, Object> queryKeyIndex(String endpoint, String token, String userToken, String bucketName,
+                                             String prefix, String pattern, boolean countOnly, Integer maxResults) {
+        log.info("Querying key index of bucket: {} (prefix '{}', pattern '{}')", bucketName, prefix, pattern);
+        
+        Map<String, Object> result;
+        try {
+            result = keyIndexer.query(endpoint, token, userToken, bucketName, prefix, pattern, countOnly, maxResults);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error querying key index", e);
+            throw new RuntimeException("Failed to query key index: " + e.getMessage(), e);
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("Bucket " + bucketName + " is not indexed: call indexBucket first");
+        }
+        return result;
+    }
+    
+    /**
+     * Find keys matching a glob or regex, listing only the prefixes the pattern can match
+     */
+    public Map<String, Object> findObjects(String endpoint, String token, String userToken, String bucketName,
+                                           String pattern, boolean regex, Integer maxResults) {
+        log.info("Finding objects matching '{}' in bucket: {}", pattern, bucketName);
+        
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            Map<String, Object> result = finder.find(lease.client(), bucketName, pattern, regex, maxResults);
+            result.put("bucketName", bucketName);
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error finding objects", e);
+            throw new RuntimeException("Failed to find objects: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Total size and object count of a prefix, per storage class and per sub-prefix, without keeping the keys
+     */
+    public Map<String, Object> summarizePrefix(String endpoint, String token, String userToken, String bucketName,
+                                               String prefix, Integer parallelism) {
+        log.info("Summarizing prefix: {} in bucket: {}", prefix, bucketName);
+        
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            return summarizer.summarize(lease.client(), endpoint, bucketName, prefix, parallelism);
+        } catch (Exception e) {
+            log.error("Error summarizing prefix", e);
+            throw new RuntimeException("Failed to summarize prefix: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * List the folders (commonPrefixes) and files of a directory, expanding sub-folders down to depth levels
+     * Pass the returned nextCursor back as cursor to get the following page of the top-level directory.
+     */
+    public Map<String, Object> listDirectory(String endpoint, String token, String userToken, String bucketName,
+                                             String prefix, Integer depth, Integer maxEntries, String cursor) {
+        log.info("Listing directory: {} in bucket: {}", prefix, bucketName);
+        
+        String continuationToken = cursor != null ? decodeCursor(cursor) : null;
+        ListingCache.ListingKey cacheKey = listingCache.key(endpoint, token, userToken, bucketName, prefix, cursor,
+                "directory", depth, maxEntries);
+        Map<String, Object> cached = listingCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        
+        try (S3ClientCache.Lease lease = clientCache.acquire(endpoint, token, userToken)) {
+            Map<String, Object> result = directoryLister.list(lease.client(), bucketName, prefix, depth, maxEntries,
+                    continuationToken);
+            return listingCache.put(cacheKey, result);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error listing directory", e);
+            throw new RuntimeException("Failed to list directory: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Compare a source prefix with a target prefix (another prefix, bucket or endpoint) by key, size and ETag.
+     * Target settings default to the source ones. In sync mode target is updated with server-side copies,
+     * which needs both sides on the same endpoint.
+     */
+    public Map<String, Object> diffPrefixes(String endpoint, String token, String userToken, String bucketName,
+                                            String prefix, String targetEndpoint, String targetToken,
+                                            String targetUserToken, String targetBucketName, String targetPrefix,
+                                            boolean sync, boolean deleteExtra, Integer concurrency) {
+        if (endpoint == null || endpoint.isEmpty()) {
+            throw new IllegalArgumentException("endpoint is required");
+        }
+        if (bucketName == null || bucketName.isEmpty()) {
+            throw new IllegalArgumentException("bucketName is required");
+        }
+        String sourcePrefix = prefix != null ? prefix : "";
+        String toEndpoint = targetEndpoint != null ? targetEndpoint : endpoint;
+        String toToken = targetToken != null ? targetToken : token;
+        String toUserToken = targetUserToken != null ? targetUserToken : userToken;
+        String toBucketName = targetBucketName != null ? targetBucketName : bucketName;
+        String toPrefix = targetPrefix != null ? targetPrefix : sourcePrefix;
+        log.info("Diffing {}/{} with {}/{}", bucketName, sourcePrefix, toBucketName, toPrefix);
+        
+        boolean sameBucket = toEndpoint.equals(endpoint) && toBucketName.equals(bucketName);
+        if (sameBucket && toPrefix.equals(sourcePrefix)) {
+            throw new IllegalArgumentException("Source and target are the same prefix");
+        }
+        if (sync && !toEndpoint.equals(endpoint)) {
+            throw new IllegalArgumentException("sync needs source and target on the same endpoint (server-side copies)");
+        }
+        if (sync && sameBucket && (toPrefix.startsWith(sourcePrefix) || sourcePrefix.startsWith(toPrefix))) {
+            throw new IllegalArgumentException("sync needs source and target prefixes that do not contain each other");
+        }
+        if (deleteExtra && !sync) {
+            throw new IllegalArgumentException("deleteExtra is only valid with sync");
+        }
+        
+        try (S3ClientCache.Lease sourceLease = clientCache.acquire(endpoint, token, userToken);
+             S3ClientCache.Lease targetLease = clientCache.acquire(toEndpoint, toToken, toUserToken)) {
+            return differ.diff(new S3PrefixDiffer.Side(sourceLease.client(), bucketName, sourcePrefix),
+                    new S3PrefixDiffer.Side(targetLease.client(), toBucketName, toPrefix),
+                    sync, deleteExtra, concurrency);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error diffing prefixes", e);
+            throw new RuntimeException("Failed to diff prefixes: " + e.getMessage(), e);
+        } finally {
+            if (sync) {
+                listingCache.invalidatePrefix(toEndpoint, toBucketName, toPrefix);
+                metadataCache.invalidatePrefix(toEndpoint, toBucketName, toPrefix);
+                keyIndexer.invalidatePrefix(toEndpoint, toBucketName, toPrefix);
+            }
+        }
+    }
+    
+    /**
+     * Longest prefix shared by all keys, to invalidate caches once instead of per key
+     */
+    static String commonPrefix(List<String> keys) {
+        String prefix = keys.get(0);
+        for (String key : keys) {
+            int length = 0;
+            int max = Math.min(prefix.length(), key.length());
+            while (length < max && prefix.charAt(length) == key.charAt(length)) {
+                length++;
+            }
+            prefix = prefix.substring(0, length);
+        }
+        return prefix;
+    }
+    
+    /**
+     * Build a bounded HTTP Range header value from offset/length or a raw range
+     */
+    private String toHttpRange(Long offset, Long length, String range) {
+        if (range != null && !range.isBlank()) {
+            Matcher matcher = RANGE_PATTERN.matcher(range.trim());
+            if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                throw new IllegalArgumentException("Invalid range: " + range + " (expected bytes=start-end, bytes=start- or bytes=-suffix)");
+            }
             
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("key", objectKey);
-            metadata.put("size", response.contentLength());
-            metadata.put("contentType", response.contentType());
-            metadata.put("lastModified", response.lastModified().toString());
-            metadata.put("eTag", response.eTag());
-            metadata.put("storageClass", response.storageClassAsString());
+            if (matcher.group(1).isEmpty()) {
+                // Suffix range: last N bytes
+                long suffix = Math.min(Long.parseLong(matcher.group(2)), rangeMaxLength);
+                return "bytes=-" + suffix;
+            }
             
-            // Add custom metadata if present
-            if (response.metadata() != null && !response.metadata().isEmpty()) {
-                metadata.put("customMetadata", response.metadata());
+            long start = Long.parseLong(matcher.group(1));
+            long end = matcher.group(2).isEmpty()
+                    ? start + rangeMaxLength - 1
+                    : Math.min(Long.parseLong(matcher.group(2)), start + rangeMaxLength - 1);
+            if (end < start) {
+                throw new IllegalArgumentException("Invalid range: " + range + " (end before start)");
             }
+            return "bytes=" + start + "-" + end;
+        }
+        
+        long start = offset != null ? offset : 0L;
+        long count = length != null ? Math.min(length, rangeMaxLength) : rangeMaxLength;
+        if (start < 0 || count <= 0) {
+            throw new IllegalArgumentException("offset must be >= 0 and length must be > 0");
+        }
+        return "bytes=" + start + "-" + (start + count - 1);
+    }
+    
+    /**
+     * Number of bytes of a range built by toHttpRange - never more than the configured max length
+     */
+    private int rangeLength(String httpRange) {
+        Matcher matcher = RANGE_PATTERN.matcher(httpRange);
+        long length = rangeMaxLength;
+        if (matcher.matches()) {
+            length = matcher.group(1).isEmpty()
+                    ? Long.parseLong(matcher.group(2))
+                    : Long.parseLong(matcher.group(2)) - Long.parseLong(matcher.group(1)) + 1;
+        }
+        return (int) Math.min(Math.min(length, rangeMaxLength), Integer.MAX_VALUE - 8);
+    }
+    
+    /**
+     * Build a listObjectsV2 request - shared with the async service
+     */
+    static ListObjectsV2Request buildListObjectsRequest(String bucketName, String prefix,
+                                                        Integer maxKeys, String startAfter, String cursor) {
+        ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
+                .bucket(bucketName);
+        
+        if (prefix != null && !prefix.isEmpty()) {
+            requestBuilder.prefix(prefix);
+        }
+        if (maxKeys != null) {
+            if (maxKeys <= 0) {
+                throw new IllegalArgumentException("maxKeys must be > 0");
+            }
+            requestBuilder.maxKeys(Math.min(maxKeys, MAX_KEYS_PER_PAGE));
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            // The continuation token already encodes the position, startAfter is ignored
+            requestBuilder.continuationToken(decodeCursor(cursor));
+        } else if (startAfter != null && !startAfter.isEmpty()) {
+            requestBuilder.startAfter(startAfter);
+        }
+        
+        return requestBuilder.build();
+    }
+    
+    /**
+     * Encode a continuation token into an opaque cursor
+     */
+    static String encodeCursor(String continuationToken) {
+        if (continuationToken == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(continuationToken.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode an opaque cursor back into a continuation token
+     */
+    static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+    
+    /**
+     * Map a listBuckets response to the tool result
+     */
+    static Map<String, Object> toBucketsResult(ListBucketsResponse response) {
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (Bucket bucket : response.buckets()) {
+            Map<String, Object> bucketInfo = new HashMap<>();
+            bucketInfo.put("name", bucket.name());
+            bucketInfo.put("creationDate", bucket.creationDate().toString());
+            buckets.add(bucketInfo);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("buckets", buckets);
+        result.put("count", buckets.size());
+        
+        log.info("Found {} bucket(s)", buckets.size());
+        return result;
+    }
+    
+    /**
+     * Map a listObjectsV2 response to the tool result
+     */
+    static Map<String, Object> toObjectsResult(ListObjectsV2Response response, String bucketName, String prefix) {
+        List<Map<String, Object>> objects = new ArrayList<>();
+        for (S3Object s3Object : response.contents()) {
+            objects.add(toObjectInfo(s3Object));
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("objects", objects);
+        result.put("count", objects.size());
+        result.put("prefix", prefix != null ? prefix : "");
+        result.put("isTruncated", Boolean.TRUE.equals(response.isTruncated()));
+        if (Boolean.TRUE.equals(response.isTruncated())) {
+            result.put("nextCursor", encodeCursor(response.nextContinuationToken()));
+        }
+        
+        log.info("Found {} object(s) in bucket {}", objects.size(), bucketName);
+        return result;
+    }
+    
+    /**
+     * Map a listed S3 object to its description
+     */
+    static Map<String, Object> toObjectInfo(S3Object s3Object) {
+        Map<String, Object> objectInfo = new HashMap<>();
+        objectInfo.put("key", s3Object.key());
+        objectInfo.put("size", s3Object.size());
+        objectInfo.put("lastModified", s3Object.lastModified().toString());
+        objectInfo.put("storageClass", s3Object.storageClassAsString());
+        return objectInfo;
+    }
+    
+    /**
+     * Map an object stream to the tool result - the content is streamed when serialized.
+     * Text goes to content, decompressed on the fly for gzip, zstd and bzip2 objects;
+     * binary objects up to maxBlobSize go to blob, base64-encoded on the fly.
+     */
+    static Map<String, Object> toDownloadResult(String bucketName, String objectKey,
+                                                ResponseInputStream<GetObjectResponse> stream,
+                                                S3ClientCache.Lease lease, long maxBlobSize,
+                                                long maxDecompressedSize) {
+        GetObjectResponse response = stream.response();
+        
+        // Peek at the first bytes for compression and charset, and to drop binary objects before decoding anything
+        BufferedInputStream buffered = new BufferedInputStream(stream, Decompression.PEEK_SIZE);
+        Decompression.Codec codec;
+        ContentSniffer.Detection detection;
+        InputStream content = buffered;
+        try {
+            buffered.mark(Decompression.PEEK_SIZE);
+            byte[] peek = buffered.readNBytes(Decompression.PEEK_SIZE);
+            buffered.reset();
             
-            log.info("Retrieved metadata for object {}", objectKey);
-            return metadata;
-        } catch (Exception e) {
-            log.error("Error getting object metadata", e);
-            throw new RuntimeException("Failed to get object metadata: " + e.getMessage(), e);
+            codec = Decompression.detect(peek, peek.length);
+            if (codec == null) {
+                detection = ContentSniffer.detect(peek, Math.min(peek.length, ContentSniffer.SAMPLE_SIZE),
+                        response.contentType());
+            } else {
+                // Content-Type describes the decompressed content only when Content-Encoding is set
+                byte[] sample = Decompression.sample(peek, peek.length, codec, ContentSniffer.SAMPLE_SIZE);
+                detection = ContentSniffer.detect(sample, sample.length,
+                        response.contentEncoding() != null ? response.contentType() : null);
+                if (!detection.binary()) {
+                    content = new BufferedInputStream(Decompression.decompress(buffered, codec, maxDecompressedSize),
+                            ContentSniffer.SAMPLE_SIZE);
+                }
+            }
+            if (!detection.binary()) {
+                content.skipNBytes(detection.bomLength());
+            }
+        } catch (IOException e) {
+            stream.abort();
+            lease.close();
+            throw new UncheckedIOException(e);
         }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", response.contentLength());
+        result.put("contentType", response.contentType());
+        result.put("binary", detection.binary());
+        if (codec != null) {
+            result.put("compression", codec.label());
+        }
+        
+        // Compressed binary content (archives) is returned as the compressed object
+        if (detection.binary()) {
+            if (response.contentLength() != null && response.contentLength() <= maxBlobSize) {
+                result.put("blob", StreamingContent.binary(buffered, stream, List.of(stream, lease)));
+                result.put("uri", "s3://" + bucketName + "/" + objectKey);
+                log.info("Streaming binary object {} ({} bytes) as base64", objectKey, response.contentLength());
+                return result;
+            }
+            stream.abort();
+            lease.close();
+            log.info("Object {} is binary ({} bytes), content not returned", objectKey, response.contentLength());
+            return result;
+        }
+        
+        result.put("content", new StreamingContent(content, detection.charset(), stream, List.of(content, stream, lease)));
+        result.put("charset", detection.charset().name());
+        
+        log.info("Streaming object {} ({} bytes, {}{})", objectKey, response.contentLength(), detection.charset(),
+                codec != null ? ", " + codec.label() : "");
+        return result;
+    }
+    
+    /**
+     * Map a headObject response to the tool result
+     */
+    static Map<String, Object> toMetadataResult(String objectKey, HeadObjectResponse response) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("key", objectKey);
+        metadata.put("size", response.contentLength());
+        metadata.put("contentType", response.contentType());
+        metadata.put("lastModified", response.lastModified().toString());
+        metadata.put("eTag", response.eTag());
+        metadata.put("storageClass", response.storageClassAsString());
+        
+        // Add custom metadata if present
+        if (response.metadata() != null && !response.metadata().isEmpty()) {
+            metadata.put("customMetadata", response.metadata());
+        }
+        
+        return metadata;
     }
 }
-
@@ -0,0 +1,451 @@
+package fr.noemys.s3.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Size-bounded on-disk cache of downloaded object content, keyed by endpoint, bucket and key.
+ * Entries are always revalidated with If-None-Match: an unchanged object costs a 304 and is read
+ * from a memory-mapped file, a changed one is downloaded and stored again while it is streamed.
+ * Since every hit goes through an authorized request, entries can be shared across credentials.
+ * The index lives in memory, so files left by a previous run are removed at startup.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class ContentCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(ContentCache.class);
+    
+    private static final String FILE_SUFFIX = ".cache";
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    @Value("${mcp.s3.content-cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${mcp.s3.content-cache.directory:}")
+    private String directoryName;
+    
+    @Value("${mcp.s3.content-cache.max-size-bytes:1073741824}")
+    private long maxSizeBytes;
+    
+    @Value("${mcp.s3.content-cache.max-object-size:67108864}")
+    private long maxObjectSize;
+    
+    private Path directory;
+    
+    // Access-ordered map: iteration starts with the least recently used entry
+    private final LinkedHashMap<ContentKey, CachedObject> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    
+    private final AtomicLong fileSequence = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        directory = directoryName == null || directoryName.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "s3-mcp-content-cache")
+                : Path.of(directoryName);
+        try {
+            Files.createDirectories(directory);
+            int removed = 0;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*{" + FILE_SUFFIX + "," + TEMP_SUFFIX + "}")) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                }
+            }
+            log.info("Content cache in {} (max {} bytes, {} stale file(s) removed)", directory, maxSizeBytes, removed);
+        } catch (IOException e) {
+            log.warn("Content cache disabled, cannot use directory {}: {}", directory, e.getMessage());
+            enabled = false;
+        }
+    }
+    
+    /**
+     * Cache key
+     */
+    public record ContentKey(String endpoint, String bucketName, String objectKey) {
+    }
+    
+    /**
+     * Cached object: its content is in file, stored as sent (still compressed when contentEncoding is set)
+     */
+    public record CachedObject(Path file, String eTag, long size, String contentType, String contentEncoding) {
+    }
+    
+    /**
+     * Build the key of an object
+     */
+    public ContentKey key(String endpoint, String bucketName, String objectKey) {
+        return new ContentKey(endpoint, bucketName, objectKey);
+    }
+    
+    /**
+     * Open an object through the cache.
+     * fetch starts the GET, with If-None-Match set to the given ETag when not null. A 304 is served
+     * from the cached file; any other response is returned as is and stored while it is read.
+     */
+    public CompletableFuture<ResponseInputStream<GetObjectResponse>> open(
+            ContentKey key, Function<String, CompletableFuture<ResponseInputStream<GetObjectResponse>>> fetch) {
+        if (!enabled) {
+            return fetch.apply(null);
+        }
+        
+        CachedObject cached = get(key);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return fetch.apply(null).thenApply(response -> store(key, response));
+        }
+        
+        revalidations.incrementAndGet();
+        return fetch.apply(cached.eTag())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        // Changed since it was cached
+                        misses.incrementAndGet();
+                        return CompletableFuture.completedFuture(store(key, response));
+                    }
+                    if (!isNotModified(error)) {
+                        return CompletableFuture.<ResponseInputStream<GetObjectResponse>>failedFuture(error);
+                    }
+                    
+                    ResponseInputStream<GetObjectResponse> hit = read(key, cached);
+                    if (hit != null) {
+                        hits.incrementAndGet();
+                        log.info("Content cache hit for {}/{} ({} bytes, not modified)",
+                                key.bucketName(), key.objectKey(), cached.size());
+                        return CompletableFuture.completedFuture(hit);
+                    }
+                    // File evicted meanwhile
+                    misses.incrementAndGet();
+                    return fetch.apply(null).thenApply(fresh -> store(key, fresh));
+                })
+                .thenCompose(future -> future);
+    }
+    
+    private CachedObject get(ContentKey key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+    
+    /**
+     * Memory-map a cached file, or null if it is gone
+     */
+    private ResponseInputStream<GetObjectResponse> read(ContentKey key, CachedObject cached) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cached.file(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Error reading cached content of {}/{}: {}", key.bucketName(), key.objectKey(), e.getMessage());
+            remove(key, cached);
+            return null;
+        }
+        
+        GetObjectResponse response = GetObjectResponse.builder()
+                .eTag(cached.eTag())
+                .contentLength(cached.size())
+                .contentType(cached.contentType())
+                .contentEncoding(cached.contentEncoding())
+                .build();
+        return new ResponseInputStream<>(response, AbortableInputStream.create(new BufferInputStream(buffer)));
+    }
+    
+    /**
+     * Wrap a response so its content is written to the cache as it is read.
+     * Objects without a known size, or larger than the max object size, are not cached.
+     */
+    private ResponseInputStream<GetObjectResponse> store(ContentKey key, ResponseInputStream<GetObjectResponse> response) {
+        Long size = response.response().contentLength();
+        if (size == null || size > Math.min(maxObjectSize, Integer.MAX_VALUE) || size > maxSizeBytes) {
+            return response;
+        }
+        
+        Path temp;
+        FileChannel channel;
+        try {
+            temp = Files.createTempFile(directory, fileName(key), TEMP_SUFFIX);
+            channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            log.warn("Cannot cache content of {}/{}: {}", key.bucketName(), key.objectKey(), e.getMessage());
+            return response;
+        }
+        
+        TeeInputStream tee = new TeeInputStream(key, response, temp, channel);
+        return new ResponseInputStream<>(response.response(), AbortableInputStream.create(tee, tee::abort));
+    }
+    
+    /**
+     * Register a completely written file, then evict least recently used entries above the size limit
+     */
+    private void commit(ContentKey key, GetObjectResponse response, Path temp, long size) throws IOException {
+        Path file = directory.resolve(fileName(key) + "-" + fileSequence.incrementAndGet() + FILE_SUFFIX);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        CachedObject cached = new CachedObject(file, response.eTag(), size, response.contentType(),
+                response.contentEncoding());
+        
+        List<Path> dropped = new ArrayList<>();
+        synchronized (entries) {
+            CachedObject previous = entries.put(key, cached);
+            if (previous != null) {
+                sizeBytes -= previous.size();
+                dropped.add(previous.file());
+            }
+            sizeBytes += size;
+            
+            Iterator<CachedObject> iterator = entries.values().iterator();
+            while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+                CachedObject evicted = iterator.next();
+                iterator.remove();
+                sizeBytes -= evicted.size();
+                dropped.add(evicted.file());
+                evictions.incrementAndGet();
+            }
+        }
+        dropped.forEach(ContentCache::delete);
+        stores.incrementAndGet();
+        log.info("Cached content of {}/{} ({} bytes)", key.bucketName(), key.objectKey(), size);
+    }
+    
+    private void remove(ContentKey key, CachedObject cached) {
+        synchronized (entries) {
+            if (entries.remove(key, cached)) {
+                sizeBytes -= cached.size();
+            }
+        }
+        delete(cached.file());
+    }
+    
+    /**
+     * Cache statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+            stats.put("sizeBytes", sizeBytes);
+        }
+        stats.put("enabled", enabled);
+        stats.put("maxSizeBytes", maxSizeBytes);
+        stats.put("maxObjectSize", maxObjectSize);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("revalidations", revalidations.get());
+        stats.put("stores", stores.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+    
+    /**
+     * Whether a conditional GET failed because the object was not modified
+     */
+    public static boolean isNotModified(Throwable error) {
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof S3Exception s3Exception) {
+                return s3Exception.statusCode() == 304;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+    
+    /**
+     * File name prefix of a key - a digest, so any key maps to a safe name
+     */
+    private static String fileName(ContentKey key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(key.endpoint().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(key.bucketName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(key.objectKey().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Error deleting cached file {}: {}", file, e.getMessage());
+        }
+    }
+    
+    /**
+     * Copies every byte read to a temp file, committed to the cache when the whole object was read.
+     * Closing before the end (or after a failed write) discards the file.
+     */
+    private final class TeeInputStream extends InputStream {
+        
+        private final ContentKey key;
+        private final ResponseInputStream<GetObjectResponse> source;
+        private final Path temp;
+        private FileChannel channel;
+        private long written;
+        
+        private TeeInputStream(ContentKey key, ResponseInputStream<GetObjectResponse> source, Path temp,
+                               FileChannel channel) {
+            this.key = key;
+            this.source = source;
+            this.temp = temp;
+            this.channel = channel;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = source.read(b, off, len);
+            if (channel == null) {
+                return n;
+            }
+            if (n > 0) {
+                try {
+                    ByteBuffer data = ByteBuffer.wrap(b, off, n);
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                    written += n;
+                } catch (IOException e) {
+                    log.warn("Error caching content of {}/{}: {}", key.bucketName(), key.objectKey(), e.getMessage());
+                    discard();
+                }
+            } else if (n < 0) {
+                finish();
+            }
+            return n;
+        }
+        
+        private void finish() {
+            FileChannel completed = channel;
+            channel = null;
+            try {
+                completed.close();
+                if (written == source.response().contentLength()) {
+                    commit(key, source.response(), temp, written);
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Error caching content of {}/{}: {}", key.bucketName(), key.objectKey(), e.getMessage());
+            }
+            delete(temp);
+        }
+        
+        /**
+         * Drop the connection without draining it, and the partial file
+         */
+        private void abort() {
+            source.abort();
+            if (channel != null) {
+                discard();
+            }
+        }
+        
+        private void discard() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Deleted just below
+            }
+            channel = null;
+            delete(temp);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                source.close();
+            } finally {
+                if (channel != null) {
+                    discard();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads a memory-mapped file
+     */
+    private static final class BufferInputStream extends InputStream {
+        
+        private final ByteBuffer buffer;
+        
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+        
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package fr.noemys.s3.service.cache;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable sorted snapshot of the keys of a bucket, with their size and last modification time.
+ * Keys are held in one sorted array and the other attributes in primitive arrays, so keys under a
+ * prefix form a contiguous range found by binary search. Cumulative sizes give the total size of
+ * any prefix without visiting its keys.
+ * 
+ * @version 1.0.0
+ */
+public final class KeyIndex {
+    
+    // Object headers of the four arrays
+    private static final long BASE_MEMORY = 16L * 4;
+    
+    private final String[] keys;
+    private final long[] sizes;
+    private final long[] lastModified;
+    // cumulativeSizes[i] = sum of sizes[0..i-1]
+    private final long[] cumulativeSizes;
+    private final long memoryBytes;
+    
+    /**
+     * Indexed object
+     */
+    public record Entry(String key, long size, long lastModifiedMillis) {
+    }
+    
+    private KeyIndex(String[] keys, long[] sizes, long[] lastModified) {
+        this.keys = keys;
+        this.sizes = sizes;
+        this.lastModified = lastModified;
+        this.cumulativeSizes = new long[keys.length + 1];
+        long memory = BASE_MEMORY;
+        for (int i = 0; i < keys.length; i++) {
+            cumulativeSizes[i + 1] = cumulativeSizes[i] + sizes[i];
+            memory += entryMemory(keys[i]);
+        }
+        this.memoryBytes = memory;
+    }
+    
+    /**
+     * Estimated heap of one key: its slot in the four arrays, the String header and its value array,
+     * one byte per char for Latin-1 keys
+     */
+    private static long entryMemory(String key) {
+        return 8L * 4 + 24 + ((16 + key.length() + 7) & ~7);
+    }
+    
+    /**
+     * Build an index from entries in any order
+     */
+    public static KeyIndex of(List<Entry> entries) {
+        Builder builder = new Builder();
+        for (Entry entry : entries) {
+            builder.add(entry.key(), entry.size(), entry.lastModifiedMillis());
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Collects keys in any order into primitive columns, so that a bucket listing does not hold
+     * one object per key on top of the keys themselves. Not thread-safe.
+     */
+    public static final class Builder {
+        
+        private String[] keys = new String[1024];
+        private long[] sizes = new long[1024];
+        private long[] lastModified = new long[1024];
+        private int count;
+        private long memoryBytes = BASE_MEMORY;
+        
+        public void add(String key, long size, long lastModifiedMillis) {
+            if (count == keys.length) {
+                int capacity = keys.length + (keys.length >> 1);
+                keys = Arrays.copyOf(keys, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                lastModified = Arrays.copyOf(lastModified, capacity);
+            }
+            keys[count] = key;
+            sizes[count] = size;
+            lastModified[count] = lastModifiedMillis;
+            count++;
+            memoryBytes += entryMemory(key);
+        }
+        
+        public int size() {
+            return count;
+        }
+        
+        /**
+         * Estimated heap of the index once built
+         */
+        public long memoryBytes() {
+            return memoryBytes;
+        }
+        
+        public KeyIndex build() {
+            int[] order = IntStream.range(0, count)
+                    .boxed()
+                    .sorted(Comparator.comparing(i -> keys[i]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            
+            String[] sortedKeys = new String[count];
+            long[] sortedSizes = new long[count];
+            long[] sortedLastModified = new long[count];
+            int n = 0;
+            for (int i : order) {
+                // A key listed twice (overlapping shards) is kept once
+                if (n > 0 && sortedKeys[n - 1].equals(keys[i])) {
+                    n--;
+                }
+                sortedKeys[n] = keys[i];
+                sortedSizes[n] = sizes[i];
+                sortedLastModified[n] = lastModified[i];
+                n++;
+            }
+            return n == count
+                    ? new KeyIndex(sortedKeys, sortedSizes, sortedLastModified)
+                    : new KeyIndex(Arrays.copyOf(sortedKeys, n), Arrays.copyOf(sortedSizes, n),
+                            Arrays.copyOf(sortedLastModified, n));
+        }
+    }
+    
+    /**
+     * Replace every key under prefix with the given entries (a fresh listing of that prefix)
+     */
+    public KeyIndex splice(String prefix, List<Entry> entries) {
+        int from = lowerBound(prefix);
+        int to = upperBound(prefix, from);
+        KeyIndex replacement = of(entries);
+        int count = keys.length - (to - from) + replacement.size();
+        
+        String[] newKeys = new String[count];
+        long[] newSizes = new long[count];
+        long[] newLastModified = new long[count];
+        copy(this, 0, from, newKeys, newSizes, newLastModified, 0);
+        copy(replacement, 0, replacement.size(), newKeys, newSizes, newLastModified, from);
+        copy(this, to, keys.length, newKeys, newSizes, newLastModified, from + replacement.size());
+        return new KeyIndex(newKeys, newSizes, newLastModified);
+    }
+    
+    private static void copy(KeyIndex source, int from, int to, String[] keys, long[] sizes, long[] lastModified,
+                             int offset) {
+        System.arraycopy(source.keys, from, keys, offset, to - from);
+        System.arraycopy(source.sizes, from, sizes, offset, to - from);
+        System.arraycopy(source.lastModified, from, lastModified, offset, to - from);
+    }
+    
+    /**
+     * Index of the first key greater than or equal to prefix
+     */
+    public int lowerBound(String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Index of the first key from `from` that does not start with prefix - keys with a prefix are contiguous
+     */
+    public int upperBound(String prefix, int from) {
+        int low = from;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].startsWith(prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Total size of the keys in [from, to)
+     */
+    public long totalSize(int from, int to) {
+        return cumulativeSizes[to] - cumulativeSizes[from];
+    }
+    
+    public int size() {
+        return keys.length;
+    }
+    
+    public String key(int index) {
+        return keys[index];
+    }
+    
+    public long size(int index) {
+        return sizes[index];
+    }
+    
+    public long lastModified(int index) {
+        return lastModified[index];
+    }
+    
+    /**
+     * Estimated heap used by the index
+     */
+    public long memoryBytes() {
+        return memoryBytes;
+    }
+}
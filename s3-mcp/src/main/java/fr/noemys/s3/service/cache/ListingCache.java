@@ -0,0 +1,122 @@
+package fr.noemys.s3.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TTL cache of listObjects results keyed by endpoint, principal, bucket, prefix and cursor.
+ * Entries are invalidated when this server writes or deletes under a cached prefix.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class ListingCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(ListingCache.class);
+    
+    @Value("${mcp.s3.listing-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+    
+    @Value("${mcp.s3.listing-cache.max-entries:1000}")
+    private int maxEntries;
+    
+    @Value("${mcp.s3.listing-cache.max-objects-per-entry:10000}")
+    private int maxObjectsPerEntry;
+    
+    private TtlCache<ListingKey, Map<String, Object>> cache;
+    
+    @PostConstruct
+    public void init() {
+        cache = new TtlCache<>(maxEntries);
+    }
+    
+    /**
+     * Cache key - options holds every other listing parameter (page size, startAfter, parallel mode)
+     */
+    public record ListingKey(String endpoint, String principal, String bucketName, String prefix,
+                             String cursor, String options) {
+    }
+    
+    /**
+     * Build the key of a listing
+     */
+    public ListingKey key(String endpoint, String token, String userToken, String bucketName, String prefix,
+                          String cursor, Object... options) {
+        StringBuilder optionsKey = new StringBuilder();
+        for (Object option : options) {
+            optionsKey.append(option).append('|');
+        }
+        return new ListingKey(endpoint, S3ClientCache.principal(token, userToken), bucketName,
+                prefix != null ? prefix : "", cursor, optionsKey.toString());
+    }
+    
+    /**
+     * Get a cached listing result, decorated with cached=true and its age, or null
+     */
+    public Map<String, Object> get(ListingKey key) {
+        TtlCache.Entry<Map<String, Object>> entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        
+        log.info("Listing cache hit for bucket {} prefix '{}'", key.bucketName(), key.prefix());
+        Map<String, Object> result = new HashMap<>(entry.value());
+        result.put("cached", true);
+        result.put("cacheAgeMs", entry.ageMillis());
+        return result;
+    }
+    
+    /**
+     * Store a fresh listing result and mark it as not cached
+     */
+    public Map<String, Object> put(ListingKey key, Map<String, Object> result) {
+        Object count = result.get("count");
+        if (!(count instanceof Integer objects) || objects <= maxObjectsPerEntry) {
+            cache.put(key, Collections.unmodifiableMap(new HashMap<>(result)), Duration.ofSeconds(ttlSeconds));
+        }
+        result.put("cached", false);
+        return result;
+    }
+    
+    /**
+     * Drop listings that may contain the given key, after this server wrote or deleted it
+     */
+    public void invalidateKey(String endpoint, String bucketName, String objectKey) {
+        int removed = cache.invalidateIf(key -> key.endpoint().equals(endpoint)
+                && key.bucketName().equals(bucketName)
+                && objectKey.startsWith(key.prefix()));
+        if (removed > 0) {
+            log.info("Invalidated {} cached listing(s) for {}/{}", removed, bucketName, objectKey);
+        }
+    }
+    
+    /**
+     * Drop listings overlapping the given prefix, after this server wrote or deleted under it
+     */
+    public void invalidatePrefix(String endpoint, String bucketName, String prefix) {
+        String changedPrefix = prefix != null ? prefix : "";
+        int removed = cache.invalidateIf(key -> key.endpoint().equals(endpoint)
+                && key.bucketName().equals(bucketName)
+                && (changedPrefix.startsWith(key.prefix()) || key.prefix().startsWith(changedPrefix)));
+        if (removed > 0) {
+            log.info("Invalidated {} cached listing(s) for {}/{}*", removed, bucketName, changedPrefix);
+        }
+    }
+    
+    /**
+     * Cache statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = cache.getStats();
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+}
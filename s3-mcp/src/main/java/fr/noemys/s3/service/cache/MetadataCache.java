@@ -0,0 +1,146 @@
+package fr.noemys.s3.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of headObject results shared by every session using the same credentials.
+ * Found objects (positive entries) and missing keys (negative entries) have separate TTLs,
+ * so repeated existence checks on missing keys are served from memory too.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class MetadataCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(MetadataCache.class);
+    
+    @Value("${mcp.s3.metadata-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+    
+    @Value("${mcp.s3.metadata-cache.negative-ttl-seconds:10}")
+    private long negativeTtlSeconds;
+    
+    @Value("${mcp.s3.metadata-cache.max-entries:10000}")
+    private int maxEntries;
+    
+    private TtlCache<MetadataKey, CachedMetadata> cache;
+    
+    @PostConstruct
+    public void init() {
+        cache = new TtlCache<>(maxEntries);
+    }
+    
+    /**
+     * Cache key
+     */
+    public record MetadataKey(String endpoint, String principal, String bucketName, String objectKey) {
+    }
+    
+    /**
+     * Cached lookup: metadata is null when the object was not found
+     */
+    public record CachedMetadata(Map<String, Object> metadata, long ageMillis) {
+        
+        public boolean found() {
+            return metadata != null;
+        }
+    }
+    
+    /**
+     * Build the key of an object lookup
+     */
+    public MetadataKey key(String endpoint, String token, String userToken, String bucketName, String objectKey) {
+        return new MetadataKey(endpoint, S3ClientCache.principal(token, userToken), bucketName, objectKey);
+    }
+    
+    /**
+     * Get a cached lookup, positive or negative, or null
+     */
+    public CachedMetadata get(MetadataKey key) {
+        TtlCache.Entry<CachedMetadata> entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        
+        log.info("Metadata cache hit for {}/{} (found: {})", key.bucketName(), key.objectKey(), entry.value().found());
+        if (!entry.value().found()) {
+            return new CachedMetadata(null, entry.ageMillis());
+        }
+        Map<String, Object> metadata = new HashMap<>(entry.value().metadata());
+        metadata.put("cached", true);
+        metadata.put("cacheAgeMs", entry.ageMillis());
+        return new CachedMetadata(metadata, entry.ageMillis());
+    }
+    
+    /**
+     * Store the metadata of a found object and mark it as not cached
+     */
+    public Map<String, Object> putFound(MetadataKey key, Map<String, Object> metadata) {
+        cache.put(key, new CachedMetadata(Collections.unmodifiableMap(new HashMap<>(metadata)), 0),
+                Duration.ofSeconds(ttlSeconds));
+        metadata.put("cached", false);
+        return metadata;
+    }
+    
+    /**
+     * Remember a missing key if the lookup failed with 404
+     */
+    public void putIfNotFound(MetadataKey key, Throwable error) {
+        if (isNotFound(error)) {
+            cache.put(key, new CachedMetadata(null, 0), Duration.ofSeconds(negativeTtlSeconds));
+        }
+    }
+    
+    /**
+     * Drop the lookup of a key after this server wrote or deleted it
+     */
+    public void invalidateKey(String endpoint, String bucketName, String objectKey) {
+        cache.invalidateIf(key -> key.endpoint().equals(endpoint)
+                && key.bucketName().equals(bucketName)
+                && key.objectKey().equals(objectKey));
+    }
+    
+    /**
+     * Drop the lookups of every key under a prefix after this server wrote or deleted under it
+     */
+    public void invalidatePrefix(String endpoint, String bucketName, String prefix) {
+        String changedPrefix = prefix != null ? prefix : "";
+        cache.invalidateIf(key -> key.endpoint().equals(endpoint)
+                && key.bucketName().equals(bucketName)
+                && key.objectKey().startsWith(changedPrefix));
+    }
+    
+    /**
+     * Cache statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = cache.getStats();
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("negativeTtlSeconds", negativeTtlSeconds);
+        return stats;
+    }
+    
+    /**
+     * Whether an S3 call failed because the object does not exist
+     */
+    public static boolean isNotFound(Throwable error) {
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof S3Exception s3Exception) {
+                return s3Exception.statusCode() == 404;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,371 @@
+package fr.noemys.s3.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of S3 clients keyed by endpoint, credentials and region.
+ * Clients are leased to callers and only closed once evicted and no longer in use,
+ * so repeated calls with the same credentials reuse warm keep-alive connections.
+ * Idle clients are evicted by a periodic sweep, and unused clients are evicted first when the cache is full.
+ * Async clients are created on first use and share a single Netty NIO HTTP client.
+ * 
+ * @version 1.0.0
+ */
+@Component
+public class S3ClientCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(S3ClientCache.class);
+    
+    @Value("${mcp.s3.region:us-east-1}")
+    private String region;
+    
+    @Value("${mcp.s3.client-cache.max-size:32}")
+    private int maxSize;
+    
+    @Value("${mcp.s3.client-cache.idle-timeout-seconds:300}")
+    private long idleTimeoutSeconds;
+    
+    @Value("${mcp.s3.async.max-concurrency:200}")
+    private int asyncMaxConcurrency;
+    
+    // Access-ordered map: iteration starts with the least recently used entry
+    private final LinkedHashMap<ClientKey, CachedClient> clients = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    // Shared by every async client, created on first async lease
+    private SdkAsyncHttpClient asyncHttpClient;
+    
+    private ScheduledExecutorService sweeper;
+    
+    /**
+     * Sweep idle clients twice per idle timeout, so they are closed even if no other client is acquired
+     */
+    @PostConstruct
+    public void init() {
+        if (idleTimeoutSeconds <= 0) {
+            return;
+        }
+        long period = Math.max(1, idleTimeoutSeconds / 2);
+        sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("s3-client-sweep").factory());
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Lease a client for the given endpoint and credentials, creating it if needed.
+     * The lease must be closed once the caller is done with the client.
+     */
+    public Lease acquire(String endpoint, String token, String userToken) {
+        ClientKey key = new ClientKey(endpoint, token, hashSecret(userToken), region);
+        List<CachedClient> evicted = new ArrayList<>();
+        CachedClient cached;
+        
+        synchronized (clients) {
+            evictIdle(evicted);
+            
+            cached = clients.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                cached = new CachedClient(key, createS3Client(endpoint, token, userToken),
+                        () -> createS3AsyncClient(endpoint, token, userToken));
+                clients.put(key, cached);
+            }
+            // Retained first, so the new client is not the unused one evicted to make room for itself
+            cached.retain();
+            evictOverflow(evicted);
+        }
+        
+        closeAll(evicted);
+        return new Lease(cached);
+    }
+    
+    /**
+     * Evict and close the clients idle for longer than the idle timeout
+     */
+    void sweep() {
+        List<CachedClient> evicted = new ArrayList<>();
+        try {
+            synchronized (clients) {
+                evictIdle(evicted);
+            }
+            closeAll(evicted);
+        } catch (Exception e) {
+            log.warn("Error sweeping idle S3 clients: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Cache statistics used to size the cache
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (clients) {
+            stats.put("size", clients.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("idleTimeoutSeconds", idleTimeoutSeconds);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+    
+    /**
+     * Close every cached client on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        List<CachedClient> evicted;
+        synchronized (clients) {
+            evicted = new ArrayList<>(clients.values());
+            evicted.forEach(CachedClient::markEvicted);
+            clients.clear();
+        }
+        closeAll(evicted);
+        
+        synchronized (this) {
+            if (asyncHttpClient != null) {
+                asyncHttpClient.close();
+                asyncHttpClient = null;
+            }
+        }
+        log.info("S3 client cache closed ({} client(s))", evicted.size());
+    }
+    
+    /**
+     * Create S3 client from credentials
+     */
+    S3Client createS3Client(String endpoint, String token, String userToken) {
+        log.info("Creating S3 client for endpoint: {}", endpoint);
+        
+        // Use token and userToken as S3 credentials (access key and secret key)
+        AwsBasicCredentials credentials = AwsBasicCredentials.create(token, userToken);
+        
+        return S3Client.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                .build();
+    }
+    
+    /**
+     * Create S3 async client from credentials, backed by the shared Netty HTTP client
+     */
+    private S3AsyncClient createS3AsyncClient(String endpoint, String token, String userToken) {
+        log.info("Creating S3 async client for endpoint: {}", endpoint);
+        
+        AwsBasicCredentials credentials = AwsBasicCredentials.create(token, userToken);
+        
+        return S3AsyncClient.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                .httpClient(sharedAsyncHttpClient())
+                .build();
+    }
+    
+    private synchronized SdkAsyncHttpClient sharedAsyncHttpClient() {
+        if (asyncHttpClient == null) {
+            asyncHttpClient = NettyNioAsyncHttpClient.builder()
+                    .maxConcurrency(asyncMaxConcurrency)
+                    .build();
+        }
+        return asyncHttpClient;
+    }
+    
+    private void evictIdle(List<CachedClient> evicted) {
+        long idleBefore = System.nanoTime() - Duration.ofSeconds(idleTimeoutSeconds).toNanos();
+        Iterator<CachedClient> iterator = clients.values().iterator();
+        while (iterator.hasNext()) {
+            CachedClient cached = iterator.next();
+            if (cached.lastAccessNanos - idleBefore < 0 && cached.inUse == 0) {
+                iterator.remove();
+                cached.markEvicted();
+                evicted.add(cached);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Evict least recently used clients above maxSize, unused ones first.
+     * A client still in use is only evicted when every client is, and closed once released.
+     */
+    private void evictOverflow(List<CachedClient> evicted) {
+        for (boolean evictInUse : new boolean[] {false, true}) {
+            Iterator<CachedClient> iterator = clients.values().iterator();
+            while (clients.size() > maxSize && iterator.hasNext()) {
+                CachedClient cached = iterator.next();
+                if (cached.inUse > 0 && !evictInUse) {
+                    continue;
+                }
+                iterator.remove();
+                cached.markEvicted();
+                evicted.add(cached);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+    
+    private void closeAll(List<CachedClient> evicted) {
+        for (CachedClient cached : evicted) {
+            cached.closeIfUnused();
+        }
+    }
+    
+    /**
+     * Identity of the caller for shared caches: access key plus a hash of the secret,
+     * so a wrong secret never matches entries fetched with the right one
+     */
+    public static String principal(String token, String userToken) {
+        return token + ":" + hashSecret(userToken);
+    }
+    
+    private static String hashSecret(String secret) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.valueOf(secret).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Cache key - the secret is only kept as a hash
+     */
+    private record ClientKey(String endpoint, String accessKey, String secretHash, String region) {
+    }
+    
+    /**
+     * Cached client with a reference count of active leases
+     */
+    private static final class CachedClient {
+        
+        private final ClientKey key;
+        private final S3Client client;
+        private final Supplier<S3AsyncClient> asyncClientFactory;
+        private S3AsyncClient asyncClient;
+        private volatile int inUse;
+        private boolean evicted;
+        private boolean closed;
+        private volatile long lastAccessNanos = System.nanoTime();
+        
+        private CachedClient(ClientKey key, S3Client client, Supplier<S3AsyncClient> asyncClientFactory) {
+            this.key = key;
+            this.client = client;
+            this.asyncClientFactory = asyncClientFactory;
+        }
+        
+        private synchronized S3AsyncClient asyncClient() {
+            if (asyncClient == null) {
+                asyncClient = asyncClientFactory.get();
+            }
+            return asyncClient;
+        }
+        
+        private synchronized void retain() {
+            inUse++;
+            lastAccessNanos = System.nanoTime();
+        }
+        
+        private void release() {
+            synchronized (this) {
+                inUse--;
+                lastAccessNanos = System.nanoTime();
+            }
+            closeIfUnused();
+        }
+        
+        private synchronized void markEvicted() {
+            evicted = true;
+        }
+        
+        private void closeIfUnused() {
+            synchronized (this) {
+                if (!evicted || inUse > 0 || closed) {
+                    return;
+                }
+                closed = true;
+            }
+            log.info("Closing evicted S3 client for endpoint: {}", key.endpoint());
+            try {
+                client.close();
+                synchronized (this) {
+                    if (asyncClient != null) {
+                        asyncClient.close();
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Error closing S3 client: {}", e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Lease on a cached client, to be used in try-with-resources
+     */
+    public static final class Lease implements AutoCloseable {
+        
+        private final CachedClient cached;
+        // Streamed downloads may release the lease from another thread
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        private Lease(CachedClient cached) {
+            this.cached = cached;
+        }
+        
+        public S3Client client() {
+            return cached.client;
+        }
+        
+        public S3AsyncClient asyncClient() {
+            return cached.asyncClient();
+        }
+        
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                cached.release();
+            }
+        }
+    }
+}
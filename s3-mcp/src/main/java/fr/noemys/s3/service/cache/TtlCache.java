@@ -0,0 +1,116 @@
+package fr.noemys.s3.service.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded LRU cache whose entries expire a fixed time after being stored.
+ * Thread-safe; all operations lock the whole cache, which is fine for the small
+ * in-memory maps used by this server.
+ * 
+ * @version 1.0.0
+ */
+public class TtlCache<K, V> {
+    
+    private final int maxEntries;
+    
+    // Access-ordered map: iteration starts with the least recently used entry
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    
+    public TtlCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * Cached value with the time it was stored
+     */
+    public record Entry<V>(V value, long storedAtMillis, long expiresAtMillis) {
+        
+        public long ageMillis() {
+            return System.currentTimeMillis() - storedAtMillis;
+        }
+    }
+    
+    /**
+     * Get a live entry, or null if absent or expired
+     */
+    public Entry<V> get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return entry;
+        }
+    }
+    
+    /**
+     * Store a value for the given time to live, evicting least recently used entries when full
+     */
+    public void put(K key, V value, Duration ttl) {
+        if (maxEntries <= 0 || ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, now, now + ttl.toMillis()));
+            
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Remove every entry whose key matches
+     */
+    public int invalidateIf(Predicate<K> predicate) {
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<K> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (predicate.test(iterator.next())) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        invalidations.addAndGet(removed);
+        return removed;
+    }
+    
+    /**
+     * Cache statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
@@ -0,0 +1,100 @@
+package fr.noemys.s3.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of text and charset detection
+ * 
+ * @version 1.0.0
+ */
+class ContentSnifferTest {
+    
+    private static ContentSniffer.Detection detect(byte[] sample, String contentType) {
+        return ContentSniffer.detect(sample, sample.length, contentType);
+    }
+    
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+    
+    @Test
+    void byteOrderMarkWinsOverContentType() {
+        ContentSniffer.Detection utf8 = detect(bytes(0xEF, 0xBB, 0xBF, 'a'), "image/png");
+        assertThat(utf8.binary()).isFalse();
+        assertThat(utf8.charset()).isEqualTo(StandardCharsets.UTF_8);
+        assertThat(utf8.bomLength()).isEqualTo(3);
+        
+        ContentSniffer.Detection utf16be = detect(bytes(0xFE, 0xFF, 0, 'a'), null);
+        assertThat(utf16be.charset()).isEqualTo(StandardCharsets.UTF_16BE);
+        assertThat(utf16be.bomLength()).isEqualTo(2);
+        
+        ContentSniffer.Detection utf16le = detect(bytes(0xFF, 0xFE, 'a', 0), null);
+        assertThat(utf16le.charset()).isEqualTo(StandardCharsets.UTF_16LE);
+        assertThat(utf16le.bomLength()).isEqualTo(2);
+    }
+    
+    @Test
+    void declaredCharsetIsUsedWithoutSniffing() {
+        ContentSniffer.Detection detection = detect(bytes('a', 0, 'b'), "text/plain; charset=\"ISO-8859-1\"");
+        
+        assertThat(detection.binary()).isFalse();
+        assertThat(detection.charset()).isEqualTo(StandardCharsets.ISO_8859_1);
+        assertThat(detection.bomLength()).isZero();
+        assertThat(ContentSniffer.declaredCharset("text/csv;CHARSET=utf-8")).isEqualTo(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    void unknownOrMissingCharsetIsIgnored() {
+        assertThat(ContentSniffer.declaredCharset(null)).isNull();
+        assertThat(ContentSniffer.declaredCharset("text/plain")).isNull();
+        assertThat(ContentSniffer.declaredCharset("text/plain; charset=no-such-charset")).isNull();
+        assertThat(ContentSniffer.declaredCharset("text/plain; charset=bad name")).isNull();
+    }
+    
+    @Test
+    void binaryMediaTypesAreNeverText() {
+        byte[] text = "hello".getBytes(StandardCharsets.US_ASCII);
+        
+        assertThat(detect(text, "image/png").binary()).isTrue();
+        assertThat(detect(text, "application/pdf").binary()).isTrue();
+        assertThat(detect(text, "application/zip").binary()).isTrue();
+        assertThat(detect(text, "image/svg+xml").binary()).isFalse();
+        assertThat(detect(text, "application/json").binary()).isFalse();
+    }
+    
+    @Test
+    void nulOrManyControlBytesMeanBinary() {
+        assertThat(detect(bytes('a', 'b', 0, 'c'), null).binary()).isTrue();
+        assertThat(detect(bytes('a', 1, 2, 3, 'b'), null).binary()).isTrue();
+        assertThat(detect(bytes('a', 1, 2, 3, 'b'), null).charset()).isNull();
+        // Tabs, line breaks, form feeds and escapes are text
+        assertThat(detect(bytes('a', '\t', '\r', '\n', '\f', 0x1b, 'b'), null).binary()).isFalse();
+    }
+    
+    @Test
+    void validUtf8IsUtf8AndInvalidUtf8IsLatin1() {
+        assertThat(detect("caf\u00e9 \u20ac".getBytes(StandardCharsets.UTF_8), null).charset())
+                .isEqualTo(StandardCharsets.UTF_8);
+        assertThat(detect("caf\u00e9 cr\u00e8me".getBytes(StandardCharsets.ISO_8859_1), null).charset())
+                .isEqualTo(StandardCharsets.ISO_8859_1);
+        assertThat(detect(new byte[0], null).charset()).isEqualTo(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    void utf8SequenceCutByTheSampleEndIsAccepted() {
+        byte[] euro = "a\u20ac".getBytes(StandardCharsets.UTF_8);
+        
+        // "a" and the first two of the three bytes of the euro sign
+        ContentSniffer.Detection detection = ContentSniffer.detect(euro, 3, null);
+        
+        assertThat(detection.charset()).isEqualTo(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,151 @@
+package fr.noemys.s3.service;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of compression detection and bounded decompression
+ * 
+ * @version 1.0.0
+ */
+class DecompressionTest {
+    
+    private static final byte[] TEXT = "line 1\nline 2\nline 3\n".repeat(100).getBytes(StandardCharsets.UTF_8);
+    
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] bzip2(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream bzip2 = new BZip2CompressorOutputStream(out)) {
+            bzip2.write(content);
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+    
+    private static Decompression.Codec detect(byte[] sample) {
+        return Decompression.detect(sample, sample.length);
+    }
+    
+    @Test
+    void detectsFormatsByMagicBytes() throws IOException {
+        assertThat(detect(gzip(TEXT))).isEqualTo(Decompression.Codec.GZIP);
+        assertThat(detect(bzip2(TEXT))).isEqualTo(Decompression.Codec.BZIP2);
+        assertThat(detect(bytes(0x28, 0xb5, 0x2f, 0xfd, 0x24, 0x00))).isEqualTo(Decompression.Codec.ZSTD);
+        assertThat(detect(TEXT)).isNull();
+    }
+    
+    @Test
+    void emptyBzip2StreamIsDetected() throws IOException {
+        // Only the end of stream magic follows the header
+        assertThat(detect(bzip2(new byte[0]))).isEqualTo(Decompression.Codec.BZIP2);
+    }
+    
+    @Test
+    void textStartingLikeBzip2IsNotCompressed() {
+        assertThat(detect("BZh9 is not a bzip2 header".getBytes(StandardCharsets.US_ASCII))).isNull();
+        assertThat(detect("BZh".getBytes(StandardCharsets.US_ASCII))).isNull();
+    }
+    
+    @Test
+    void truncatedMagicIsNotDetected() {
+        assertThat(Decompression.detect(bytes(0x1f, 0x8b, 8), 2)).isNull();
+        assertThat(detect(bytes(0x28, 0xb5, 0x2f))).isNull();
+        // gzip with a compression method other than deflate
+        assertThat(detect(bytes(0x1f, 0x8b, 7))).isNull();
+        assertThat(detect(new byte[0])).isNull();
+    }
+    
+    @Test
+    void expectedFromContentEncodingOrExtension() {
+        assertThat(Decompression.isExpected("gzip", "a.txt")).isTrue();
+        assertThat(Decompression.isExpected(" ZSTD ", null)).isTrue();
+        assertThat(Decompression.isExpected(null, "logs/app.LOG.GZ")).isTrue();
+        assertThat(Decompression.isExpected(null, "dump.tbz2")).isTrue();
+        assertThat(Decompression.isExpected("identity", "a.txt")).isFalse();
+        assertThat(Decompression.isExpected(null, null)).isFalse();
+    }
+    
+    @Test
+    void openDecompressesCompressedStreams() throws IOException {
+        Decompression.Opened gzip = Decompression.open(new ByteArrayInputStream(gzip(TEXT)), Long.MAX_VALUE);
+        assertThat(gzip.codec()).isEqualTo(Decompression.Codec.GZIP);
+        assertThat(gzip.stream().readAllBytes()).isEqualTo(TEXT);
+        
+        Decompression.Opened bzip2 = Decompression.open(new ByteArrayInputStream(bzip2(TEXT)), Long.MAX_VALUE);
+        assertThat(bzip2.codec()).isEqualTo(Decompression.Codec.BZIP2);
+        assertThat(bzip2.stream().readAllBytes()).isEqualTo(TEXT);
+    }
+    
+    @Test
+    void openPassesPlainStreamsThrough() throws IOException {
+        Decompression.Opened opened = Decompression.open(new ByteArrayInputStream(TEXT), 10);
+        
+        assertThat(opened.codec()).isNull();
+        // The limit only applies to decompressed content
+        assertThat(opened.stream().readAllBytes()).isEqualTo(TEXT);
+    }
+    
+    @Test
+    void contentOfExactlyTheLimitIsAllowed() throws IOException {
+        try (InputStream in = Decompression.decompress(new ByteArrayInputStream(gzip(TEXT)),
+                Decompression.Codec.GZIP, TEXT.length)) {
+            assertThat(in.readAllBytes()).isEqualTo(TEXT);
+        }
+    }
+    
+    @Test
+    void contentOverTheLimitFails() throws IOException {
+        InputStream in = Decompression.decompress(new ByteArrayInputStream(gzip(TEXT)),
+                Decompression.Codec.GZIP, TEXT.length - 1);
+        
+        assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class)
+                .hasMessageContaining("exceeds " + (TEXT.length - 1) + " bytes");
+    }
+    
+    @Test
+    void skippedBytesCountTowardsTheLimit() throws IOException {
+        InputStream in = Decompression.decompress(new ByteArrayInputStream(gzip(TEXT)),
+                Decompression.Codec.GZIP, 100);
+        
+        assertThatThrownBy(() -> in.skip(TEXT.length)).isInstanceOf(IOException.class);
+    }
+    
+    @Test
+    void sampleOfATruncatedStreamReturnsWhatWasDecoded() throws IOException {
+        byte[] large = "0123456789abcdef".repeat(64 * 1024).getBytes(StandardCharsets.US_ASCII);
+        byte[] compressed = gzip(large);
+        
+        byte[] sample = Decompression.sample(compressed, compressed.length / 2, Decompression.Codec.GZIP, 4096);
+        
+        assertThat(sample).hasSize(4096);
+        assertThat(new String(sample, StandardCharsets.US_ASCII)).startsWith("0123456789abcdef0123");
+        
+        byte[] header = Decompression.sample(compressed, 10, Decompression.Codec.GZIP, 4096);
+        assertThat(header).isEmpty();
+    }
+}
@@ -0,0 +1,123 @@
+package fr.noemys.s3.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of glob compilation, matching and segment split
+ * 
+ * @version 1.0.0
+ */
+class GlobPatternTest {
+    
+    @Test
+    void starAndQuestionMarkStayWithinOneSegment() {
+        GlobPattern glob = GlobPattern.compile("logs/*.gz");
+        
+        assertThat(glob.matches("logs/app.gz")).isTrue();
+        assertThat(glob.matches("logs/.gz")).isTrue();
+        assertThat(glob.matches("logs/2024/app.gz")).isFalse();
+        assertThat(glob.matches("logs/app.gzip")).isFalse();
+        
+        GlobPattern single = GlobPattern.compile("file?.txt");
+        assertThat(single.matches("file1.txt")).isTrue();
+        assertThat(single.matches("file.txt")).isFalse();
+        assertThat(single.matches("file/.txt")).isFalse();
+    }
+    
+    @Test
+    void doubleStarCrossesSegments() {
+        GlobPattern glob = GlobPattern.compile("data/**/*.csv");
+        
+        assertThat(glob.crossesSegments()).isTrue();
+        assertThat(glob.matches("data/a.csv")).isTrue();
+        assertThat(glob.matches("data/2024/01/a.csv")).isTrue();
+        assertThat(glob.matches("other/a.csv")).isFalse();
+        assertThat(GlobPattern.compile("data/**").matches("data/x/y")).isTrue();
+        assertThat(GlobPattern.compile("data/*").crossesSegments()).isFalse();
+    }
+    
+    @Test
+    void characterClassesAndAlternatives() {
+        GlobPattern classes = GlobPattern.compile("[a-c]x[!0-9]");
+        assertThat(classes.matches("bxy")).isTrue();
+        assertThat(classes.matches("dxy")).isFalse();
+        assertThat(classes.matches("bx1")).isFalse();
+        // A negated class never matches the delimiter
+        assertThat(classes.matches("bx/")).isFalse();
+        
+        GlobPattern alternatives = GlobPattern.compile("img/*.{png,jpg}");
+        assertThat(alternatives.matches("img/a.png")).isTrue();
+        assertThat(alternatives.matches("img/a.jpg")).isTrue();
+        assertThat(alternatives.matches("img/a.gif")).isFalse();
+        // Outside braces a comma is literal
+        assertThat(GlobPattern.compile("a,b").matches("a,b")).isTrue();
+    }
+    
+    @Test
+    void regexCharactersAreLiteral() {
+        GlobPattern glob = GlobPattern.compile("a.b+(c)$");
+        
+        assertThat(glob.matches("a.b+(c)$")).isTrue();
+        assertThat(glob.matches("axbb(c)")).isFalse();
+        assertThat(glob.isLiteral()).isTrue();
+    }
+    
+    @Test
+    void literalPrefixStopsAtFirstWildcard() {
+        assertThat(GlobPattern.compile("logs/2024-*/app.log").literalPrefix()).isEqualTo("logs/2024-");
+        assertThat(GlobPattern.compile("*.txt").literalPrefix()).isEmpty();
+        assertThat(GlobPattern.compile("a/{b,c}/d").literalPrefix()).isEqualTo("a/");
+        assertThat(GlobPattern.compile("a\\*b*").literalPrefix()).isEqualTo("a*b");
+        assertThat(GlobPattern.compile("a/b.txt").isLiteral()).isTrue();
+        assertThat(GlobPattern.compile("a/b?.txt").isLiteral()).isFalse();
+    }
+    
+    @Test
+    void escapedCharactersMatchThemselves() {
+        GlobPattern glob = GlobPattern.compile("a\\*\\?\\[b");
+        
+        assertThat(glob.matches("a*?[b")).isTrue();
+        assertThat(glob.matches("axyb")).isFalse();
+        assertThat(glob.isLiteral()).isTrue();
+    }
+    
+    @Test
+    void segmentsSplitOnDelimiter() {
+        List<GlobPattern> segments = GlobPattern.compile("logs/*/app-?.log").segments();
+        
+        assertThat(segments).extracting(GlobPattern::toString).containsExactly("logs", "*", "app-?.log");
+        assertThat(segments.get(0).isLiteral()).isTrue();
+        assertThat(segments.get(1).matches("2024")).isTrue();
+        assertThat(segments.get(2).matches("app-1.log")).isTrue();
+        // Escaped and bracketed characters are not delimiters
+        assertThat(GlobPattern.compile("a\\/b/c").segments()).hasSize(2);
+        assertThat(GlobPattern.compile("a/[xy]/c").segments()).hasSize(3);
+    }
+    
+    @Test
+    void noSegmentsWhenDelimiterIsInsideGroup() {
+        assertThat(GlobPattern.compile("{a/b,c}/d").segments()).isNull();
+        assertThat(GlobPattern.compile("x[a/]y").segments()).isNull();
+    }
+    
+    @Test
+    void malformedGlobsAreRejected() {
+        assertThatThrownBy(() -> GlobPattern.compile(null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GlobPattern.compile("")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GlobPattern.compile("a\\")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("trailing escape");
+        assertThatThrownBy(() -> GlobPattern.compile("a[bc")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unclosed [");
+        assertThatThrownBy(() -> GlobPattern.compile("{a,b")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unclosed {");
+        assertThatThrownBy(() -> GlobPattern.compile("a}")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unmatched }");
+        assertThatThrownBy(() -> GlobPattern.compile("{a,{b}}")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("nested {");
+    }
+}
@@ -0,0 +1,82 @@
+package fr.noemys.s3.service;
+
+import fr.noemys.s3.model.ArchiveRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of archive request checks and ZIP entry naming
+ * 
+ * @version 1.0.0
+ */
+class S3ArchiveServiceTest {
+    
+    @Test
+    void entryNamesCannotEscapeTheArchive() {
+        assertThat(S3ArchiveService.entryName("../../etc/passwd")).isEqualTo("etc/passwd");
+        assertThat(S3ArchiveService.entryName("/abs/./file.txt")).isEqualTo("abs/file.txt");
+        assertThat(S3ArchiveService.entryName("a//b\\..\\c.txt")).isEqualTo("a/b/c.txt");
+        assertThat(S3ArchiveService.entryName("logs/app.log")).isEqualTo("logs/app.log");
+    }
+    
+    @Test
+    void onlyKeysEndingWithSlashAreDirectories() {
+        assertThat(S3ArchiveService.entryName("logs/")).isEqualTo("logs/");
+        assertThat(S3ArchiveService.entryName("logs/../")).isEqualTo("logs/");
+        assertThat(S3ArchiveService.entryName("logs\\")).isEqualTo("logs");
+    }
+    
+    @Test
+    void keysWithoutNameGetAPlaceholder() {
+        assertThat(S3ArchiveService.entryName("..")).isEqualTo("unnamed");
+        assertThat(S3ArchiveService.entryName("/")).isEqualTo("unnamed/");
+        assertThat(S3ArchiveService.entryName("")).isEqualTo("unnamed");
+    }
+    
+    @Test
+    void duplicateNamesAreNumberedBeforeTheExtension() {
+        Set<String> entryNames = new HashSet<>();
+        
+        assertThat(S3ArchiveService.uniqueName("a/b.txt", entryNames)).isEqualTo("a/b.txt");
+        assertThat(S3ArchiveService.uniqueName("a/b.txt", entryNames)).isEqualTo("a/b (1).txt");
+        assertThat(S3ArchiveService.uniqueName("a/b.txt", entryNames)).isEqualTo("a/b (2).txt");
+        assertThat(S3ArchiveService.uniqueName("a/b (1).txt", entryNames)).isEqualTo("a/b (1) (1).txt");
+    }
+    
+    @Test
+    void duplicateNamesWithoutExtensionAreNumberedAtTheEnd() {
+        Set<String> entryNames = new HashSet<>();
+        S3ArchiveService.uniqueName("a.d/.env", entryNames);
+        S3ArchiveService.uniqueName("a.d/README", entryNames);
+        
+        assertThat(S3ArchiveService.uniqueName("a.d/.env", entryNames)).isEqualTo("a.d/.env (1)");
+        assertThat(S3ArchiveService.uniqueName("a.d/README", entryNames)).isEqualTo("a.d/README (1)");
+    }
+    
+    private static ArchiveRequest request(String bucketName) {
+        return ArchiveRequest.builder()
+                .bucketName(bucketName)
+                .prefix("logs/")
+                .build();
+    }
+    
+    @Test
+    void bucketNamesFollowTheS3Rules() {
+        S3ArchiveService service = new S3ArchiveService(null);
+        
+        assertThatCode(() -> service.validate(request("my-bucket.2024"))).doesNotThrowAnyException();
+        // Would break out of the quoted file name of the Content-Disposition header
+        assertThatThrownBy(() -> service.validate(request("b\"x\r\nSet-Cookie: a")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Invalid bucketName");
+        assertThatThrownBy(() -> service.validate(request("My_Bucket"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.validate(request("ab"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.validate(request("-bucket"))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
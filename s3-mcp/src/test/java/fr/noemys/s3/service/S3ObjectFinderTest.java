@@ -0,0 +1,53 @@
+package fr.noemys.s3.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the listing prefix derived from a regex
+ * 
+ * @version 1.0.0
+ */
+class S3ObjectFinderTest {
+    
+    @Test
+    void prefixEndsAtFirstMetacharacter() {
+        assertThat(S3ObjectFinder.regexPrefix("logs/2024-.*")).isEqualTo("logs/2024-");
+        assertThat(S3ObjectFinder.regexPrefix("^logs/.*\\.gz")).isEqualTo("logs/");
+        assertThat(S3ObjectFinder.regexPrefix("data/[0-9]+")).isEqualTo("data/");
+        assertThat(S3ObjectFinder.regexPrefix("(logs)/x")).isEmpty();
+        assertThat(S3ObjectFinder.regexPrefix("plain/key.txt")).isEqualTo("plain/key");
+        assertThat(S3ObjectFinder.regexPrefix("")).isEmpty();
+    }
+    
+    @Test
+    void escapedPunctuationIsLiteral() {
+        assertThat(S3ObjectFinder.regexPrefix("logs\\.txt")).isEqualTo("logs.txt");
+        assertThat(S3ObjectFinder.regexPrefix("a\\+b\\(c.*")).isEqualTo("a+b(c");
+    }
+    
+    @Test
+    void escapedLettersEndThePrefix() {
+        // \d, \w, \Q... are classes or quoting, not the letter itself
+        assertThat(S3ObjectFinder.regexPrefix("logs/\\d+")).isEqualTo("logs/");
+        assertThat(S3ObjectFinder.regexPrefix("a\\Qb.c\\E")).isEqualTo("a");
+        assertThat(S3ObjectFinder.regexPrefix("a\\")).isEqualTo("a");
+    }
+    
+    @Test
+    void optionalCharacterIsNotPartOfThePrefix() {
+        assertThat(S3ObjectFinder.regexPrefix("ab?c")).isEqualTo("a");
+        assertThat(S3ObjectFinder.regexPrefix("ab*c")).isEqualTo("a");
+        assertThat(S3ObjectFinder.regexPrefix("abc{0,2}")).isEqualTo("ab");
+        assertThat(S3ObjectFinder.regexPrefix("a\\.?b")).isEqualTo("a");
+        // At least one b
+        assertThat(S3ObjectFinder.regexPrefix("ab+c")).isEqualTo("ab");
+    }
+    
+    @Test
+    void alternativesHaveNoCommonPrefix() {
+        assertThat(S3ObjectFinder.regexPrefix("logs/a|logs/b")).isEmpty();
+        assertThat(S3ObjectFinder.regexPrefix("logs/(a|b)")).isEmpty();
+    }
+}
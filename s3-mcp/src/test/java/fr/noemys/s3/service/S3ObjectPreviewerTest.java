@@ -0,0 +1,149 @@
+package fr.noemys.s3.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of head and tail previews, with servers honoring or ignoring ranges
+ * 
+ * @version 1.0.0
+ */
+class S3ObjectPreviewerTest {
+    
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    
+    private S3ObjectPreviewer previewer;
+    
+    // Bodies aborted before their end
+    private final AtomicInteger aborts = new AtomicInteger();
+    
+    @BeforeEach
+    void setUp() {
+        previewer = new S3ObjectPreviewer();
+        ReflectionTestUtils.setField(previewer, "defaultLines", 50);
+        ReflectionTestUtils.setField(previewer, "maxLines", 1000);
+        ReflectionTestUtils.setField(previewer, "windowSize", 16L);
+        ReflectionTestUtils.setField(previewer, "maxBytes", 1024L);
+        ReflectionTestUtils.setField(previewer, "maxDecompressedSize", 1L << 20);
+    }
+    
+    private static byte[] lines(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    private ResponseInputStream<GetObjectResponse> body(GetObjectResponse response, byte[] content) {
+        return new ResponseInputStream<>(response,
+                AbortableInputStream.create(new ByteArrayInputStream(content), aborts::incrementAndGet));
+    }
+    
+    /**
+     * Client serving the object, honoring Range headers or sending the whole object
+     */
+    private S3Client object(byte[] content, boolean honorRange) {
+        S3Client s3Client = mock(S3Client.class);
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            Matcher range = request.range() != null ? RANGE.matcher(request.range()) : null;
+            if (!honorRange || range == null || !range.matches()) {
+                return body(GetObjectResponse.builder().contentLength((long) content.length).build(), content);
+            }
+            int start;
+            int end;
+            if (range.group(1).isEmpty()) {
+                start = Math.max(0, content.length - Integer.parseInt(range.group(2)));
+                end = content.length - 1;
+            } else {
+                start = Integer.parseInt(range.group(1));
+                end = Math.min(Integer.parseInt(range.group(2)), content.length - 1);
+            }
+            return body(GetObjectResponse.builder()
+                    .contentRange("bytes " + start + "-" + end + "/" + content.length)
+                    .contentLength((long) end - start + 1)
+                    .build(), Arrays.copyOfRange(content, start, end + 1));
+        });
+        return s3Client;
+    }
+    
+    @Test
+    void headGrowsTheWindowUntilTheLastLine() throws IOException {
+        Map<String, Object> result = previewer.preview(object(lines(100), true), "bucket", "app.log", 5, false);
+        
+        assertThat(result.get("lines")).asList().containsExactly("line 1", "line 2", "line 3", "line 4", "line 5");
+        assertThat(result).containsEntry("truncated", false).containsEntry("complete", false)
+                .containsEntry("requests", 2).containsEntry("bytesRead", 16L + 32);
+    }
+    
+    @Test
+    void headStopsAtTheLastLineWhenTheRangeIsIgnored() throws IOException {
+        Map<String, Object> result = previewer.preview(object(lines(1000), false), "bucket", "app.log", 2, false);
+        
+        assertThat(result.get("lines")).asList().containsExactly("line 1", "line 2");
+        assertThat(result).containsEntry("requests", 1).containsEntry("size", (long) lines(1000).length);
+        // Read from the start of the object up to maxBytes, not the whole body
+        assertThat(result).containsEntry("bytesRead", 1024L);
+        assertThat(aborts).hasValue(1);
+    }
+    
+    @Test
+    void headStopsAtMaxBytesWhenTheRangeIsIgnored() throws IOException {
+        byte[] content = new byte[4096];
+        Arrays.fill(content, (byte) 'x');
+        
+        Map<String, Object> result = previewer.preview(object(content, false), "bucket", "app.log", 2, false);
+        
+        assertThat(result).containsEntry("bytesRead", 1024L).containsEntry("truncated", true)
+                .containsEntry("complete", false);
+        assertThat(aborts).hasValue(1);
+    }
+    
+    @Test
+    void tailReadsSuffixRanges() throws IOException {
+        Map<String, Object> result = previewer.preview(object(lines(100), true), "bucket", "app.log", 2, true);
+        
+        assertThat(result.get("lines")).asList().containsExactly("line 99", "line 100");
+        assertThat((long) result.get("bytesRead")).isLessThan(lines(100).length);
+        assertThat(aborts).hasValue(0);
+    }
+    
+    @Test
+    void tailScansTheObjectWhenTheRangeIsIgnored() throws IOException {
+        Map<String, Object> result = previewer.preview(object(lines(100), false), "bucket", "app.log", 2, true);
+        
+        assertThat(result.get("lines")).asList().containsExactly("line 99", "line 100");
+        assertThat(result).containsEntry("requests", 2).containsEntry("firstLine", 99L)
+                .containsEntry("complete", true);
+        assertThat(aborts).hasValue(1);
+    }
+    
+    @Test
+    void tailOfALargeObjectIgnoringRangesIsUnavailable() throws IOException {
+        Map<String, Object> result = previewer.preview(object(lines(1000), false), "bucket", "app.log", 2, true);
+        
+        assertThat(result).containsEntry("tailUnavailable", true).containsEntry("lineCount", 0);
+        assertThat(aborts).hasValue(2);
+    }
+}
@@ -0,0 +1,158 @@
+package fr.noemys.s3.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of line search: offsets, charsets, truncation and regex time budget
+ * 
+ * @version 1.0.0
+ */
+class S3ObjectSearcherTest {
+    
+    private S3ObjectSearcher searcher;
+    
+    @BeforeEach
+    void setUp() {
+        searcher = new S3ObjectSearcher();
+        ReflectionTestUtils.setField(searcher, "defaultMaxMatches", 100);
+        ReflectionTestUtils.setField(searcher, "maxMatchesLimit", 1000);
+        ReflectionTestUtils.setField(searcher, "maxLineLength", 65536);
+        ReflectionTestUtils.setField(searcher, "maxReturnedLineLength", 10);
+        ReflectionTestUtils.setField(searcher, "regexTimeoutMillis", 10L);
+    }
+    
+    private Map<String, Object> search(byte[] content, String contentType, String pattern, boolean regex,
+                                       Integer maxMatches) throws IOException {
+        return searcher.search(new ByteArrayInputStream(content), contentType,
+                searcher.matcher(pattern, regex, false), maxMatches);
+    }
+    
+    private static byte[] encode(String text, Charset charset, int... prefix) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int b : prefix) {
+            out.write(b);
+        }
+        out.write(text.getBytes(charset));
+        return out.toByteArray();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> matches(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("matches");
+    }
+    
+    @Test
+    void matchesCarryLineNumbersAndByteOffsets() throws IOException {
+        byte[] content = "alpha\r\nbeta\r\ngamma beta".getBytes(StandardCharsets.US_ASCII);
+        
+        Map<String, Object> result = search(content, null, "beta", false, null);
+        
+        assertThat(matches(result)).extracting(match -> match.get("lineNumber")).containsExactly(2L, 3L);
+        assertThat(matches(result)).extracting(match -> match.get("offset")).containsExactly(7L, 13L);
+        // Carriage returns are not part of the line
+        assertThat(matches(result).get(0)).containsEntry("line", "beta");
+        assertThat(result).containsEntry("complete", true).containsEntry("linesScanned", 3L)
+                .containsEntry("bytesScanned", (long) content.length);
+    }
+    
+    @Test
+    void searchStopsAtMaxMatches() throws IOException {
+        byte[] content = "x\nx\nx\n".getBytes(StandardCharsets.US_ASCII);
+        
+        Map<String, Object> result = search(content, null, "x", false, 2);
+        
+        assertThat(result).containsEntry("matchCount", 2).containsEntry("complete", false)
+                .containsEntry("bytesScanned", 4L);
+    }
+    
+    @Test
+    void utf8ByteOrderMarkCountsInOffsets() throws IOException {
+        byte[] content = encode("caf\u00e9\nth\u00e9", StandardCharsets.UTF_8, 0xEF, 0xBB, 0xBF);
+        
+        Map<String, Object> result = search(content, null, "th\u00e9", false, null);
+        
+        assertThat(result).containsEntry("charset", "UTF-8").doesNotContainKey("offsetsInUtf8");
+        assertThat(matches(result)).singleElement().satisfies(match -> assertThat(match)
+                .containsEntry("offset", 3L + 6)
+                .containsEntry("line", "th\u00e9"));
+    }
+    
+    @Test
+    void utf16IsSearchedAsText() throws IOException {
+        byte[] content = encode("caf\u00e9\nna\u00efve", StandardCharsets.UTF_16LE, 0xFF, 0xFE);
+        
+        Map<String, Object> result = search(content, null, "na\u00efve", false, null);
+        
+        assertThat(result).containsEntry("charset", "UTF-16LE").containsEntry("offsetsInUtf8", true);
+        assertThat(matches(result)).singleElement().satisfies(match -> assertThat(match)
+                .containsEntry("lineNumber", 2L)
+                .containsEntry("offset", 6L)
+                .containsEntry("line", "na\u00efve"));
+    }
+    
+    @Test
+    void latin1IsDecodedWithItsCharset() throws IOException {
+        byte[] content = "cr\u00e8me br\u00fbl\u00e9e".getBytes(StandardCharsets.ISO_8859_1);
+        
+        Map<String, Object> result = search(content, "text/plain; charset=ISO-8859-1", "br\u00fbl", false, null);
+        
+        assertThat(result).containsEntry("charset", "ISO-8859-1");
+        assertThat(matches(result)).singleElement().satisfies(match -> assertThat(match)
+                .containsEntry("line", "cr\u00e8me br\u00fbl")
+                .containsEntry("lineTruncated", true));
+    }
+    
+    @Test
+    void returnedLineIsNotTruncatedInsideASurrogatePair() throws IOException {
+        byte[] content = "123456789\uD83D\uDE00 end".getBytes(StandardCharsets.UTF_8);
+        
+        Map<String, Object> result = search(content, null, "end", false, null);
+        
+        assertThat(matches(result)).singleElement().satisfies(match -> assertThat(match)
+                .containsEntry("line", "123456789")
+                .containsEntry("lineTruncated", true));
+    }
+    
+    @Test
+    void regexIsCaseInsensitiveOnRequest() throws IOException {
+        byte[] content = "ERROR one\nwarn two\nerror three".getBytes(StandardCharsets.US_ASCII);
+        
+        Map<String, Object> result = searcher.search(new ByteArrayInputStream(content), null,
+                searcher.matcher("^error\\b", true, true), null);
+        
+        assertThat(matches(result)).extracting(match -> match.get("lineNumber")).containsExactly(1L, 3L);
+    }
+    
+    @Test
+    void catastrophicRegexFailsWithinItsTimeBudget() {
+        byte[] content = ("ok\n" + "a".repeat(24) + "b".repeat(40)).getBytes(StandardCharsets.US_ASCII);
+        
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> search(content, null, "(.*a){25}", true, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("on line 2");
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(5000);
+    }
+    
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThatThrownBy(() -> searcher.matcher("", false, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> searcher.matcher("(", true, false)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Invalid regex");
+        assertThatThrownBy(() -> search(new byte[0], null, "x", false, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
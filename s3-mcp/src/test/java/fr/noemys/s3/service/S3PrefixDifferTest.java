@@ -0,0 +1,194 @@
+package fr.noemys.s3.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the key order and of the merge-join of two listings
+ * 
+ * @version 1.0.0
+ */
+class S3PrefixDifferTest {
+    
+    // Sorts before the emoji in code point (UTF-8) order, after it in UTF-16 order
+    private static final String HALFWIDTH = "\uFF61";
+    private static final String EMOJI = "\uD83D\uDE00";
+    
+    private static final int PAGE_SIZE = 2;
+    
+    private S3PrefixDiffer differ;
+    
+    @BeforeEach
+    void setUp() {
+        differ = new S3PrefixDiffer(null, null);
+        ReflectionTestUtils.setField(differ, "maxReportedKeys", 1000);
+    }
+    
+    private static S3Object object(String key, long size, String eTag) {
+        return S3Object.builder()
+                .key(key)
+                .size(size)
+                .eTag(eTag)
+                .lastModified(Instant.EPOCH)
+                .build();
+    }
+    
+    /**
+     * Client listing the given objects, already in S3 order, PAGE_SIZE per page
+     */
+    private static S3Client bucket(S3Object... objects) {
+        S3Client s3Client = mock(S3Client.class);
+        when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenAnswer(invocation -> new ListObjectsV2Iterable(s3Client, invocation.getArgument(0)));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            List<S3Object> matching = new ArrayList<>();
+            for (S3Object s3Object : objects) {
+                if (s3Object.key().startsWith(request.prefix())) {
+                    matching.add(s3Object);
+                }
+            }
+            int from = request.continuationToken() != null ? Integer.parseInt(request.continuationToken()) : 0;
+            int to = Math.min(from + PAGE_SIZE, matching.size());
+            boolean truncated = to < matching.size();
+            return ListObjectsV2Response.builder()
+                    .contents(matching.subList(from, to))
+                    .isTruncated(truncated)
+                    .nextContinuationToken(truncated ? String.valueOf(to) : null)
+                    .build();
+        });
+        return s3Client;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<String> keys(Map<String, Object> result, String kind) {
+        return ((List<Map<String, Object>>) result.get(kind)).stream()
+                .map(entry -> (String) entry.get("key"))
+                .toList();
+    }
+    
+    @Test
+    void keysCompareInCodePointOrder() {
+        assertThat(S3PrefixDiffer.compareKeys("a", "b")).isNegative();
+        assertThat(S3PrefixDiffer.compareKeys("b", "a")).isPositive();
+        assertThat(S3PrefixDiffer.compareKeys("a", "ab")).isNegative();
+        assertThat(S3PrefixDiffer.compareKeys("ab", "a")).isPositive();
+        assertThat(S3PrefixDiffer.compareKeys("", "")).isZero();
+        assertThat(S3PrefixDiffer.compareKeys("x/" + EMOJI, "x/" + EMOJI)).isZero();
+        
+        assertThat(HALFWIDTH.compareTo(EMOJI)).isPositive();
+        assertThat(S3PrefixDiffer.compareKeys(HALFWIDTH, EMOJI)).isNegative();
+        assertThat(S3PrefixDiffer.compareKeys(EMOJI, HALFWIDTH)).isPositive();
+    }
+    
+    @Test
+    void mergeJoinClassifiesEveryKey() {
+        S3Client s3Client = bucket(
+                object("dst/b", 2, "\"e2\""),
+                object("dst/c", 5, "\"e3\""),
+                object("dst/d", 4, "\"e5-3\""),
+                object("dst/e", 6, "\"e6\""),
+                object("dst/f", 7, "\"e7\""),
+                object("src/a", 1, "\"e1\""),
+                object("src/b", 2, "\"e2\""),
+                object("src/c", 3, "\"e3\""),
+                object("src/d", 4, "\"e4-2\""),
+                object("src/f", 7, "\"e8\""));
+        
+        Map<String, Object> result = differ.diff(new S3PrefixDiffer.Side(s3Client, "bucket", "src/"),
+                new S3PrefixDiffer.Side(s3Client, "bucket", "dst/"), false, false, null);
+        
+        assertThat(keys(result, "added")).containsExactly("a");
+        assertThat(keys(result, "removed")).containsExactly("e");
+        assertThat(keys(result, "changed")).containsExactly("c", "f");
+        assertThat(result.get("addedBytes")).isEqualTo(1L);
+        assertThat(result.get("removedBytes")).isEqualTo(6L);
+        assertThat(result.get("changedCount")).isEqualTo(2L);
+        // b, and d whose multipart ETags of different part counts cannot be compared
+        assertThat(result.get("unchangedCount")).isEqualTo(2L);
+        assertThat(result.get("unverifiedCount")).isEqualTo(1L);
+        assertThat(result.get("identical")).isEqualTo(false);
+        assertThat(result).doesNotContainKey("sync");
+    }
+    
+    @Test
+    void mergeJoinFollowsTheListingOrderOfNonAsciiKeys() {
+        S3Client source = bucket(
+                object("p/" + HALFWIDTH, 1, "\"e1\""),
+                object("p/" + EMOJI, 2, "\"e2\""));
+        S3Client target = bucket(
+                object("p/" + HALFWIDTH, 1, "\"e1\""),
+                object("p/" + EMOJI, 2, "\"e2\""));
+        
+        Map<String, Object> result = differ.diff(new S3PrefixDiffer.Side(source, "a", "p/"),
+                new S3PrefixDiffer.Side(target, "b", "p/"), false, false, null);
+        
+        assertThat(result.get("identical")).isEqualTo(true);
+        assertThat(result.get("unchangedCount")).isEqualTo(2L);
+    }
+    
+    @Test
+    void objectsListedWithoutSizeOrDateAreReported() {
+        S3Client source = bucket(S3Object.builder().key("p/a").eTag("\"e1\"").build());
+        S3Client target = bucket(S3Object.builder().key("p/b").eTag("\"e2\"").build());
+        
+        Map<String, Object> result = differ.diff(new S3PrefixDiffer.Side(source, "a", "p/"),
+                new S3PrefixDiffer.Side(target, "b", "p/"), false, false, null);
+        
+        assertThat(keys(result, "added")).containsExactly("a");
+        assertThat(keys(result, "removed")).containsExactly("b");
+        assertThat(result.get("addedBytes")).isEqualTo(0L);
+        assertThat(result.get("removedBytes")).isEqualTo(0L);
+    }
+    
+    @Test
+    void emptySidesAreIdentical() {
+        S3Client s3Client = bucket();
+        
+        Map<String, Object> result = differ.diff(new S3PrefixDiffer.Side(s3Client, "bucket", "src/"),
+                new S3PrefixDiffer.Side(s3Client, "bucket", "dst/"), false, false, null);
+        
+        assertThat(result.get("identical")).isEqualTo(true);
+        assertThat(result.get("unchangedCount")).isEqualTo(0L);
+    }
+    
+    @Test
+    void listingFailureFailsTheDiff() {
+        S3Client source = bucket(object("p/a", 1, "\"e1\""));
+        S3Client target = mock(S3Client.class);
+        when(target.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenThrow(S3Exception.builder().message("Access Denied").statusCode(403).build());
+        
+        assertThatThrownBy(() -> differ.diff(new S3PrefixDiffer.Side(source, "a", "p/"),
+                new S3PrefixDiffer.Side(target, "b", "p/"), false, false, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Failed to list b/p/");
+    }
+    
+    @Test
+    void invalidConcurrencyIsRejected() {
+        S3Client s3Client = bucket();
+        
+        assertThatThrownBy(() -> differ.diff(new S3PrefixDiffer.Side(s3Client, "bucket", "src/"),
+                new S3PrefixDiffer.Side(s3Client, "bucket", "dst/"), true, false, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,262 @@
+package fr.noemys.s3.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of parallel ranged downloads: reassembly, shared buffer budget and adaptive part size
+ * 
+ * @version 1.0.0
+ */
+class S3RangedDownloaderTest {
+    
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d+)-(\\d+)$");
+    
+    private S3RangedDownloader downloader;
+    private byte[] content;
+    
+    // Range of every GET, in request order
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    // Buffered parts waiting to be answered while defer is set
+    private final List<Runnable> pending = new ArrayList<>();
+    private boolean defer;
+    // Whether a deferred part only starts (is timed) when answered, as when queued for a connection
+    private boolean queued;
+    private long partDelayMillis;
+    
+    @BeforeEach
+    void setUp() {
+        downloader = new S3RangedDownloader();
+        ReflectionTestUtils.setField(downloader, "enabled", true);
+        ReflectionTestUtils.setField(downloader, "concurrency", 3);
+        ReflectionTestUtils.setField(downloader, "initialPartSize", 10L);
+        ReflectionTestUtils.setField(downloader, "minPartSize", 10L);
+        ReflectionTestUtils.setField(downloader, "maxPartSize", 10L);
+        ReflectionTestUtils.setField(downloader, "targetPartMillis", 1000L);
+        ReflectionTestUtils.setField(downloader, "maxBufferedBytes", 1000L);
+        content = new byte[100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+    }
+    
+    /**
+     * Client serving content. Parts fetched ahead are buffered by the downloader's own transformer
+     * and can be held back with defer; first ranges and ranges read as streams are answered at once.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private S3AsyncClient client() {
+        S3AsyncClient s3Client = mock(S3AsyncClient.class);
+        when(s3Client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            AsyncResponseTransformer transformer = invocation.getArgument(1);
+            ranges.add(request.range());
+            
+            Matcher range = RANGE.matcher(request.range());
+            assertThat(range.matches()).isTrue();
+            int start = Integer.parseInt(range.group(1));
+            int end = Math.min(Integer.parseInt(range.group(2)), content.length - 1);
+            GetObjectResponse response = GetObjectResponse.builder()
+                    .eTag("\"v1\"")
+                    .contentRange("bytes " + start + "-" + end + "/" + content.length)
+                    .contentLength((long) end - start + 1)
+                    .build();
+            byte[] body = Arrays.copyOfRange(content, start, end + 1);
+            Runnable answer = () -> {
+                transformer.onResponse(response);
+                transformer.onStream(AsyncRequestBody.fromBytes(body));
+            };
+            
+            boolean buffered = transformer.getClass().getSimpleName().equals("TimedBytes");
+            if (buffered && defer && queued) {
+                CompletableFuture<Object> result = new CompletableFuture<>();
+                pending.add(() -> {
+                    transformer.prepare().whenComplete((value, error) -> result.complete(value));
+                    answer.run();
+                });
+                return result;
+            }
+            CompletableFuture<?> result = transformer.prepare();
+            if (buffered && defer) {
+                pending.add(answer);
+            } else {
+                if (buffered && partDelayMillis > 0) {
+                    Thread.sleep(partDelayMillis);
+                }
+                answer.run();
+            }
+            return result;
+        });
+        return s3Client;
+    }
+    
+    private ResponseInputStream<GetObjectResponse> open(S3AsyncClient s3Client) {
+        return downloader.open(s3Client, "bucket", "large.bin").join();
+    }
+    
+    private long bufferedBytes() {
+        return ((AtomicLong) ReflectionTestUtils.getField(downloader, "bufferedBytes")).get();
+    }
+    
+    /**
+     * Length of every requested range
+     */
+    private List<Integer> rangeLengths() {
+        List<Integer> lengths = new ArrayList<>();
+        for (String range : ranges) {
+            Matcher matcher = RANGE.matcher(range);
+            matcher.matches();
+            lengths.add((int) (Math.min(Long.parseLong(matcher.group(2)), content.length - 1)
+                    - Long.parseLong(matcher.group(1)) + 1));
+        }
+        return lengths;
+    }
+    
+    private void answerPending(boolean reversed) {
+        List<Runnable> answers = new ArrayList<>(pending);
+        pending.clear();
+        defer = false;
+        if (reversed) {
+            Collections.reverse(answers);
+        }
+        answers.forEach(Runnable::run);
+    }
+    
+    @Test
+    void smallObjectIsReadFromTheFirstRange() throws IOException {
+        content = Arrays.copyOf(content, 8);
+        
+        try (ResponseInputStream<GetObjectResponse> stream = open(client())) {
+            assertThat(stream.readAllBytes()).isEqualTo(content);
+            assertThat(stream.response().contentRange()).isEqualTo("bytes 0-7/8");
+        }
+        assertThat(ranges).containsExactly("bytes=0-9");
+    }
+    
+    @Test
+    void rangesCompletingOutOfOrderAreReassembledInOrder() throws IOException {
+        defer = true;
+        
+        try (ResponseInputStream<GetObjectResponse> stream = open(client())) {
+            assertThat(stream.response().contentLength()).isEqualTo(content.length);
+            assertThat(stream.response().contentRange()).isNull();
+            assertThat(ranges).containsExactly("bytes=0-9", "bytes=10-19", "bytes=20-29", "bytes=30-39");
+            
+            answerPending(true);
+            
+            assertThat(stream.readAllBytes()).isEqualTo(content);
+        }
+        assertThat(bufferedBytes()).isZero();
+    }
+    
+    @Test
+    void downloadsShareTheBufferedBytesBudget() throws IOException {
+        ReflectionTestUtils.setField(downloader, "maxBufferedBytes", 20L);
+        defer = true;
+        S3AsyncClient s3Client = client();
+        
+        try (ResponseInputStream<GetObjectResponse> first = open(s3Client)) {
+            // Two parts fit in the budget, not three
+            assertThat(ranges).containsExactly("bytes=0-9", "bytes=10-19", "bytes=20-29");
+            assertThat(bufferedBytes()).isEqualTo(20);
+            
+            try (ResponseInputStream<GetObjectResponse> second = open(s3Client)) {
+                // Budget spent: the second download buffers nothing ahead, its ranges are streamed
+                assertThat(ranges).hasSize(4);
+                assertThat(second.readAllBytes()).isEqualTo(content);
+                assertThat(bufferedBytes()).isEqualTo(20);
+            }
+            
+            answerPending(false);
+            assertThat(first.readAllBytes()).isEqualTo(content);
+        }
+        assertThat(bufferedBytes()).isZero();
+    }
+    
+    @Test
+    void closingBeforeTheEndReleasesTheBudget() throws IOException {
+        defer = true;
+        
+        try (ResponseInputStream<GetObjectResponse> stream = open(client())) {
+            assertThat(bufferedBytes()).isEqualTo(30);
+            answerPending(false);
+            assertThat(stream.readNBytes(15)).isEqualTo(Arrays.copyOf(content, 15));
+        }
+        
+        assertThat(bufferedBytes()).isZero();
+    }
+    
+    @Test
+    void partSizeDoublesWhilePartsAreFast() throws IOException {
+        ReflectionTestUtils.setField(downloader, "concurrency", 1);
+        ReflectionTestUtils.setField(downloader, "initialPartSize", 4L);
+        ReflectionTestUtils.setField(downloader, "minPartSize", 4L);
+        ReflectionTestUtils.setField(downloader, "maxPartSize", 16L);
+        
+        try (ResponseInputStream<GetObjectResponse> stream = open(client())) {
+            assertThat(stream.readAllBytes()).isEqualTo(content);
+        }
+        
+        assertThat(rangeLengths()).startsWith(4, 4, 8, 16, 16);
+    }
+    
+    @Test
+    void partSizeHalvesWhenPartsAreSlow() throws IOException {
+        ReflectionTestUtils.setField(downloader, "concurrency", 1);
+        ReflectionTestUtils.setField(downloader, "initialPartSize", 16L);
+        ReflectionTestUtils.setField(downloader, "minPartSize", 4L);
+        ReflectionTestUtils.setField(downloader, "maxPartSize", 16L);
+        ReflectionTestUtils.setField(downloader, "targetPartMillis", 10L);
+        content = Arrays.copyOf(content, 48);
+        partDelayMillis = 50;
+        
+        try (ResponseInputStream<GetObjectResponse> stream = open(client())) {
+            assertThat(stream.readAllBytes()).isEqualTo(content);
+        }
+        
+        assertThat(rangeLengths()).startsWith(16, 16, 8, 4, 4);
+    }
+    
+    @Test
+    void partsQueuedForAConnectionAreTimedFromTheirStart() throws IOException, InterruptedException {
+        ReflectionTestUtils.setField(downloader, "concurrency", 2);
+        ReflectionTestUtils.setField(downloader, "initialPartSize", 4L);
+        ReflectionTestUtils.setField(downloader, "minPartSize", 2L);
+        ReflectionTestUtils.setField(downloader, "maxPartSize", 16L);
+        ReflectionTestUtils.setField(downloader, "targetPartMillis", 100L);
+        defer = true;
+        queued = true;
+        
+        try (ResponseInputStream<GetObjectResponse> stream = open(client())) {
+            // Longer than twice the target, but spent waiting for a connection
+            Thread.sleep(300);
+            answerPending(false);
+            assertThat(stream.readAllBytes()).isEqualTo(content);
+        }
+        
+        // Timed from scheduling, the parts would look slow and the next one would be halved to 2 bytes
+        assertThat(rangeLengths()).startsWith(4, 4, 4, 8);
+    }
+}
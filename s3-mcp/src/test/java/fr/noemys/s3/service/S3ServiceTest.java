@@ -0,0 +1,365 @@
+package fr.noemys.s3.service;
+
+import fr.noemys.s3.service.cache.ListingCache;
+import fr.noemys.s3.service.cache.S3ClientCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the static helpers of the S3 service
+ * 
+ * @version 1.0.0
+ */
+class S3ServiceTest {
+    
+    private static final byte[] OBJECT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    
+    private static final int PAGE_SIZE = 2;
+    
+    // Three shards below the root, and an object at the root found while discovering them
+    private static final List<String> KEYS = List.of("a/1", "a/2", "a/3", "b/1", "b/2", "c/1", "c/2", "c/3", "c/4", "top");
+    
+    /**
+     * Service leasing the given client, reading at most 8 bytes per range
+     */
+    static S3Service service(S3Client s3Client) {
+        return service(s3Client, null, null);
+    }
+    
+    private static S3Service service(S3Client s3Client, S3ParallelLister parallelLister, ListingCache listingCache) {
+        S3ClientCache.Lease lease = mock(S3ClientCache.Lease.class);
+        when(lease.client()).thenReturn(s3Client);
+        S3ClientCache clientCache = mock(S3ClientCache.class);
+        when(clientCache.acquire(any(), any(), any())).thenReturn(lease);
+        S3Service service = new S3Service(clientCache, parallelLister, listingCache, null, null, null, null, null,
+                null, null, null, null, null, null);
+        ReflectionTestUtils.setField(service, "rangeMaxLength", 8L);
+        ReflectionTestUtils.setField(service, "parallelListMaxKeys", 1000);
+        return service;
+    }
+    
+    /**
+     * Client listing KEYS: one level per page with a delimiter, PAGE_SIZE objects per page without
+     */
+    private static S3Client bucket() {
+        S3Client s3Client = mock(S3Client.class);
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            List<S3Object> contents = new ArrayList<>();
+            Set<String> commonPrefixes = new LinkedHashSet<>();
+            for (String key : KEYS) {
+                if (!key.startsWith(request.prefix())) {
+                    continue;
+                }
+                int separator = request.delimiter() != null ? key.indexOf('/', request.prefix().length()) : -1;
+                if (separator >= 0) {
+                    commonPrefixes.add(key.substring(0, separator + 1));
+                } else {
+                    contents.add(S3Object.builder().key(key).size(1L).lastModified(Instant.EPOCH).build());
+                }
+            }
+            if (request.delimiter() != null) {
+                return ListObjectsV2Response.builder()
+                        .contents(contents)
+                        .commonPrefixes(commonPrefixes.stream()
+                                .map(prefix -> CommonPrefix.builder().prefix(prefix).build())
+                                .toList())
+                        .isTruncated(false)
+                        .build();
+            }
+            int from = request.continuationToken() != null ? Integer.parseInt(request.continuationToken()) : 0;
+            int to = Math.min(from + PAGE_SIZE, contents.size());
+            boolean truncated = to < contents.size();
+            return ListObjectsV2Response.builder()
+                    .contents(contents.subList(from, to))
+                    .isTruncated(truncated)
+                    .nextContinuationToken(truncated ? String.valueOf(to) : null)
+                    .build();
+        });
+        return s3Client;
+    }
+    
+    private static Map<String, Object> listParallel(Integer maxKeys, boolean ordered) {
+        S3ParallelLister parallelLister = new S3ParallelLister();
+        ReflectionTestUtils.setField(parallelLister, "defaultParallelism", 4);
+        ReflectionTestUtils.setField(parallelLister, "maxParallelismPerEndpoint", 4);
+        // Discover the shards of the root only, so each shard is listed page by page
+        ReflectionTestUtils.setField(parallelLister, "discoveryDepth", 1);
+        ListingCache listingCache = new ListingCache();
+        ReflectionTestUtils.setField(listingCache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(listingCache, "maxEntries", 100);
+        ReflectionTestUtils.setField(listingCache, "maxObjectsPerEntry", 1000);
+        listingCache.init();
+        
+        return service(bucket(), parallelLister, listingCache).listObjectsParallel("https://s3.example.com", "token",
+                "secret", "bucket", null, null, maxKeys, ordered);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<String> keys(Map<String, Object> result) {
+        return ((List<Map<String, Object>>) result.get("objects")).stream()
+                .map(object -> (String) object.get("key"))
+                .toList();
+    }
+    
+    /**
+     * Client answering every GET with the given response and body, recording whether the body was aborted
+     */
+    private static S3Client getting(GetObjectResponse response, byte[] body, AtomicBoolean aborted) {
+        S3Client s3Client = mock(S3Client.class);
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(
+                response, AbortableInputStream.create(new ByteArrayInputStream(body), () -> aborted.set(true))));
+        return s3Client;
+    }
+    
+    private static Map<String, Object> readRange(S3Client s3Client, Long offset, Long length, String range) {
+        return service(s3Client).readObjectRange("https://s3.example.com", "token", "secret", "bucket", "key",
+                offset, length, range);
+    }
+    
+    @Test
+    void cursorRoundTripsContinuationToken() {
+        String token = "1ueGcxLPRx1Tr/XYExHnhbYLgveDs2J/wm36Hy4vbOwM=";
+        
+        String cursor = S3Service.encodeCursor(token);
+        
+        assertThat(cursor).isNotEqualTo(token);
+        assertThat(S3Service.decodeCursor(cursor)).isEqualTo(token);
+    }
+    
+    @Test
+    void cursorIsUrlSafe() {
+        // Bytes encoded as '+' and '/' by the standard alphabet, with padding
+        String token = "~~~???>>";
+        
+        String cursor = S3Service.encodeCursor(token);
+        
+        assertThat(cursor).doesNotContain("+", "/", "=");
+        assertThat(S3Service.decodeCursor(cursor)).isEqualTo(token);
+    }
+    
+    @Test
+    void cursorKeepsNonAsciiTokens() {
+        String token = "logs/caf\u00e9/\uD83D\uDE00";
+        
+        assertThat(S3Service.decodeCursor(S3Service.encodeCursor(token))).isEqualTo(token);
+    }
+    
+    @Test
+    void noTokenMeansNoCursor() {
+        assertThat(S3Service.encodeCursor(null)).isNull();
+    }
+    
+    @Test
+    void invalidCursorIsRejected() {
+        assertThatThrownBy(() -> S3Service.decodeCursor("not a cursor!"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor: not a cursor!");
+        // Standard alphabet characters are not part of the cursor alphabet
+        assertThatThrownBy(() -> S3Service.decodeCursor("ab+/"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static String text(byte[] content, long offset, String contentType) {
+        S3Service.RangeText range = S3Service.rangeText(content, offset, contentType);
+        return new String(content, range.from(), range.to() - range.from(), range.charset());
+    }
+    
+    @Test
+    void rangeTextOfAsciiIsTheWholeRange() {
+        byte[] content = "hello world".getBytes(StandardCharsets.US_ASCII);
+        
+        S3Service.RangeText range = S3Service.rangeText(content, 100, null);
+        
+        assertThat(range.charset()).isEqualTo(StandardCharsets.UTF_8);
+        assertThat(range.from()).isZero();
+        assertThat(range.to()).isEqualTo(content.length);
+    }
+    
+    @Test
+    void rangeTextLeavesOutUtf8CharactersCutByTheRange() {
+        byte[] object = "a\u20acb\u20ac".getBytes(StandardCharsets.UTF_8);
+        
+        // Starts on the second byte of the first euro sign, ends on the second byte of the last one
+        byte[] content = Arrays.copyOfRange(object, 2, object.length - 1);
+        
+        assertThat(text(content, 2, null)).isEqualTo("b");
+        assertThat(text(Arrays.copyOf(object, 3), 0, null)).isEqualTo("a");
+    }
+    
+    @Test
+    void rangeTextAlignsUtf16OnCodeUnits() {
+        byte[] object = "abc".getBytes(StandardCharsets.UTF_16BE);
+        
+        // Starts on the second byte of "a" and ends on the first byte of "d"
+        byte[] content = Arrays.copyOfRange(object, 1, object.length);
+        
+        assertThat(text(content, 1, "text/plain; charset=UTF-16BE")).isEqualTo("bc");
+    }
+    
+    @Test
+    void rangeTextSkipsTheByteOrderMarkAndACutSurrogatePair() {
+        byte[] object = "\uFEFFab\uD83D\uDE00".getBytes(StandardCharsets.UTF_16LE);
+        
+        // Ends between the two halves of the emoji
+        byte[] content = Arrays.copyOf(object, object.length - 2);
+        
+        assertThat(text(content, 0, null)).isEqualTo("ab");
+    }
+    
+    @Test
+    void binaryRangeHasNoText() {
+        assertThat(S3Service.rangeText(new byte[] {'P', 'K', 3, 4, 0, 0, 1}, 0, null)).isNull();
+        assertThat(S3Service.rangeText("plain".getBytes(StandardCharsets.US_ASCII), 0, "image/png")).isNull();
+    }
+    
+    @Test
+    void rangeIsReadFromTheContentRange() {
+        AtomicBoolean aborted = new AtomicBoolean();
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentRange("bytes 2-5/10")
+                .contentLength(4L)
+                .build();
+        
+        Map<String, Object> result = readRange(getting(response, Arrays.copyOfRange(OBJECT, 2, 6), aborted),
+                2L, 4L, null);
+        
+        assertThat(result).containsEntry("range", "bytes=2-5").containsEntry("content", "2345")
+                .containsEntry("offset", 2L).containsEntry("totalSize", 10L)
+                .containsEntry("hasMore", true).containsEntry("nextOffset", 6L);
+        assertThat(aborted).isFalse();
+    }
+    
+    @Test
+    void ignoredRangeReadsOnlyTheRequestedLength() {
+        AtomicBoolean aborted = new AtomicBoolean();
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentLength((long) OBJECT.length)
+                .build();
+        
+        Map<String, Object> result = readRange(getting(response, OBJECT, aborted), null, 4L, null);
+        
+        assertThat(result).containsEntry("length", 4).containsEntry("content", "0123")
+                .containsEntry("offset", 0L).containsEntry("totalSize", 10L)
+                .containsEntry("hasMore", true).containsEntry("nextOffset", 4L);
+        // The rest of the body is not drained
+        assertThat(aborted).isTrue();
+    }
+    
+    @Test
+    void ignoredRangeIsCappedAtTheMaxLength() {
+        AtomicBoolean aborted = new AtomicBoolean();
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentLength((long) OBJECT.length)
+                .build();
+        
+        Map<String, Object> result = readRange(getting(response, OBJECT, aborted), null, null, "bytes=-100");
+        
+        assertThat(result).containsEntry("range", "bytes=-8").containsEntry("length", 8)
+                .containsEntry("hasMore", true);
+        assertThat(aborted).isTrue();
+    }
+    
+    @Test
+    void wholeSmallObjectHasNoMore() {
+        AtomicBoolean aborted = new AtomicBoolean();
+        byte[] object = Arrays.copyOf(OBJECT, 3);
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentLength((long) object.length)
+                .build();
+        
+        Map<String, Object> result = readRange(getting(response, object, aborted), null, 4L, null);
+        
+        assertThat(result).containsEntry("content", "012").containsEntry("hasMore", false)
+                .doesNotContainKey("nextOffset");
+        assertThat(aborted).isFalse();
+    }
+    
+    @Test
+    void parallelListingOfEveryShardIsInKeyOrder() {
+        Map<String, Object> result = listParallel(null, true);
+        
+        assertThat(keys(result)).isEqualTo(KEYS);
+        assertThat(result).containsEntry("count", KEYS.size()).containsEntry("isTruncated", false)
+                .containsEntry("shards", 3);
+    }
+    
+    @Test
+    void orderedParallelListingKeepsTheSmallestKeys() {
+        Map<String, Object> result = listParallel(4, true);
+        
+        // Whatever the order the shards were listed in
+        assertThat(keys(result)).containsExactly("a/1", "a/2", "a/3", "b/1");
+        assertThat(result).containsEntry("isTruncated", true);
+    }
+    
+    @Test
+    void orderedParallelListingIsNotTruncatedAtExactlyMaxKeys() {
+        Map<String, Object> result = listParallel(KEYS.size(), true);
+        
+        assertThat(keys(result)).isEqualTo(KEYS);
+        assertThat(result).containsEntry("isTruncated", false);
+    }
+    
+    @Test
+    void unorderedParallelListingStopsAtMaxKeys() {
+        Map<String, Object> result = listParallel(4, false);
+        
+        assertThat(keys(result)).hasSize(4).isSubsetOf(KEYS).doesNotHaveDuplicates();
+        assertThat(result).containsEntry("isTruncated", true).containsEntry("ordered", false);
+    }
+    
+    @Test
+    void diffWithoutEndpointIsRejected() {
+        S3Service service = service(mock(S3Client.class));
+        
+        assertThatThrownBy(() -> service.diffPrefixes(null, "token", "secret", "bucket", "src/", null, null, null,
+                null, "dst/", false, false, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("endpoint is required");
+        assertThatThrownBy(() -> service.diffPrefixes("https://s3.example.com", "token", "secret", null, "src/",
+                null, null, null, "bucket", "dst/", false, false, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("bucketName is required");
+    }
+    
+    @Test
+    void copyNamesTheMissingArgument() {
+        S3Service service = service(mock(S3Client.class));
+        
+        assertThatThrownBy(() -> service.copyObject("https://s3.example.com", "token", "secret", null, "a", "bucket", "b"))
+                .hasMessage("sourceBucketName is required");
+        assertThatThrownBy(() -> service.copyObject("https://s3.example.com", "token", "secret", "bucket", "a", null, "b"))
+                .hasMessage("destinationBucketName is required");
+        assertThatThrownBy(() -> service.copyObject("https://s3.example.com", "token", "secret", "bucket", "", "bucket", "b"))
+                .hasMessage("sourceKey is required");
+        assertThatThrownBy(() -> service.copyObject("https://s3.example.com", "token", "secret", "bucket", "a", "bucket", null))
+                .hasMessage("destinationKey is required");
+    }
+}
@@ -0,0 +1,146 @@
+package fr.noemys.s3.service.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of content caching: revalidation hits and storing only fully read objects
+ * 
+ * @version 1.0.0
+ */
+class ContentCacheTest {
+    
+    private static final byte[] CONTENT = "compressed bytes".getBytes(StandardCharsets.US_ASCII);
+    
+    @TempDir
+    Path directory;
+    
+    private ContentCache cache;
+    private ContentCache.ContentKey key;
+    
+    // If-None-Match of every fetch, null when unconditional
+    private final List<String> fetches = new ArrayList<>();
+    private String currentETag = "\"v1\"";
+    
+    @BeforeEach
+    void setUp() {
+        cache = new ContentCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directoryName", directory.toString());
+        ReflectionTestUtils.setField(cache, "maxSizeBytes", 1024L);
+        ReflectionTestUtils.setField(cache, "maxObjectSize", 1024L);
+        cache.init();
+        key = cache.key("https://s3.example.com", "bucket", "logs/app.log.gz");
+    }
+    
+    /**
+     * GET of the current object version, answering 304 when the given ETag still matches
+     */
+    private CompletableFuture<ResponseInputStream<GetObjectResponse>> fetch(String ifNoneMatch) {
+        fetches.add(ifNoneMatch);
+        if (currentETag.equals(ifNoneMatch)) {
+            return CompletableFuture.failedFuture(S3Exception.builder().statusCode(304).build());
+        }
+        GetObjectResponse response = GetObjectResponse.builder()
+                .eTag(currentETag)
+                .contentLength((long) CONTENT.length)
+                .contentType("text/plain")
+                .contentEncoding("gzip")
+                .build();
+        return CompletableFuture.completedFuture(new ResponseInputStream<>(response,
+                AbortableInputStream.create(new ByteArrayInputStream(CONTENT))));
+    }
+    
+    private ResponseInputStream<GetObjectResponse> open() {
+        return cache.open(key, this::fetch).join();
+    }
+    
+    @Test
+    void notModifiedObjectIsServedFromTheCacheWithItsHeaders() throws IOException {
+        try (ResponseInputStream<GetObjectResponse> miss = open()) {
+            assertThat(miss.readAllBytes()).isEqualTo(CONTENT);
+        }
+        
+        try (ResponseInputStream<GetObjectResponse> hit = open()) {
+            assertThat(hit.readAllBytes()).isEqualTo(CONTENT);
+            assertThat(hit.response().eTag()).isEqualTo("\"v1\"");
+            assertThat(hit.response().contentLength()).isEqualTo(CONTENT.length);
+            assertThat(hit.response().contentType()).isEqualTo("text/plain");
+            // Cached bytes are still compressed: the encoding must come with them
+            assertThat(hit.response().contentEncoding()).isEqualTo("gzip");
+        }
+        assertThat(fetches).containsExactly(null, "\"v1\"");
+        assertThat(cache.getStats()).containsEntry("hits", 1L).containsEntry("stores", 1L);
+    }
+    
+    @Test
+    void changedObjectIsStoredAgain() throws IOException {
+        try (ResponseInputStream<GetObjectResponse> miss = open()) {
+            miss.readAllBytes();
+        }
+        currentETag = "\"v2\"";
+        
+        try (ResponseInputStream<GetObjectResponse> changed = open()) {
+            assertThat(changed.response().eTag()).isEqualTo("\"v2\"");
+            changed.readAllBytes();
+        }
+        open().close();
+        
+        assertThat(fetches).containsExactly(null, "\"v1\"", "\"v2\"");
+        assertThat(cache.getStats()).containsEntry("size", 1).containsEntry("sizeBytes", (long) CONTENT.length)
+                .containsEntry("stores", 2L).containsEntry("hits", 1L);
+    }
+    
+    @Test
+    void partiallyReadObjectIsNotStored() throws IOException {
+        try (ResponseInputStream<GetObjectResponse> partial = open()) {
+            assertThat(partial.readNBytes(4)).hasSize(4);
+        }
+        
+        open().close();
+        
+        // Nothing to revalidate: the second GET is unconditional
+        assertThat(fetches).containsExactly(null, null);
+        assertThat(cache.getStats()).containsEntry("size", 0).containsEntry("stores", 0L);
+        assertThat(directory).isEmptyDirectory();
+    }
+    
+    @Test
+    void abortedObjectIsNotStored() throws IOException {
+        try (ResponseInputStream<GetObjectResponse> aborted = open()) {
+            aborted.readNBytes(4);
+            aborted.abort();
+        }
+        
+        assertThat(cache.getStats()).containsEntry("size", 0).containsEntry("stores", 0L);
+        assertThat(directory).isEmptyDirectory();
+    }
+    
+    @Test
+    void objectsLargerThanTheMaxObjectSizeAreNotStored() throws IOException {
+        ReflectionTestUtils.setField(cache, "maxObjectSize", (long) CONTENT.length - 1);
+        
+        try (ResponseInputStream<GetObjectResponse> large = open()) {
+            assertThat(large.readAllBytes()).isEqualTo(CONTENT);
+        }
+        
+        assertThat(cache.getStats()).containsEntry("size", 0);
+        assertThat(directory).isEmptyDirectory();
+    }
+}
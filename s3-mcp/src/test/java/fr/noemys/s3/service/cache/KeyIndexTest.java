@@ -0,0 +1,133 @@
+package fr.noemys.s3.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the sorted key index: build, prefix ranges and splices
+ * 
+ * @version 1.0.0
+ */
+class KeyIndexTest {
+    
+    private static KeyIndex index(String... keys) {
+        List<KeyIndex.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            entries.add(new KeyIndex.Entry(keys[i], i + 1, 1000L * (i + 1)));
+        }
+        return KeyIndex.of(entries);
+    }
+    
+    private static List<String> keys(KeyIndex index) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            keys.add(index.key(i));
+        }
+        return keys;
+    }
+    
+    @Test
+    void buildSortsKeysAndKeepsTheirAttributes() {
+        KeyIndex index = KeyIndex.of(List.of(
+                new KeyIndex.Entry("b/2", 20, 2000),
+                new KeyIndex.Entry("a", 10, 1000),
+                new KeyIndex.Entry("b/1", 30, 3000)));
+        
+        assertThat(keys(index)).containsExactly("a", "b/1", "b/2");
+        assertThat(index.size(1)).isEqualTo(30);
+        assertThat(index.lastModified(1)).isEqualTo(3000);
+        assertThat(index.totalSize(0, index.size())).isEqualTo(60);
+        assertThat(index.memoryBytes()).isPositive();
+    }
+    
+    @Test
+    void duplicateKeysAreKeptOnceWithTheLastListedAttributes() {
+        KeyIndex index = KeyIndex.of(List.of(
+                new KeyIndex.Entry("a", 1, 1),
+                new KeyIndex.Entry("b", 2, 2),
+                new KeyIndex.Entry("a", 3, 3)));
+        
+        assertThat(keys(index)).containsExactly("a", "b");
+        assertThat(index.size(0)).isEqualTo(3);
+        assertThat(index.totalSize(0, 2)).isEqualTo(5);
+    }
+    
+    @Test
+    void builderGrowsPastItsInitialCapacity() {
+        KeyIndex.Builder builder = new KeyIndex.Builder();
+        for (int i = 4999; i >= 0; i--) {
+            builder.add(String.format("k%05d", i), 1, 0);
+        }
+        
+        assertThat(builder.size()).isEqualTo(5000);
+        KeyIndex index = builder.build();
+        assertThat(index.size()).isEqualTo(5000);
+        assertThat(index.key(0)).isEqualTo("k00000");
+        assertThat(index.key(4999)).isEqualTo("k04999");
+        assertThat(index.memoryBytes()).isEqualTo(builder.memoryBytes());
+    }
+    
+    @Test
+    void boundsDelimitTheKeysOfAPrefix() {
+        KeyIndex index = index("a", "b/1", "b/2", "b/3", "ba", "c");
+        
+        int from = index.lowerBound("b/");
+        int to = index.upperBound("b/", from);
+        
+        assertThat(from).isEqualTo(1);
+        assertThat(to).isEqualTo(4);
+        // Sizes are 1 to 6 in key order
+        assertThat(index.totalSize(from, to)).isEqualTo(2 + 3 + 4);
+        assertThat(index.upperBound("", index.lowerBound(""))).isEqualTo(6);
+    }
+    
+    @Test
+    void boundsOfAMissingPrefixAreEmpty() {
+        KeyIndex index = index("a", "c");
+        
+        int from = index.lowerBound("b");
+        assertThat(from).isEqualTo(1);
+        assertThat(index.upperBound("b", from)).isEqualTo(from);
+        
+        int after = index.lowerBound("z");
+        assertThat(after).isEqualTo(2);
+        assertThat(index.upperBound("z", after)).isEqualTo(after);
+        assertThat(KeyIndex.of(List.of()).lowerBound("a")).isZero();
+    }
+    
+    @Test
+    void spliceReplacesOnlyTheKeysOfThePrefix() {
+        KeyIndex index = index("a", "b/1", "b/2", "c");
+        
+        KeyIndex spliced = index.splice("b/", List.of(
+                new KeyIndex.Entry("b/3", 30, 3),
+                new KeyIndex.Entry("b/0", 10, 1)));
+        
+        assertThat(keys(spliced)).containsExactly("a", "b/0", "b/3", "c");
+        assertThat(spliced.size(1)).isEqualTo(10);
+        assertThat(spliced.totalSize(0, spliced.size())).isEqualTo(1 + 10 + 30 + 4);
+        // The original snapshot is unchanged
+        assertThat(keys(index)).containsExactly("a", "b/1", "b/2", "c");
+    }
+    
+    @Test
+    void spliceWithNoEntriesRemovesThePrefix() {
+        KeyIndex spliced = index("a", "b/1", "b/2", "c").splice("b/", List.of());
+        
+        assertThat(keys(spliced)).containsExactly("a", "c");
+        assertThat(spliced.totalSize(0, spliced.size())).isEqualTo(1 + 4);
+    }
+    
+    @Test
+    void spliceOfANewPrefixInsertsInOrder() {
+        KeyIndex spliced = index("a", "c").splice("b/", List.of(new KeyIndex.Entry("b/1", 5, 5)));
+        
+        assertThat(keys(spliced)).containsExactly("a", "b/1", "c");
+        assertThat(spliced.lowerBound("b/")).isEqualTo(1);
+        assertThat(spliced.upperBound("b/", 1)).isEqualTo(2);
+    }
+}
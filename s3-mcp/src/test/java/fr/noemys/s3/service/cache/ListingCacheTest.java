@@ -0,0 +1,121 @@
+package fr.noemys.s3.service.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of listing caching and invalidation on writes
+ * 
+ * @version 1.0.0
+ */
+class ListingCacheTest {
+    
+    private static final String ENDPOINT = "https://s3.example.com";
+    
+    private ListingCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        cache = new ListingCache();
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "maxObjectsPerEntry", 10);
+        cache.init();
+    }
+    
+    private ListingCache.ListingKey key(String bucketName, String prefix) {
+        return cache.key(ENDPOINT, "token", "secret", bucketName, prefix, null, 1000);
+    }
+    
+    private static Map<String, Object> listing(int count) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("count", count);
+        return result;
+    }
+    
+    private ListingCache.ListingKey cached(String bucketName, String prefix) {
+        ListingCache.ListingKey key = key(bucketName, prefix);
+        cache.put(key, listing(1));
+        return key;
+    }
+    
+    @Test
+    void cachedListingIsMarkedAsCached() {
+        ListingCache.ListingKey key = key("bucket", "logs/");
+        
+        Map<String, Object> fresh = cache.put(key, listing(1));
+        Map<String, Object> hit = cache.get(key);
+        
+        assertThat(fresh).containsEntry("cached", false);
+        assertThat(hit).containsEntry("cached", true).containsEntry("count", 1).containsKey("cacheAgeMs");
+        assertThat(cache.get(key("bucket", "other/"))).isNull();
+    }
+    
+    @Test
+    void keyDependsOnEveryListingParameter() {
+        assertThat(key("bucket", null)).isEqualTo(key("bucket", ""));
+        assertThat(cache.key(ENDPOINT, "token", "secret", "bucket", "", null, 1000))
+                .isNotEqualTo(cache.key(ENDPOINT, "token", "secret", "bucket", "", null, 10))
+                .isNotEqualTo(cache.key(ENDPOINT, "token", "secret", "bucket", "", "cursor", 1000))
+                .isNotEqualTo(cache.key(ENDPOINT, "token", "other", "bucket", "", null, 1000));
+    }
+    
+    @Test
+    void largeListingsAreNotCached() {
+        ListingCache.ListingKey key = key("bucket", "");
+        
+        Map<String, Object> result = cache.put(key, listing(11));
+        
+        assertThat(result).containsEntry("cached", false);
+        assertThat(cache.get(key)).isNull();
+    }
+    
+    @Test
+    void writtenKeyInvalidatesListingsThatMayContainIt() {
+        ListingCache.ListingKey root = cached("bucket", "");
+        ListingCache.ListingKey logs = cached("bucket", "logs/");
+        ListingCache.ListingKey day = cached("bucket", "logs/2024-01-01/");
+        ListingCache.ListingKey data = cached("bucket", "data/");
+        ListingCache.ListingKey otherBucket = cached("other", "logs/");
+        
+        cache.invalidateKey(ENDPOINT, "bucket", "logs/app.log");
+        
+        assertThat(cache.get(root)).isNull();
+        assertThat(cache.get(logs)).isNull();
+        assertThat(cache.get(day)).isNotNull();
+        assertThat(cache.get(data)).isNotNull();
+        assertThat(cache.get(otherBucket)).isNotNull();
+    }
+    
+    @Test
+    void changedPrefixInvalidatesOverlappingListings() {
+        ListingCache.ListingKey root = cached("bucket", "");
+        ListingCache.ListingKey logs = cached("bucket", "logs/");
+        ListingCache.ListingKey day = cached("bucket", "logs/2024-01-01/");
+        ListingCache.ListingKey data = cached("bucket", "data/");
+        
+        cache.invalidatePrefix(ENDPOINT, "bucket", "logs/");
+        
+        assertThat(cache.get(root)).isNull();
+        assertThat(cache.get(logs)).isNull();
+        assertThat(cache.get(day)).isNull();
+        assertThat(cache.get(data)).isNotNull();
+    }
+    
+    @Test
+    void invalidationIsScopedToTheEndpoint() {
+        ListingCache.ListingKey logs = cached("bucket", "logs/");
+        
+        cache.invalidateKey("https://other.example.com", "bucket", "logs/app.log");
+        cache.invalidatePrefix("https://other.example.com", "bucket", null);
+        
+        assertThat(cache.get(logs)).isNotNull();
+        assertThat(cache.getStats()).containsEntry("invalidations", 0L).containsEntry("ttlSeconds", 60L);
+    }
+}
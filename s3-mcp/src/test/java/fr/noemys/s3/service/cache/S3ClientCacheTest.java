@@ -0,0 +1,150 @@
+package fr.noemys.s3.service.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests of client leases, eviction and closing of evicted clients
+ * 
+ * @version 1.0.0
+ */
+class S3ClientCacheTest {
+    
+    private static final String ENDPOINT = "https://s3.example.com";
+    
+    // Last mock client created for each access key
+    private final Map<String, S3Client> created = new HashMap<>();
+    
+    private S3ClientCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        cache = new S3ClientCache() {
+            @Override
+            S3Client createS3Client(String endpoint, String token, String userToken) {
+                S3Client client = mock(S3Client.class);
+                created.put(token, client);
+                return client;
+            }
+        };
+        ReflectionTestUtils.setField(cache, "region", "us-east-1");
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+        ReflectionTestUtils.setField(cache, "idleTimeoutSeconds", 300L);
+    }
+    
+    private S3ClientCache.Lease acquire(String token) {
+        return cache.acquire(ENDPOINT, token, "secret");
+    }
+    
+    @Test
+    void leasesOfTheSameCredentialsShareOneClient() {
+        S3Client client;
+        try (S3ClientCache.Lease first = acquire("a"); S3ClientCache.Lease second = acquire("a")) {
+            client = first.client();
+            assertThat(second.client()).isSameAs(client);
+        }
+        try (S3ClientCache.Lease other = cache.acquire(ENDPOINT, "a", "other secret")) {
+            assertThat(other.client()).isNotSameAs(client);
+        }
+        
+        assertThat(cache.getStats()).containsEntry("hits", 1L).containsEntry("misses", 2L);
+    }
+    
+    @Test
+    void leastRecentlyUsedUnusedClientIsEvictedAndClosed() {
+        acquire("a").close();
+        acquire("b").close();
+        acquire("a").close();
+        
+        acquire("c").close();
+        
+        verify(created.get("b")).close();
+        verify(created.get("a"), never()).close();
+        assertThat(cache.getStats()).containsEntry("size", 2).containsEntry("evictions", 1L);
+    }
+    
+    @Test
+    void evictionSkipsClientsInUse() {
+        try (S3ClientCache.Lease held = acquire("a")) {
+            acquire("b").close();
+            
+            acquire("c").close();
+            
+            // "a" is the least recently used, but leased
+            verify(created.get("b")).close();
+            verify(created.get("a"), never()).close();
+            assertThat(held.client()).isSameAs(created.get("a"));
+        }
+    }
+    
+    @Test
+    void clientInUseIsClosedOnlyOnceReleased() {
+        S3ClientCache.Lease a = acquire("a");
+        S3ClientCache.Lease b = acquire("b");
+        
+        // Every client is in use: the least recently used one is evicted all the same
+        S3ClientCache.Lease c = acquire("c");
+        verify(created.get("a"), never()).close();
+        
+        a.close();
+        verify(created.get("a")).close();
+        b.close();
+        c.close();
+        verify(created.get("b"), never()).close();
+        assertThat(cache.getStats()).containsEntry("size", 2);
+    }
+    
+    @Test
+    void leaseIsReleasedOnce() {
+        S3ClientCache.Lease first = acquire("a");
+        S3ClientCache.Lease second = acquire("a");
+        first.close();
+        first.close();
+        S3ClientCache.Lease b = acquire("b");
+        
+        // Still leased by second: evicted as every client is in use, but not closed
+        acquire("c").close();
+        verify(created.get("a"), never()).close();
+        
+        second.close();
+        verify(created.get("a"), times(1)).close();
+        b.close();
+    }
+    
+    @Test
+    void sweepClosesIdleClientsOnly() {
+        ReflectionTestUtils.setField(cache, "idleTimeoutSeconds", 0L);
+        acquire("a").close();
+        S3ClientCache.Lease held = acquire("b");
+        
+        cache.sweep();
+        
+        verify(created.get("a")).close();
+        verify(created.get("b"), never()).close();
+        assertThat(cache.getStats()).containsEntry("size", 1);
+        held.close();
+    }
+    
+    @Test
+    void shutdownClosesEveryUnusedClient() {
+        acquire("a").close();
+        acquire("b").close();
+        
+        cache.shutdown();
+        
+        verify(created.get("a")).close();
+        verify(created.get("b")).close();
+        assertThat(cache.getStats()).containsEntry("size", 0);
+    }
+}
@@ -0,0 +1,92 @@
+package fr.noemys.s3.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the LRU cache with time to live
+ * 
+ * @version 1.0.0
+ */
+class TtlCacheTest {
+    
+    private static final Duration TTL = Duration.ofMinutes(1);
+    
+    @Test
+    void storedValueIsReturnedUntilItExpires() throws InterruptedException {
+        TtlCache<String, String> cache = new TtlCache<>(10);
+        cache.put("live", "a", TTL);
+        cache.put("short", "b", Duration.ofMillis(20));
+        
+        assertThat(cache.get("live").value()).isEqualTo("a");
+        assertThat(cache.get("short").value()).isEqualTo("b");
+        
+        Thread.sleep(50);
+        
+        assertThat(cache.get("live").value()).isEqualTo("a");
+        assertThat(cache.get("short")).isNull();
+        assertThat(cache.getStats()).containsEntry("size", 1);
+    }
+    
+    @Test
+    void nothingIsStoredWithoutTtlOrCapacity() {
+        TtlCache<String, String> cache = new TtlCache<>(10);
+        cache.put("zero", "a", Duration.ZERO);
+        cache.put("negative", "b", Duration.ofSeconds(-1));
+        
+        assertThat(cache.get("zero")).isNull();
+        assertThat(cache.get("negative")).isNull();
+        
+        TtlCache<String, String> disabled = new TtlCache<>(0);
+        disabled.put("key", "c", TTL);
+        assertThat(disabled.get("key")).isNull();
+    }
+    
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        TtlCache<String, String> cache = new TtlCache<>(2);
+        cache.put("a", "1", TTL);
+        cache.put("b", "2", TTL);
+        // "a" becomes the most recently used
+        cache.get("a");
+        cache.put("c", "3", TTL);
+        
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isNotNull();
+        assertThat(cache.getStats()).containsEntry("evictions", 1L);
+    }
+    
+    @Test
+    void invalidateIfRemovesMatchingKeysOnly() {
+        TtlCache<String, String> cache = new TtlCache<>(10);
+        cache.put("logs/a", "1", TTL);
+        cache.put("logs/b", "2", TTL);
+        cache.put("data/c", "3", TTL);
+        
+        int removed = cache.invalidateIf(key -> key.startsWith("logs/"));
+        
+        assertThat(removed).isEqualTo(2);
+        assertThat(cache.get("logs/a")).isNull();
+        assertThat(cache.get("logs/b")).isNull();
+        assertThat(cache.get("data/c")).isNotNull();
+        assertThat(cache.getStats()).containsEntry("invalidations", 2L).containsEntry("size", 1);
+    }
+    
+    @Test
+    void statsCountHitsAndMisses() {
+        TtlCache<String, String> cache = new TtlCache<>(10);
+        cache.put("a", "1", TTL);
+        cache.get("a");
+        cache.get("a");
+        cache.get("missing");
+        
+        assertThat(cache.getStats())
+                .containsEntry("hits", 2L)
+                .containsEntry("misses", 1L)
+                .containsEntry("maxEntries", 10);
+    }
+}